@@ -1,9 +1,11 @@
 package api
 
 import (
+	"context"
 	"encoding/json"
 	"fmt"
 	"io"
+	"log"
 	"net/http"
 	"strconv"
 	"strings"
@@ -98,6 +100,95 @@ func (h *Handler) StartSelenium(w http.ResponseWriter, r *http.Request) {
 	json.NewEncoder(w).Encode(info)
 }
 
+func (h *Handler) ConfigureSeleniumPool(w http.ResponseWriter, r *http.Request) {
+	image := r.URL.Query().Get("image")
+	if image == "" {
+		respondWithError(w, http.StatusBadRequest, "image is required")
+		return
+	}
+	isVncEnabled, _ := strconv.ParseBool(r.URL.Query().Get("isVncEnabled"))
+	size, maxSize, ok := parsePoolSize(w, r)
+	if !ok {
+		return
+	}
+
+	if err := h.Manager.ConfigureSeleniumPool(r.Context(), image, isVncEnabled, size, maxSize); err != nil {
+		respondWithError(w, http.StatusNotFound, err.Error())
+		return
+	}
+	w.Header().Set("Content-Type", "application/json")
+	json.NewEncoder(w).Encode(true)
+}
+
+func (h *Handler) ConfigurePlaywrightPool(w http.ResponseWriter, r *http.Request) {
+	image := r.URL.Query().Get("image")
+	version := r.URL.Query().Get("version")
+	if image == "" || version == "" {
+		respondWithError(w, http.StatusBadRequest, "image and version are required")
+		return
+	}
+	size, maxSize, ok := parsePoolSize(w, r)
+	if !ok {
+		return
+	}
+
+	if err := h.Manager.ConfigurePlaywrightPool(r.Context(), image, version, size, maxSize); err != nil {
+		respondWithError(w, http.StatusNotFound, err.Error())
+		return
+	}
+	w.Header().Set("Content-Type", "application/json")
+	json.NewEncoder(w).Encode(true)
+}
+
+// parsePoolSize читает size (минимум пула) и необязательный maxSize —
+// верхнюю границу, до которой пул растёт по спросу.
+func parsePoolSize(w http.ResponseWriter, r *http.Request) (int, int, bool) {
+	size, err := strconv.Atoi(r.URL.Query().Get("size"))
+	if err != nil || size < 0 {
+		respondWithError(w, http.StatusBadRequest, "size must be a non-negative integer")
+		return 0, 0, false
+	}
+	maxSize := size
+	if raw := r.URL.Query().Get("maxSize"); raw != "" {
+		maxSize, err = strconv.Atoi(raw)
+		if err != nil || maxSize < 0 {
+			respondWithError(w, http.StatusBadRequest, "maxSize must be a non-negative integer")
+			return 0, 0, false
+		}
+	}
+	return size, maxSize, true
+}
+
+// PreparePlaywright запускает сборку образа с предустановленным playwright
+// нужной версии и сразу отвечает 202; результат виден в PlaywrightStats.
+func (h *Handler) PreparePlaywright(w http.ResponseWriter, r *http.Request) {
+	image := r.URL.Query().Get("image")
+	version := r.URL.Query().Get("version")
+	if image == "" || version == "" {
+		respondWithError(w, http.StatusBadRequest, "image and version are required")
+		return
+	}
+
+	go func() {
+		if err := h.Manager.PreparePlaywright(context.Background(), image, version); err != nil {
+			log.Printf("Failed to prepare playwright %s for %s: %v", version, image, err)
+		}
+	}()
+	w.Header().Set("Content-Type", "application/json")
+	w.WriteHeader(http.StatusAccepted)
+	json.NewEncoder(w).Encode(true)
+}
+
+func (h *Handler) PlaywrightStats(w http.ResponseWriter, r *http.Request) {
+	w.Header().Set("Content-Type", "application/json")
+	json.NewEncoder(w).Encode(h.Manager.PlaywrightStats())
+}
+
+func (h *Handler) PoolStats(w http.ResponseWriter, r *http.Request) {
+	w.Header().Set("Content-Type", "application/json")
+	json.NewEncoder(w).Encode(h.Manager.Pool.Stats())
+}
+
 func (h *Handler) StreamLogs(w http.ResponseWriter, r *http.Request) {
 	containerID := r.PathValue("containerId")
 
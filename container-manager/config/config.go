@@ -16,6 +16,8 @@ type Config struct {
 	SeleniumTmpfsSize   string
 	CleanupTimeout      time.Duration
 	StartingTimeout     time.Duration
+	WarmPoolIdleTimeout time.Duration
+	WarmPoolMaxTotal    int
 }
 
 func LoadConfig() *Config {
@@ -29,6 +31,8 @@ func LoadConfig() *Config {
 		SeleniumTmpfsSize:   getEnv("SELENIUM_CONTAINER_TMPFS_SIZE", "1g"),
 		CleanupTimeout:      time.Duration(getEnvInt64("CLEANUP_TIMEOUT", 15000)) * time.Millisecond,
 		StartingTimeout:     time.Duration(getEnvInt64("CONTAINER_STARTING_TIMEOUT", 60000)) * time.Millisecond,
+		WarmPoolIdleTimeout: time.Duration(getEnvInt64("WARM_POOL_IDLE_TIMEOUT", 600000)) * time.Millisecond,
+		WarmPoolMaxTotal:    int(getEnvInt64("WARM_POOL_MAX_TOTAL", 20)),
 	}
 }
 
@@ -21,6 +21,9 @@ import (
 type Manager struct {
 	Cli    *client.Client
 	Config *config.Config
+	Pool   *WarmPool
+
+	pwImages *playwrightImages
 }
 
 func NewManager(cfg *config.Config) (*Manager, error) {
@@ -28,7 +31,11 @@ func NewManager(cfg *config.Config) (*Manager, error) {
 	if err != nil {
 		return nil, err
 	}
-	return &Manager{Cli: cli, Config: cfg}, nil
+	m := &Manager{Cli: cli, Config: cfg, pwImages: newPlaywrightImages()}
+	m.Pool = NewWarmPool(func(containerID string) {
+		m.StopContainer(context.Background(), containerID)
+	}, cfg.WarmPoolIdleTimeout, cfg.WarmPoolMaxTotal)
+	return m, nil
 }
 
 func (m *Manager) StopContainer(ctx context.Context, containerID string) bool {
@@ -66,9 +73,7 @@ func (m *Manager) ImageExists(ctx context.Context, imageName string) bool {
 func (m *Manager) WaitForPort(host string, port string) bool {
 	deadline := time.Now().Add(m.Config.StartingTimeout)
 	for time.Now().Before(deadline) {
-		conn, err := net.DialTimeout("tcp", net.JoinHostPort(host, port), 500*time.Millisecond)
-		if err == nil {
-			conn.Close()
+		if m.IsPortOpen(host, port) {
 			return true
 		}
 		time.Sleep(1 * time.Second)
@@ -76,6 +81,15 @@ func (m *Manager) WaitForPort(host string, port string) bool {
 	return false
 }
 
+func (m *Manager) IsPortOpen(host string, port string) bool {
+	conn, err := net.DialTimeout("tcp", net.JoinHostPort(host, port), 500*time.Millisecond)
+	if err != nil {
+		return false
+	}
+	conn.Close()
+	return true
+}
+
 // Конвертирует загруженный ZIP архив в TAR и отправляет в контейнер
 func (m *Manager) CopyFileToContainer(ctx context.Context, containerID string, rawZipBytes []byte) (string, error) {
 	zipReader, err := zip.NewReader(bytes.NewReader(rawZipBytes), int64(len(rawZipBytes)))
@@ -8,9 +8,45 @@ import (
 	"github.com/docker/docker/api/types/network"
 	"github.com/google/uuid"
 	"log"
+	"time"
 )
 
+func playwrightPoolKey(image string, version string) string {
+	return fmt.Sprintf("playwright|%s|%s", image, version)
+}
+
+// StartPlaywright отдаёт готовый run-server из тёплого пула image|version,
+// иначе стартует новый контейнер.
 func (m *Manager) StartPlaywright(ctx context.Context, image string, version string) (*models.ContainerInfo, error) {
+	key := playwrightPoolKey(image, version)
+	started := time.Now()
+	if info := m.Pool.Claim(key); info != nil {
+		m.Pool.ObserveLease(key, time.Since(started))
+		log.Printf("Claimed warm playwright container %s with name %s", info.ContainerID, info.ContainerName)
+		return info, nil
+	}
+	info, err := m.startPlaywrightContainer(ctx, image, version)
+	if err == nil {
+		m.Pool.ObserveLease(key, time.Since(started))
+	}
+	return info, err
+}
+
+func (m *Manager) ConfigurePlaywrightPool(ctx context.Context, image string, version string, size, maxSize int) error {
+	if maxSize > 0 && !m.ImageExists(ctx, image) {
+		return fmt.Errorf("no playwright image with name %s", image)
+	}
+	m.Pool.Configure(playwrightPoolKey(image, version), size, maxSize,
+		func(ctx context.Context) (*models.ContainerInfo, error) {
+			return m.startPlaywrightContainer(ctx, image, version)
+		},
+		func(info *models.ContainerInfo) bool {
+			return m.IsPortOpen(info.ContainerName, m.Config.PlaywrightPort)
+		})
+	return nil
+}
+
+func (m *Manager) startPlaywrightContainer(ctx context.Context, image string, version string) (*models.ContainerInfo, error) {
 	if !m.ImageExists(ctx, image) {
 		return nil, fmt.Errorf("no playwright image with name %s", image)
 	}
@@ -29,11 +65,13 @@ func (m *Manager) StartPlaywright(ctx context.Context, image string, version str
 		},
 	}
 
-	cmd := []string{"npx", "-y", "playwright@" + version, "run-server", "--port", m.Config.PlaywrightPort, "--host", "0.0.0.0"}
+	launch := m.launchFor(image, version)
+	started := time.Now()
 
 	resp, err := m.Cli.ContainerCreate(ctx, &container.Config{
-		Image: image,
-		Cmd:   cmd,
+		Image: launch.image,
+		Cmd:   launch.cmd,
+		Env:   launch.env,
 	}, hostConfig, &network.NetworkingConfig{}, nil, containerName)
 
 	if err != nil {
@@ -51,6 +89,7 @@ func (m *Manager) StartPlaywright(ctx context.Context, image string, version str
 		m.StopContainer(context.Background(), resp.ID)
 		return nil, fmt.Errorf("playwright service in container %s did not start", resp.ID)
 	}
+	m.observePlaywrightStartup(version, launch.baked, time.Since(started))
 
 	return models.NewContainerInfo(resp.ID, containerName), nil
 }
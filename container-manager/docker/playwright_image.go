@@ -0,0 +1,254 @@
+package docker
+
+import (
+	"archive/tar"
+	"bytes"
+	"context"
+	"crypto/sha256"
+	"encoding/hex"
+	"encoding/json"
+	"errors"
+	"fmt"
+	"io"
+	"log"
+	"regexp"
+	"sort"
+	"sync"
+	"time"
+
+	"github.com/balakshievas/Jelenoid/container-manager/models"
+	"github.com/docker/docker/api/types/build"
+)
+
+const (
+	playwrightBakedDir  = "/opt/jelenoid-playwright"
+	playwrightBakedRepo = "jelenoid-playwright-baked"
+
+	playwrightImageBuilding = "building"
+	playwrightImageReady    = "ready"
+	playwrightImageFailed   = "failed"
+)
+
+// Версия подставляется в Dockerfile, поэтому допускаются только безопасные символы.
+var playwrightVersionPattern = regexp.MustCompile(`^[0-9A-Za-z][0-9A-Za-z.\-]*$`)
+
+type playwrightImage struct {
+	image   string
+	version string
+	tag     string
+	state   string
+	err     string
+	buildMs int64
+}
+
+type startupKey struct {
+	version string
+	mode    string
+}
+
+type playwrightStartup struct {
+	starts  int64
+	totalMs int64
+	maxMs   int64
+	lastMs  int64
+}
+
+// playwrightImages — образы с заранее установленным playwright нужной версии.
+// С ними run-server стартует без обращения к npm-реестру; без них — через npx.
+type playwrightImages struct {
+	mu       sync.Mutex
+	images   map[string]*playwrightImage
+	startups map[startupKey]*playwrightStartup
+}
+
+type playwrightLaunch struct {
+	image string
+	cmd   []string
+	env   []string
+	baked bool
+}
+
+func newPlaywrightImages() *playwrightImages {
+	return &playwrightImages{
+		images:   make(map[string]*playwrightImage),
+		startups: make(map[startupKey]*playwrightStartup),
+	}
+}
+
+func bakedPlaywrightTag(image string, version string) string {
+	sum := sha256.Sum256([]byte(image))
+	return fmt.Sprintf("%s:%s-%s", playwrightBakedRepo, version, hex.EncodeToString(sum[:4]))
+}
+
+// PreparePlaywright собирает образ image с предустановленным playwright@version.
+// Повторный вызов для готового или собираемого образа ничего не делает.
+func (m *Manager) PreparePlaywright(ctx context.Context, image string, version string) error {
+	if !playwrightVersionPattern.MatchString(version) {
+		return fmt.Errorf("invalid playwright version %q", version)
+	}
+	if !m.ImageExists(ctx, image) {
+		return fmt.Errorf("no playwright image with name %s", image)
+	}
+
+	key := playwrightPoolKey(image, version)
+	tag := bakedPlaywrightTag(image, version)
+
+	m.pwImages.mu.Lock()
+	if pi, ok := m.pwImages.images[key]; ok && pi.state != playwrightImageFailed {
+		m.pwImages.mu.Unlock()
+		return nil
+	}
+	pi := &playwrightImage{image: image, version: version, tag: tag, state: playwrightImageBuilding}
+	m.pwImages.images[key] = pi
+	m.pwImages.mu.Unlock()
+
+	started := time.Now()
+	err := m.buildPlaywrightImage(ctx, image, version, tag)
+	if err == nil && m.ImageExists(ctx, tag) {
+		log.Printf("Image %s with playwright %s is ready in %s", tag, version, time.Since(started))
+	} else if err == nil {
+		err = fmt.Errorf("image %s was not created", tag)
+	}
+
+	m.pwImages.mu.Lock()
+	pi.buildMs = time.Since(started).Milliseconds()
+	if err != nil {
+		pi.state = playwrightImageFailed
+		pi.err = err.Error()
+	} else {
+		pi.state = playwrightImageReady
+	}
+	m.pwImages.mu.Unlock()
+	return err
+}
+
+func (m *Manager) buildPlaywrightImage(ctx context.Context, image string, version string, tag string) error {
+	if m.ImageExists(ctx, tag) {
+		return nil
+	}
+
+	dockerfile := fmt.Sprintf(`FROM %s
+RUN mkdir -p %[2]s && cd %[2]s && npm init -y >/dev/null && npm install --no-audit --no-fund playwright@%[3]s
+`, image, playwrightBakedDir, version)
+
+	var buildContext bytes.Buffer
+	tw := tar.NewWriter(&buildContext)
+	if err := tw.WriteHeader(&tar.Header{Name: "Dockerfile", Mode: 0644, Size: int64(len(dockerfile))}); err != nil {
+		return err
+	}
+	if _, err := tw.Write([]byte(dockerfile)); err != nil {
+		return err
+	}
+	if err := tw.Close(); err != nil {
+		return err
+	}
+
+	log.Printf("Building %s: %s + playwright@%s", tag, image, version)
+	resp, err := m.Cli.ImageBuild(ctx, &buildContext, build.ImageBuildOptions{
+		Tags:        []string{tag},
+		Remove:      true,
+		ForceRemove: true,
+	})
+	if err != nil {
+		return err
+	}
+	defer resp.Body.Close()
+
+	// Ошибки сборки приходят в потоке сообщений, а не кодом ответа.
+	dec := json.NewDecoder(resp.Body)
+	for {
+		var msg struct {
+			Error string `json:"error"`
+		}
+		if err := dec.Decode(&msg); err != nil {
+			if errors.Is(err, io.EOF) {
+				return nil
+			}
+			return err
+		}
+		if msg.Error != "" {
+			return errors.New(msg.Error)
+		}
+	}
+}
+
+// launchFor выбирает, как запускать run-server: из собранного образа офлайн,
+// если он готов, иначе через npx.
+func (m *Manager) launchFor(image string, version string) playwrightLaunch {
+	m.pwImages.mu.Lock()
+	pi, ok := m.pwImages.images[playwrightPoolKey(image, version)]
+	baked := ok && pi.state == playwrightImageReady
+	m.pwImages.mu.Unlock()
+
+	if baked {
+		return playwrightLaunch{
+			image: pi.tag,
+			cmd:   []string{playwrightBakedDir + "/node_modules/.bin/playwright", "run-server", "--port", m.Config.PlaywrightPort, "--host", "0.0.0.0"},
+			env:   []string{"npm_config_offline=true"},
+			baked: true,
+		}
+	}
+	return playwrightLaunch{
+		image: image,
+		cmd:   []string{"npx", "-y", "playwright@" + version, "run-server", "--port", m.Config.PlaywrightPort, "--host", "0.0.0.0"},
+	}
+}
+
+func (m *Manager) observePlaywrightStartup(version string, baked bool, d time.Duration) {
+	mode := "npx"
+	if baked {
+		mode = "baked"
+	}
+	ms := d.Milliseconds()
+
+	m.pwImages.mu.Lock()
+	defer m.pwImages.mu.Unlock()
+	key := startupKey{version: version, mode: mode}
+	st, ok := m.pwImages.startups[key]
+	if !ok {
+		st = &playwrightStartup{}
+		m.pwImages.startups[key] = st
+	}
+	st.starts++
+	st.totalMs += ms
+	st.maxMs = max(st.maxMs, ms)
+	st.lastMs = ms
+}
+
+func (m *Manager) PlaywrightStats() models.PlaywrightStats {
+	m.pwImages.mu.Lock()
+	defer m.pwImages.mu.Unlock()
+
+	stats := models.PlaywrightStats{
+		Images:   make([]models.PlaywrightImageStats, 0, len(m.pwImages.images)),
+		Startups: make([]models.PlaywrightStartupStats, 0, len(m.pwImages.startups)),
+	}
+	for _, pi := range m.pwImages.images {
+		stats.Images = append(stats.Images, models.PlaywrightImageStats{
+			Image:   pi.image,
+			Version: pi.version,
+			Tag:     pi.tag,
+			State:   pi.state,
+			Error:   pi.err,
+			BuildMs: pi.buildMs,
+		})
+	}
+	for key, st := range m.pwImages.startups {
+		stats.Startups = append(stats.Startups, models.PlaywrightStartupStats{
+			Version: key.version,
+			Mode:    key.mode,
+			Starts:  st.starts,
+			AvgMs:   st.totalMs / st.starts,
+			MaxMs:   st.maxMs,
+			LastMs:  st.lastMs,
+		})
+	}
+	sort.Slice(stats.Images, func(i, j int) bool { return stats.Images[i].Tag < stats.Images[j].Tag })
+	sort.Slice(stats.Startups, func(i, j int) bool {
+		if stats.Startups[i].Version != stats.Startups[j].Version {
+			return stats.Startups[i].Version < stats.Startups[j].Version
+		}
+		return stats.Startups[i].Mode < stats.Startups[j].Mode
+	})
+	return stats
+}
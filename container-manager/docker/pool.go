@@ -0,0 +1,340 @@
+package docker
+
+import (
+	"context"
+	"log"
+	"math"
+	"sort"
+	"sync"
+	"time"
+
+	"github.com/balakshievas/Jelenoid/container-manager/models"
+)
+
+const (
+	warmPoolMaintenanceInterval = 5 * time.Second
+	// Вес последнего интервала в сглаженном спросе на контейнеры.
+	warmPoolDemandAlpha = 0.3
+)
+
+type starterFunc func(ctx context.Context) (*models.ContainerInfo, error)
+
+type healthFunc func(info *models.ContainerInfo) bool
+
+type warmContainer struct {
+	info    *models.ContainerInfo
+	readyAt time.Time
+}
+
+type warmGroup struct {
+	key      string
+	minSize  int
+	maxSize  int
+	target   int
+	start    starterFunc
+	healthy  healthFunc
+	ready    []*warmContainer
+	starting int
+
+	// Спрос: выдачи за текущий интервал и их сглаженное среднее.
+	claims int
+	demand float64
+
+	hits     int64
+	misses   int64
+	evicted  int64
+	failures int64
+
+	leases     int64
+	leaseTotal time.Duration
+	leaseMax   time.Duration
+}
+
+// WarmPool держит заранее запущенные контейнеры по ключу (тип|образ|...).
+// Выданный контейнер в пул не возвращается: хаб гасит его сам, а пул
+// в фоне добирает группу до целевого размера.
+type WarmPool struct {
+	stopFn      func(containerID string)
+	idleTimeout time.Duration
+	maxTotal    int
+
+	mu     sync.Mutex
+	groups map[string]*warmGroup
+	closed bool
+	quit   chan struct{}
+}
+
+func NewWarmPool(stopFn func(containerID string), idleTimeout time.Duration, maxTotal int) *WarmPool {
+	p := &WarmPool{
+		stopFn:      stopFn,
+		idleTimeout: idleTimeout,
+		maxTotal:    maxTotal,
+		groups:      make(map[string]*warmGroup),
+		quit:        make(chan struct{}),
+	}
+	go p.maintenanceLoop()
+	return p
+}
+
+// Configure задаёт границы размера группы: между minSize и maxSize целевой
+// размер следует за спросом (числом выдач за интервал обслуживания).
+// maxSize == 0 выключает прогрев и гасит уже готовые контейнеры группы.
+func (p *WarmPool) Configure(key string, minSize, maxSize int, start starterFunc, healthy healthFunc) {
+	minSize = max(minSize, 0)
+	maxSize = max(maxSize, minSize)
+
+	p.mu.Lock()
+	if p.closed {
+		p.mu.Unlock()
+		return
+	}
+	g, ok := p.groups[key]
+	if !ok {
+		if maxSize == 0 {
+			p.mu.Unlock()
+			return
+		}
+		g = &warmGroup{key: key}
+		p.groups[key] = g
+	}
+	g.minSize = minSize
+	g.maxSize = maxSize
+	g.target = g.targetFor()
+	g.start = start
+	g.healthy = healthy
+	surplus := p.trimLocked(g)
+	p.refillLocked(g)
+	p.mu.Unlock()
+
+	p.stopAsync(surplus)
+}
+
+// Claim выдаёт готовый контейнер группы или nil, если группа пуста
+// или не настроена.
+func (p *WarmPool) Claim(key string) *models.ContainerInfo {
+	for {
+		p.mu.Lock()
+		g, ok := p.groups[key]
+		if !ok || p.closed {
+			p.mu.Unlock()
+			return nil
+		}
+		g.claims++
+		if len(g.ready) == 0 {
+			g.misses++
+			p.refillLocked(g)
+			p.mu.Unlock()
+			return nil
+		}
+		wc := g.ready[0]
+		g.ready[0] = nil
+		g.ready = g.ready[1:]
+		healthy := g.healthy
+		p.refillLocked(g)
+		p.mu.Unlock()
+
+		if healthy == nil || healthy(wc.info) {
+			p.mu.Lock()
+			g.hits++
+			p.mu.Unlock()
+			wc.info.UpdateActivity()
+			return wc.info
+		}
+
+		log.Printf("Warm pool %s: container %s is not healthy, discarding", key, wc.info.ContainerID)
+		p.mu.Lock()
+		g.evicted++
+		p.mu.Unlock()
+		p.stopAsync([]*warmContainer{wc})
+	}
+}
+
+// ObserveLease учитывает время получения контейнера группы — из пула или
+// холодным стартом при промахе.
+func (p *WarmPool) ObserveLease(key string, d time.Duration) {
+	p.mu.Lock()
+	defer p.mu.Unlock()
+	g, ok := p.groups[key]
+	if !ok {
+		return
+	}
+	g.leases++
+	g.leaseTotal += d
+	g.leaseMax = max(g.leaseMax, d)
+}
+
+// targetFor округляет спрос до ближайшего целого: затухающее среднее после
+// разовой выдачи долго остаётся чуть выше нуля, и округление вверх держало
+// бы по одному контейнеру часами.
+func (g *warmGroup) targetFor() int {
+	return min(max(int(math.Round(g.demand)), g.minSize), g.maxSize)
+}
+
+func (p *WarmPool) totalLocked() int {
+	total := 0
+	for _, g := range p.groups {
+		total += len(g.ready) + g.starting
+	}
+	return total
+}
+
+func (p *WarmPool) refillLocked(g *warmGroup) {
+	if p.closed || g.start == nil {
+		return
+	}
+	for len(g.ready)+g.starting < g.target && p.totalLocked() < p.maxTotal {
+		g.starting++
+		go p.warmUp(g, g.start)
+	}
+}
+
+func (p *WarmPool) trimLocked(g *warmGroup) []*warmContainer {
+	if len(g.ready) <= g.target {
+		return nil
+	}
+	surplus := make([]*warmContainer, len(g.ready)-g.target)
+	copy(surplus, g.ready[g.target:])
+	clear(g.ready[g.target:])
+	g.ready = g.ready[:g.target]
+	g.evicted += int64(len(surplus))
+	return surplus
+}
+
+func (p *WarmPool) warmUp(g *warmGroup, start starterFunc) {
+	info, err := start(context.Background())
+
+	p.mu.Lock()
+	g.starting--
+	if err != nil {
+		// Повтор — только на следующем тике обслуживания, чтобы битый образ
+		// не запускался в цикле.
+		g.failures++
+		p.mu.Unlock()
+		log.Printf("Warm pool %s: failed to pre-start container: %v", g.key, err)
+		return
+	}
+	if p.closed || len(g.ready) >= g.target {
+		p.mu.Unlock()
+		p.stopFn(info.ContainerID)
+		return
+	}
+	g.ready = append(g.ready, &warmContainer{info: info, readyAt: time.Now()})
+	p.mu.Unlock()
+
+	log.Printf("Warm pool %s: container %s is ready", g.key, info.ContainerID)
+}
+
+func (p *WarmPool) maintenanceLoop() {
+	ticker := time.NewTicker(warmPoolMaintenanceInterval)
+	defer ticker.Stop()
+	for {
+		select {
+		case <-p.quit:
+			return
+		case <-ticker.C:
+			p.maintain()
+		}
+	}
+}
+
+// maintain пересоздаёт контейнеры, простоявшие в пуле дольше idleTimeout,
+// пересчитывает целевой размер групп по спросу и добирает группы,
+// недобранные из-за ошибок старта.
+func (p *WarmPool) maintain() {
+	p.mu.Lock()
+	if p.closed {
+		p.mu.Unlock()
+		return
+	}
+	var stale []*warmContainer
+	if p.idleTimeout > 0 {
+		deadline := time.Now().Add(-p.idleTimeout)
+		for _, g := range p.groups {
+			kept := g.ready[:0]
+			for _, wc := range g.ready {
+				if wc.readyAt.Before(deadline) {
+					stale = append(stale, wc)
+					g.evicted++
+				} else {
+					kept = append(kept, wc)
+				}
+			}
+			clear(g.ready[len(kept):])
+			g.ready = kept
+		}
+	}
+	for _, g := range p.groups {
+		g.demand = warmPoolDemandAlpha*float64(g.claims) + (1-warmPoolDemandAlpha)*g.demand
+		g.claims = 0
+		g.target = g.targetFor()
+		stale = append(stale, p.trimLocked(g)...)
+		p.refillLocked(g)
+	}
+	p.mu.Unlock()
+
+	p.stopAsync(stale)
+}
+
+func (p *WarmPool) stopAsync(list []*warmContainer) {
+	for _, wc := range list {
+		go p.stopFn(wc.info.ContainerID)
+	}
+}
+
+// Close гасит все готовые контейнеры; стартующие будут погашены по завершении старта.
+func (p *WarmPool) Close() {
+	p.mu.Lock()
+	if p.closed {
+		p.mu.Unlock()
+		return
+	}
+	p.closed = true
+	close(p.quit)
+	var all []*warmContainer
+	for _, g := range p.groups {
+		all = append(all, g.ready...)
+		g.ready = nil
+	}
+	p.mu.Unlock()
+
+	var wg sync.WaitGroup
+	for _, wc := range all {
+		wg.Add(1)
+		go func(id string) {
+			defer wg.Done()
+			p.stopFn(id)
+		}(wc.info.ContainerID)
+	}
+	wg.Wait()
+}
+
+func (p *WarmPool) Stats() []models.WarmPoolStats {
+	p.mu.Lock()
+	defer p.mu.Unlock()
+
+	stats := make([]models.WarmPoolStats, 0, len(p.groups))
+	for _, g := range p.groups {
+		st := models.WarmPoolStats{
+			Key:      g.key,
+			Min:      g.minSize,
+			Max:      g.maxSize,
+			Target:   g.target,
+			Ready:    len(g.ready),
+			Starting: g.starting,
+			Hits:     g.hits,
+			Misses:   g.misses,
+			Evicted:  g.evicted,
+			Failures: g.failures,
+		}
+		if total := g.hits + g.misses; total > 0 {
+			st.HitRate = float64(g.hits) / float64(total)
+		}
+		if g.leases > 0 {
+			st.LeaseAvgMs = (g.leaseTotal / time.Duration(g.leases)).Milliseconds()
+			st.LeaseMaxMs = g.leaseMax.Milliseconds()
+		}
+		stats = append(stats, st)
+	}
+	sort.Slice(stats, func(i, j int) bool { return stats[i].Key < stats[j].Key })
+	return stats
+}
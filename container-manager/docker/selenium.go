@@ -15,7 +15,42 @@ import (
 	"github.com/google/uuid"
 )
 
+func seleniumPoolKey(image string, isVncEnabled bool) string {
+	return fmt.Sprintf("selenium|%s|%t", image, isVncEnabled)
+}
+
+// StartSelenium отдаёт контейнер из тёплого пула, если он настроен для образа,
+// иначе стартует новый.
 func (m *Manager) StartSelenium(ctx context.Context, image string, isVncEnabled bool) (*models.ContainerInfo, error) {
+	key := seleniumPoolKey(image, isVncEnabled)
+	started := time.Now()
+	if info := m.Pool.Claim(key); info != nil {
+		m.Pool.ObserveLease(key, time.Since(started))
+		log.Printf("Claimed warm container %s with name %s", info.ContainerID, info.ContainerName)
+		return info, nil
+	}
+	info, err := m.startSeleniumContainer(ctx, image, isVncEnabled)
+	if err == nil {
+		m.Pool.ObserveLease(key, time.Since(started))
+	}
+	return info, err
+}
+
+func (m *Manager) ConfigureSeleniumPool(ctx context.Context, image string, isVncEnabled bool, size, maxSize int) error {
+	if maxSize > 0 && !m.ImageExists(ctx, image) {
+		return fmt.Errorf("no selenium image with name %s", image)
+	}
+	m.Pool.Configure(seleniumPoolKey(image, isVncEnabled), size, maxSize,
+		func(ctx context.Context) (*models.ContainerInfo, error) {
+			return m.startSeleniumContainer(ctx, image, isVncEnabled)
+		},
+		func(info *models.ContainerInfo) bool {
+			return m.isSeleniumReady(&http.Client{Timeout: time.Second}, info.ContainerName)
+		})
+	return nil
+}
+
+func (m *Manager) startSeleniumContainer(ctx context.Context, image string, isVncEnabled bool) (*models.ContainerInfo, error) {
 	if !m.ImageExists(ctx, image) {
 		return nil, fmt.Errorf("no selenium image with name %s", image)
 	}
@@ -61,29 +96,37 @@ func (m *Manager) StartSelenium(ctx context.Context, image string, isVncEnabled
 }
 
 func (m *Manager) waitForSeleniumReady(containerIpAddress string) error {
-	// Поддерживаем оба пути: /status (Selenoid-совместимые образы) и
-	// /wd/hub/status (наши старые образы и legacy container-manager).
-	statusUrls := []string{
-		fmt.Sprintf("http://%s:4444/status", containerIpAddress),
-		fmt.Sprintf("http://%s:4444/wd/hub/status", containerIpAddress),
-	}
 	deadline := time.Now().Add(m.Config.StartingTimeout)
 
 	client := &http.Client{Timeout: 2 * time.Second}
 
 	for time.Now().Before(deadline) {
-		for _, statusUrl := range statusUrls {
-			resp, err := client.Get(statusUrl)
-			if err == nil {
-				body, _ := io.ReadAll(resp.Body)
-				resp.Body.Close()
-				if resp.StatusCode >= 200 && resp.StatusCode < 300 && strings.Contains(string(body), `"ready":true`) {
-					time.Sleep(100 * time.Millisecond) // Tactical delay
-					return nil
-				}
-			}
+		if m.isSeleniumReady(client, containerIpAddress) {
+			time.Sleep(100 * time.Millisecond) // Tactical delay
+			return nil
 		}
 		time.Sleep(100 * time.Millisecond)
 	}
 	return fmt.Errorf("container %s did not become ready in time", containerIpAddress)
 }
+
+func (m *Manager) isSeleniumReady(client *http.Client, containerIpAddress string) bool {
+	// Поддерживаем оба пути: /status (Selenoid-совместимые образы) и
+	// /wd/hub/status (наши старые образы и legacy container-manager).
+	statusUrls := []string{
+		fmt.Sprintf("http://%s:4444/status", containerIpAddress),
+		fmt.Sprintf("http://%s:4444/wd/hub/status", containerIpAddress),
+	}
+	for _, statusUrl := range statusUrls {
+		resp, err := client.Get(statusUrl)
+		if err != nil {
+			continue
+		}
+		body, _ := io.ReadAll(resp.Body)
+		resp.Body.Close()
+		if resp.StatusCode >= 200 && resp.StatusCode < 300 && strings.Contains(string(body), `"ready":true`) {
+			return true
+		}
+	}
+	return false
+}
@@ -1,8 +1,13 @@
 package main
 
 import (
+	"context"
 	"log"
 	"net/http"
+	"os"
+	"os/signal"
+	"syscall"
+	"time"
 
 	"github.com/balakshievas/Jelenoid/container-manager/api"
 	"github.com/balakshievas/Jelenoid/container-manager/config"
@@ -31,14 +36,42 @@ func main() {
 	mux.HandleFunc("POST /api/containers/playwright", handler.StartPlaywright)
 	mux.HandleFunc("POST /api/containers/selenium", handler.StartSelenium)
 
+	// Warm pool
+	mux.HandleFunc("PUT /api/pool/selenium", handler.ConfigureSeleniumPool)
+	mux.HandleFunc("PUT /api/pool/playwright", handler.ConfigurePlaywrightPool)
+	mux.HandleFunc("POST /api/playwright/prepare", handler.PreparePlaywright)
+	mux.HandleFunc("GET /api/playwright/stats", handler.PlaywrightStats)
+	mux.HandleFunc("GET /api/pool", handler.PoolStats)
+
 	// Healthcheck
 	mux.HandleFunc("GET /health", func(w http.ResponseWriter, r *http.Request) {
 		w.WriteHeader(http.StatusOK)
 		w.Write([]byte(`{"status":"UP"}`))
 	})
 
-	log.Printf("Starting Container Manager on port %s...", cfg.Port)
-	if err := http.ListenAndServe(":"+cfg.Port, mux); err != nil {
-		log.Fatalf("Server stopped: %v", err)
+	server := &http.Server{
+		Addr:    ":" + cfg.Port,
+		Handler: mux,
+	}
+
+	go func() {
+		log.Printf("Starting Container Manager on port %s...", cfg.Port)
+		if err := server.ListenAndServe(); err != nil && err != http.ErrServerClosed {
+			log.Fatalf("Server stopped: %v", err)
+		}
+	}()
+
+	quit := make(chan os.Signal, 1)
+	signal.Notify(quit, syscall.SIGINT, syscall.SIGTERM)
+	<-quit
+
+	log.Println("Shutting down Container Manager...")
+	// Тёплые контейнеры никому не выданы — гасим, чтобы не оставлять сирот.
+	dockerManager.Pool.Close()
+
+	ctx, cancel := context.WithTimeout(context.Background(), 10*time.Second)
+	defer cancel()
+	if err := server.Shutdown(ctx); err != nil {
+		log.Printf("Server forced to shutdown: %v", err)
 	}
 }
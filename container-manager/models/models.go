@@ -21,3 +21,42 @@ func NewContainerInfo(id, name string) *ContainerInfo {
 func (c *ContainerInfo) UpdateActivity() {
 	c.LastActivity = time.Now().UnixMilli()
 }
+
+type WarmPoolStats struct {
+	Key        string  `json:"key"`
+	Min        int     `json:"min"`
+	Max        int     `json:"max"`
+	Target     int     `json:"target"`
+	Ready      int     `json:"ready"`
+	Starting   int     `json:"starting"`
+	Hits       int64   `json:"hits"`
+	Misses     int64   `json:"misses"`
+	HitRate    float64 `json:"hitRate"`
+	Evicted    int64   `json:"evicted"`
+	Failures   int64   `json:"failures"`
+	LeaseAvgMs int64   `json:"leaseAvgMs"`
+	LeaseMaxMs int64   `json:"leaseMaxMs"`
+}
+
+type PlaywrightStats struct {
+	Images   []PlaywrightImageStats   `json:"images"`
+	Startups []PlaywrightStartupStats `json:"startups"`
+}
+
+type PlaywrightImageStats struct {
+	Image   string `json:"image"`
+	Version string `json:"version"`
+	Tag     string `json:"tag"`
+	State   string `json:"state"`
+	Error   string `json:"error,omitempty"`
+	BuildMs int64  `json:"buildMs"`
+}
+
+type PlaywrightStartupStats struct {
+	Version string `json:"version"`
+	Mode    string `json:"mode"`
+	Starts  int64  `json:"starts"`
+	AvgMs   int64  `json:"avgMs"`
+	MaxMs   int64  `json:"maxMs"`
+	LastMs  int64  `json:"lastMs"`
+}
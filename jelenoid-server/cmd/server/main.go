@@ -20,7 +20,7 @@ func main() {
 	cfg := config.Load()
 
 	statusChan := make(chan struct{}, 256)
-	sseHub := services.NewSSEHub()
+	sseHub := services.NewSSEHub(cfg.SSEReplaySize)
 
 	dockerService := services.NewDockerExternalService(cfg.ContainerManagerAddr)
 	browserManager := services.NewBrowserManagerService(cfg.BrowsersConfigDir)
@@ -35,6 +35,14 @@ func main() {
 		statusChan,
 		cfg.EnableQueue,
 	)
+	timeouts := services.NewTimingWheel(time.Duration(cfg.TimeoutPrecisionMs) * time.Millisecond)
+	go timeouts.Run()
+	activeSessions.SetTimingWheel(timeouts)
+	activeSessions.ConfigureSeleniumQueue(services.SeleniumQueueConfig{
+		Discipline: cfg.SeleniumQueueDiscipline,
+		FairKey:    cfg.SeleniumQueueFairKey,
+		Weights:    cfg.SeleniumQueueWeights,
+	})
 	seleniumService := services.NewSeleniumSessionService(
 		activeSessions,
 		browserManager,
@@ -43,26 +51,35 @@ func main() {
 		cfg.PublicHost,
 		cfg.ServerPort,
 		cfg.PublicHost,
+		cfg.ProxyBufferSize,
+		cfg.SessionPoolSize,
+		cfg.ProxyMode,
 	)
 	activeSessions.SetSeleniumService(seleniumService)
 
+	go retryStartup("sync selenium warm pools", seleniumService.SyncWarmPools)
+
 	playwrightPool := services.NewPlaywrightContainerPool(dockerService, services.PlaywrightPoolConfig{
-		Enabled:   cfg.PlaywrightPoolEnabled,
-		IdleMs:    cfg.PlaywrightPoolIdleMs,
-		MaxSize:   cfg.PlaywrightPoolMaxSize,
-		MaxPerKey: cfg.PlaywrightPoolMaxPerKey,
+		Enabled:             cfg.PlaywrightPoolEnabled,
+		IdleMs:              cfg.PlaywrightPoolIdleMs,
+		MaxSize:             cfg.PlaywrightPoolMaxSize,
+		MaxPerKey:           cfg.PlaywrightPoolMaxPerKey,
+		ClientsPerContainer: cfg.PlaywrightPoolClients,
+		RetireAfter:         cfg.PlaywrightPoolRetire,
 	})
 	defer playwrightPool.StopAll()
 
 	statusService := services.NewStatusService(activeSessions, playwrightPool)
 	statusNotifier := services.NewStatusNotifier(sseHub, statusService)
 
-	sseHub.SetInitialDataBuilder(func() services.SSEEvent {
-		return services.SSEEvent{
-			Event: "state-update",
-			Data:  statusNotifier.GetStatus(),
-		}
-	})
+	// Первый снимок состояния для подписчиков, дальше хаб получает дельты.
+	statusNotifier.OnStatusChanged()
+
+	compression := services.CompressionConfig{
+		Enabled:   cfg.WSCompression,
+		Level:     cfg.WSCompressionLevel,
+		Threshold: cfg.WSCompressionMinSize,
+	}
 
 	playwrightService := services.NewPlaywrightSessionService(
 		activeSessions,
@@ -71,15 +88,38 @@ func main() {
 		playwrightPool,
 		statusChan,
 		cfg.SessionTimeoutMs,
+		cfg.PlaywrightPrepareImages,
+		services.PlaywrightRelayConfig{
+			HighWatermark: cfg.PlaywrightRelayHigh,
+			LowWatermark:  cfg.PlaywrightRelayLow,
+			MaxFrameSize:  cfg.PlaywrightMaxFrameSize,
+		},
+		services.PlaywrightQueueConfig{
+			TimeoutMs:      cfg.PlaywrightQueueTimeout,
+			PingIntervalMs: cfg.PlaywrightPingInterval,
+		},
+		compression,
 	)
 
+	go retryStartup("prepare playwright images", playwrightService.PrepareImages)
+
 	wdHubHandler := handlers.NewWdHubHandler(seleniumService, activeSessions)
 	activeSessionsHandler := handlers.NewActiveSessionsHandler(activeSessions)
-	browserManagerHandler := handlers.NewBrowserManagerHandler(browserManager)
+	browserManagerHandler := handlers.NewBrowserManagerHandler(browserManager, seleniumService, playwrightService)
 	eventsHandler := handlers.NewEventsHandler(sseHub)
 	logsHandler := handlers.NewLogsHandler(seleniumService)
-	devToolsHandler := handlers.NewDevToolsProxyHandler(activeSessions)
-	vncHandler := handlers.NewVncProxyHandler(activeSessions)
+	devToolsProxy := services.NewDevToolsProxy(activeSessions, services.DevToolsProxyConfig{
+		MaxMessageSize: cfg.CDPMaxMessageSize,
+		BufferBytes:    cfg.CDPBufferSize,
+		Multiplex:      cfg.CDPMultiplex,
+	}, compression)
+	devToolsHandler := handlers.NewDevToolsProxyHandler(activeSessions, devToolsProxy)
+	vncProxy := services.NewVncProxy(activeSessions, services.VncProxyConfig{
+		Broadcast:     cfg.VNCBroadcast,
+		Password:      cfg.VNCPassword,
+		ViewerBacklog: cfg.VNCViewerBacklog,
+	})
+	vncHandler := handlers.NewVncProxyHandler(activeSessions, vncProxy)
 
 	mux := http.NewServeMux()
 
@@ -93,7 +133,12 @@ func main() {
 	mux.HandleFunc("/api/limit/sessions", activeSessionsHandler.GetAllSessions)
 	mux.HandleFunc("/api/limit/request", activeSessionsHandler.GetAllPendingRequests)
 	mux.HandleFunc("/api/limit/sessions/size", activeSessionsHandler.GetAllSessionsSize)
+	mux.HandleFunc("/api/limit/sessions/pools", activeSessionsHandler.GetSessionPools)
 	mux.HandleFunc("/api/limit/request/size", activeSessionsHandler.GetAllPendingRequestsSize)
+	mux.HandleFunc("/api/limit/request/stats", activeSessionsHandler.GetPendingRequestsStats)
+	mux.HandleFunc("/api/limit/playwright/relays", activeSessionsHandler.GetPlaywrightRelays)
+	mux.HandleFunc("/api/limit/playwright/queue/stats", activeSessionsHandler.GetPlaywrightQueueStats)
+	mux.HandleFunc("/api/runtime", activeSessionsHandler.GetRuntime)
 
 	mux.HandleFunc("/api/browsers", func(w http.ResponseWriter, r *http.Request) {
 		switch r.Method {
@@ -157,15 +202,6 @@ func main() {
 		}
 	}()
 
-	go func() {
-		ticker := time.NewTicker(time.Duration(cfg.StartupTimeoutMs) * time.Millisecond)
-		defer ticker.Stop()
-		for range ticker.C {
-			activeSessions.CheckInactiveSessions()
-			playwrightService.CheckSessionTimeouts()
-		}
-	}()
-
 	addr := fmt.Sprintf(":%d", cfg.ServerPort)
 	log.Printf("Starting jelenoid server on %s", addr)
 
@@ -185,6 +221,7 @@ func main() {
 	<-quit
 
 	log.Println("Shutting down server...")
+	timeouts.Close()
 	activeSessions.Cleanup()
 	playwrightService.Shutdown()
 	browserManager.Shutdown()
@@ -197,3 +234,16 @@ func main() {
 
 	log.Println("Server exited")
 }
+
+// retryStartup повторяет шаг запуска, которому нужен container-manager:
+// он может подняться позже хаба.
+func retryStartup(what string, fn func() error) {
+	for attempt := 1; attempt <= 10; attempt++ {
+		err := fn()
+		if err == nil {
+			return
+		}
+		log.Printf("Failed to %s (attempt %d): %v", what, attempt, err)
+		time.Sleep(5 * time.Second)
+	}
+}
@@ -15,7 +15,20 @@ type Config struct {
 	BrowsersConfigDir     string
 	QueueTimeoutMs        int64
 	SessionTimeoutMs      int64
-	StartupTimeoutMs      int64
+	TimeoutPrecisionMs    int64
+	ProxyBufferSize       int
+	SessionPoolSize       int
+	ProxyMode             string
+	WSCompression         bool
+	WSCompressionLevel    int
+	WSCompressionMinSize  int
+	CDPMaxMessageSize     int64
+	CDPBufferSize         int64
+	CDPMultiplex          bool
+	VNCBroadcast          bool
+	VNCPassword           string
+	VNCViewerBacklog      int64
+	SSEReplaySize         int
 	UIHosts               []string
 	PlaywrightMaxSessions int
 	PlaywrightQueueLimit  int
@@ -25,6 +38,18 @@ type Config struct {
 	PlaywrightPoolIdleMs    int64
 	PlaywrightPoolMaxSize   int
 	PlaywrightPoolMaxPerKey int
+	PlaywrightPoolClients   int
+	PlaywrightPoolRetire    int
+	PlaywrightPrepareImages bool
+	PlaywrightRelayHigh     int64
+	PlaywrightRelayLow      int64
+	PlaywrightMaxFrameSize  int64
+	PlaywrightQueueTimeout  int64
+	PlaywrightPingInterval  int64
+
+	SeleniumQueueDiscipline string
+	SeleniumQueueFairKey    string
+	SeleniumQueueWeights    map[string]int
 }
 
 func Load() *Config {
@@ -37,7 +62,20 @@ func Load() *Config {
 		BrowsersConfigDir:     getEnvStr("BROWSERS_FILE", "browsers.json"),
 		QueueTimeoutMs:        getEnvInt64("QUEUE_TIMEOUT", 30000),
 		SessionTimeoutMs:      getEnvInt64("SESSION_TIMEOUT", 600000),
-		StartupTimeoutMs:      getEnvInt64("STARTUP_TIMEOUT", 30000),
+		TimeoutPrecisionMs:    getEnvInt64("TIMEOUT_PRECISION", 100),
+		ProxyBufferSize:       getEnvInt("PROXY_BUFFER_SIZE", 32768),
+		SessionPoolSize:       getEnvInt("SESSION_POOL_SIZE", 4),
+		ProxyMode:             getEnvStr("PROXY_MODE", "reverse"),
+		WSCompression:         getEnvBool("WS_COMPRESSION_ENABLED", false),
+		WSCompressionLevel:    getEnvInt("WS_COMPRESSION_LEVEL", 1),
+		WSCompressionMinSize:  getEnvInt("WS_COMPRESSION_THRESHOLD", 1024),
+		CDPMaxMessageSize:     getEnvInt64("CDP_MAX_MESSAGE_SIZE", 67108864),
+		CDPBufferSize:         getEnvInt64("CDP_BUFFER_SIZE", 1048576),
+		CDPMultiplex:          getEnvBool("CDP_MULTIPLEX", false),
+		VNCBroadcast:          getEnvBool("VNC_BROADCAST", false),
+		VNCPassword:           getEnvStr("VNC_PASSWORD", "selenoid"),
+		VNCViewerBacklog:      getEnvInt64("VNC_VIEWER_BACKLOG", 16777216),
+		SSEReplaySize:         getEnvInt("SSE_REPLAY_SIZE", 256),
 		UIHosts:               getEnvSlice("UI_HOSTS_LIST", []string{"http://localhost:3000", "http://localhost:4444"}),
 		PlaywrightMaxSessions: getEnvInt("PLAYWRIGHT_SESSION_LIMIT", 10),
 		PlaywrightQueueLimit:  getEnvInt("PLAYWRIGHT_QUEUE_LIMIT", 100),
@@ -47,6 +85,18 @@ func Load() *Config {
 		PlaywrightPoolIdleMs:    getEnvInt64("PLAYWRIGHT_CONTAINER_POOL_IDLE_MS", 60000),
 		PlaywrightPoolMaxSize:   getEnvInt("PLAYWRIGHT_CONTAINER_POOL_MAX_SIZE", 10),
 		PlaywrightPoolMaxPerKey: getEnvInt("PLAYWRIGHT_CONTAINER_POOL_MAX_PER_KEY", 5),
+		PlaywrightPoolClients:   getEnvInt("PLAYWRIGHT_CONTAINER_POOL_CLIENTS_PER_CONTAINER", 1),
+		PlaywrightPoolRetire:    getEnvInt("PLAYWRIGHT_CONTAINER_POOL_RETIRE_AFTER", 0),
+		PlaywrightPrepareImages: getEnvBool("PLAYWRIGHT_PREPARE_IMAGES", true),
+		PlaywrightRelayHigh:     getEnvInt64("PLAYWRIGHT_RELAY_HIGH_WATERMARK", 4194304),
+		PlaywrightRelayLow:      getEnvInt64("PLAYWRIGHT_RELAY_LOW_WATERMARK", 1048576),
+		PlaywrightMaxFrameSize:  getEnvInt64("PLAYWRIGHT_MAX_FRAME_SIZE", 67108864),
+		PlaywrightQueueTimeout:  getEnvInt64("PLAYWRIGHT_QUEUE_TIMEOUT", 300000),
+		PlaywrightPingInterval:  getEnvInt64("PLAYWRIGHT_QUEUE_PING_INTERVAL", 15000),
+
+		SeleniumQueueDiscipline: getEnvStr("SELENIUM_QUEUE_DISCIPLINE", "fifo"),
+		SeleniumQueueFairKey:    getEnvStr("SELENIUM_QUEUE_FAIR_KEY", "token"),
+		SeleniumQueueWeights:    getEnvIntMap("SELENIUM_QUEUE_WEIGHTS"),
 	}
 }
 
@@ -82,6 +132,21 @@ func getEnvSlice(key string, fallback []string) []string {
 	return fallback
 }
 
+// getEnvIntMap разбирает значения вида "a=3,b=1"; некорректные пары пропускаются.
+func getEnvIntMap(key string) map[string]int {
+	result := make(map[string]int)
+	for _, pair := range strings.Split(os.Getenv(key), ",") {
+		k, v, ok := strings.Cut(strings.TrimSpace(pair), "=")
+		if !ok || k == "" {
+			continue
+		}
+		if i, err := strconv.Atoi(strings.TrimSpace(v)); err == nil {
+			result[strings.TrimSpace(k)] = i
+		}
+	}
+	return result
+}
+
 func getEnvBool(key string, fallback bool) bool {
 	if v := os.Getenv(key); v != "" {
 		if b, err := strconv.ParseBool(v); err == nil {
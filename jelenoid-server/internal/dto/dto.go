@@ -1,6 +1,7 @@
 package dto
 
 import (
+	"encoding/json"
 	"sync/atomic"
 	"time"
 )
@@ -11,6 +12,9 @@ type BrowserInfo struct {
 	DockerImageName  string `json:"dockerImageName"`
 	IsDefault        bool   `json:"isDefault"`
 	WireBrowserName  string `json:"wireBrowserName,omitempty"`
+	WarmPool         int    `json:"warmPool,omitempty"`
+	WarmPoolMax      int    `json:"warmPoolMax,omitempty"`
+	Limit            int    `json:"limit,omitempty"`
 }
 
 type ContainerInfo struct {
@@ -76,12 +80,64 @@ func (s *SeleniumSession) GetStartTime() time.Time {
 }
 
 type PendingRequest struct {
+	RequestID   string                    `json:"requestId"`
 	RequestBody map[string]interface{}    `json:"requestBody"`
 	Browser     string                    `json:"browser"`
 	Version     string                    `json:"version"`
+	QueueKey    string                    `json:"queueKey"`
+	Priority    int                       `json:"priority"`
+	BrowserInfo *BrowserInfo              `json:"-"`
 	Future      chan PendingRequestResult `json:"-"`
 	QueuedTime  time.Time                 `json:"queuedTime"`
 	StartTime   int64                     `json:"startTime"`
+
+	state int32
+}
+
+const (
+	pendingStateWaiting int32 = iota
+	pendingStateClaimed
+	pendingStateCancelled
+)
+
+// Claim забирает запрос диспетчером; false — ожидающий уже ушёл по таймауту.
+func (r *PendingRequest) Claim() bool {
+	return atomic.CompareAndSwapInt32(&r.state, pendingStateWaiting, pendingStateClaimed)
+}
+
+// Cancel отменяет ожидание; false — запрос уже забран и результат придёт в Future.
+func (r *PendingRequest) Cancel() bool {
+	return atomic.CompareAndSwapInt32(&r.state, pendingStateWaiting, pendingStateCancelled)
+}
+
+type SessionPoolStats struct {
+	SessionID string `json:"sessionId"`
+	Leased    int    `json:"leased"`
+	Pending   int    `json:"pending"`
+	Available int    `json:"available"`
+	Opened    int64  `json:"opened"`
+}
+
+type RelayDirectionStats struct {
+	BufferedBytes int64 `json:"bufferedBytes"`
+	PeakBytes     int64 `json:"peakBytes"`
+	Pauses        int64 `json:"pauses"`
+}
+
+type PlaywrightRelayStats struct {
+	ClientSessionID string              `json:"clientSessionId"`
+	Version         string              `json:"version"`
+	ToContainer     RelayDirectionStats `json:"toContainer"`
+	ToClient        RelayDirectionStats `json:"toClient"`
+}
+
+type RuntimeStats struct {
+	Goroutines         int    `json:"goroutines"`
+	Threads            int    `json:"threads"`
+	MaxProcs           int    `json:"maxProcs"`
+	HeapAllocBytes     uint64 `json:"heapAllocBytes"`
+	PlaywrightSessions int    `json:"playwrightSessions"`
+	SeleniumSessions   int    `json:"seleniumSessions"`
 }
 
 type PendingRequestResult struct {
@@ -90,23 +146,65 @@ type PendingRequestResult struct {
 }
 
 type QueuedRequestInfo struct {
+	RequestID  string    `json:"requestId"`
 	Browser    string    `json:"browser"`
 	Version    string    `json:"version"`
+	QueueKey   string    `json:"queueKey,omitempty"`
 	QueuedTime time.Time `json:"queuedTime"`
 }
 
+type LatencyStats struct {
+	Count int64 `json:"count"`
+	AvgMs int64 `json:"avgMs"`
+	P50Ms int64 `json:"p50Ms"`
+	P90Ms int64 `json:"p90Ms"`
+	P99Ms int64 `json:"p99Ms"`
+	MaxMs int64 `json:"maxMs"`
+}
+
+type QueueKeyStats struct {
+	Key        string       `json:"key"`
+	Depth      int          `json:"depth"`
+	Enqueued   int64        `json:"enqueued"`
+	Dispatched int64        `json:"dispatched"`
+	TimedOut   int64        `json:"timedOut"`
+	Cancelled  int64        `json:"cancelled"`
+	Wait       LatencyStats `json:"wait"`
+}
+
 type StatusResponse struct {
 	Selenium   SeleniumStat   `json:"seleniumStat"`
 	Playwright PlaywrightStat `json:"playwrightStat"`
 }
 
+// StatusDelta — изменения состояния с прошлого события /events.
+type StatusDelta struct {
+	Ops []StatusOp `json:"ops"`
+}
+
+// StatusOp — операция над элементом состояния: Path — поле StatusResponse
+// (список или сводка seleniumStat/playwrightStat), ID — ключ элемента списка.
+type StatusOp struct {
+	Op    string          `json:"op"`
+	Path  string          `json:"path"`
+	ID    string          `json:"id,omitempty"`
+	Value json.RawMessage `json:"value,omitempty"`
+}
+
 type SeleniumStat struct {
-	Total          int                 `json:"total"`
-	Used           int                 `json:"used"`
-	Queued         int                 `json:"queued"`
-	InProgress     int                 `json:"inProgress"`
-	ActiveSessions []SeleniumSession   `json:"activeSeleniumSessions"`
-	QueuedSessions []QueuedRequestInfo `json:"queuedSeleniumSession"`
+	Total          int                     `json:"total"`
+	Used           int                     `json:"used"`
+	Queued         int                     `json:"queued"`
+	InProgress     int                     `json:"inProgress"`
+	ActiveSessions []SeleniumSession       `json:"activeSeleniumSessions"`
+	QueuedSessions []QueuedRequestInfo     `json:"queuedSeleniumSession"`
+	Browsers       map[string]BrowserUsage `json:"browsers"`
+}
+
+type BrowserUsage struct {
+	InProgress int `json:"inProgress"`
+	Limit      int `json:"limit"`
+	Queued     int `json:"queued"`
 }
 
 type PlaywrightStat struct {
@@ -115,14 +213,18 @@ type PlaywrightStat struct {
 	QueuedSessions     int                     `json:"queuedPlaywrightSessionsSize"`
 	ActiveSessionPairs []SessionPairInfo       `json:"activePlaywrightSessions"`
 	QueuedSessionPairs []SessionPairInfo       `json:"queuedPlaywrightSessions"`
+	ActiveContainers   int                     `json:"activePlaywrightContainersSize"`
 	Pool               *PlaywrightPoolStatsDTO `json:"pool,omitempty"`
 }
 
 type PlaywrightPoolStatsDTO struct {
-	Enabled bool                                 `json:"enabled"`
-	MaxSize int                                  `json:"maxSize"`
-	Total   int                                  `json:"total"`
-	ByKey   map[string]PlaywrightPoolKeyStatsDTO `json:"byKey"`
+	Enabled             bool                                 `json:"enabled"`
+	MaxSize             int                                  `json:"maxSize"`
+	ClientsPerContainer int                                  `json:"clientsPerContainer"`
+	RetireAfter         int                                  `json:"retireAfter"`
+	Total               int                                  `json:"total"`
+	Clients             int                                  `json:"clients"`
+	ByKey               map[string]PlaywrightPoolKeyStatsDTO `json:"byKey"`
 }
 
 type PlaywrightPoolKeyStatsDTO struct {
@@ -130,6 +232,8 @@ type PlaywrightPoolKeyStatsDTO struct {
 	Ready    int `json:"ready"`
 	InUse    int `json:"inUse"`
 	Draining int `json:"draining"`
+	Retiring int `json:"retiring"`
+	Clients  int `json:"clients"`
 }
 
 type SessionPairInfo struct {
@@ -138,6 +242,8 @@ type SessionPairInfo struct {
 	ContainerClientURL string         `json:"containerClientUrl"`
 	PlaywrightVersion  string         `json:"playwrightVersion"`
 	ContainerInfo      *ContainerInfo `json:"containerInfo"`
+	QueuePosition      int            `json:"queuePosition,omitempty"`
+	QueuedTime         *time.Time     `json:"queuedTime,omitempty"`
 }
 
 type BrowsersConfig map[string]BrowserEntry
@@ -150,4 +256,7 @@ type BrowserEntry struct {
 type BrowserVersionInfo struct {
 	Image           string `json:"image"`
 	WireBrowserName string `json:"wireBrowserName,omitempty"`
+	WarmPool        int    `json:"warmPool,omitempty"`
+	WarmPoolMax     int    `json:"warmPoolMax,omitempty"`
+	Limit           int    `json:"limit,omitempty"`
 }
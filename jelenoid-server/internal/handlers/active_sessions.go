@@ -3,6 +3,8 @@ package handlers
 import (
 	"encoding/json"
 	"net/http"
+	"runtime"
+	"runtime/pprof"
 
 	"github.com/balakshievas/jelenoid-server-go/internal/dto"
 	"github.com/balakshievas/jelenoid-server-go/internal/services"
@@ -22,6 +24,41 @@ func (h *ActiveSessionsHandler) GetAllSessions(w http.ResponseWriter, r *http.Re
 	json.NewEncoder(w).Encode(sessions)
 }
 
+func (h *ActiveSessionsHandler) GetSessionPools(w http.ResponseWriter, r *http.Request) {
+	stats := h.activeSessions.GetSessionPoolStats()
+	w.Header().Set("Content-Type", "application/json")
+	json.NewEncoder(w).Encode(stats)
+}
+
+func (h *ActiveSessionsHandler) GetPlaywrightQueueStats(w http.ResponseWriter, r *http.Request) {
+	stats := h.activeSessions.GetPlaywrightQueueStats()
+	w.Header().Set("Content-Type", "application/json")
+	json.NewEncoder(w).Encode(stats)
+}
+
+func (h *ActiveSessionsHandler) GetPlaywrightRelays(w http.ResponseWriter, r *http.Request) {
+	stats := h.activeSessions.GetPlaywrightRelayStats()
+	w.Header().Set("Content-Type", "application/json")
+	json.NewEncoder(w).Encode(stats)
+}
+
+// GetRuntime отдаёт число горутин и потоков ОС — по нему видно, что
+// потоков не становится больше с ростом числа сессий.
+func (h *ActiveSessionsHandler) GetRuntime(w http.ResponseWriter, r *http.Request) {
+	var mem runtime.MemStats
+	runtime.ReadMemStats(&mem)
+	stats := dto.RuntimeStats{
+		Goroutines:         runtime.NumGoroutine(),
+		Threads:            pprof.Lookup("threadcreate").Count(),
+		MaxProcs:           runtime.GOMAXPROCS(0),
+		HeapAllocBytes:     mem.HeapAlloc,
+		PlaywrightSessions: h.activeSessions.UsedPlaywrightSlots(),
+		SeleniumSessions:   h.activeSessions.GetInProgressCount(),
+	}
+	w.Header().Set("Content-Type", "application/json")
+	json.NewEncoder(w).Encode(stats)
+}
+
 func (h *ActiveSessionsHandler) GetAllPendingRequests(w http.ResponseWriter, r *http.Request) {
 	requests := h.activeSessions.GetSeleniumPendingRequests()
 	var result []dto.PendingRequest
@@ -42,4 +79,10 @@ func (h *ActiveSessionsHandler) GetAllPendingRequestsSize(w http.ResponseWriter,
 	count := h.activeSessions.GetQueueSize()
 	w.Header().Set("Content-Type", "application/json")
 	json.NewEncoder(w).Encode(count)
-}
\ No newline at end of file
+}
+
+func (h *ActiveSessionsHandler) GetPendingRequestsStats(w http.ResponseWriter, r *http.Request) {
+	stats := h.activeSessions.GetSeleniumQueueStats()
+	w.Header().Set("Content-Type", "application/json")
+	json.NewEncoder(w).Encode(stats)
+}
@@ -2,6 +2,7 @@ package handlers
 
 import (
 	"encoding/json"
+	"log"
 	"net/http"
 
 	"github.com/balakshievas/jelenoid-server-go/internal/dto"
@@ -9,11 +10,21 @@ import (
 )
 
 type BrowserManagerHandler struct {
-	browserManager *services.BrowserManagerService
+	browserManager    *services.BrowserManagerService
+	seleniumService   *services.SeleniumSessionService
+	playwrightService *services.PlaywrightSessionService
 }
 
-func NewBrowserManagerHandler(browserManager *services.BrowserManagerService) *BrowserManagerHandler {
-	return &BrowserManagerHandler{browserManager: browserManager}
+func NewBrowserManagerHandler(
+	browserManager *services.BrowserManagerService,
+	seleniumService *services.SeleniumSessionService,
+	playwrightService *services.PlaywrightSessionService,
+) *BrowserManagerHandler {
+	return &BrowserManagerHandler{
+		browserManager:    browserManager,
+		seleniumService:   seleniumService,
+		playwrightService: playwrightService,
+	}
 }
 
 func (h *BrowserManagerHandler) GetBrowsers(w http.ResponseWriter, r *http.Request) {
@@ -29,6 +40,16 @@ func (h *BrowserManagerHandler) AddBrowser(w http.ResponseWriter, r *http.Reques
 		return
 	}
 	result := h.browserManager.AddBrowser(&browserInfo)
+	if result == &browserInfo {
+		go func() {
+			if err := h.playwrightService.PrepareImage(result); err != nil {
+				log.Printf("Failed to prepare image for %s:%s: %v", result.Name, result.Version, err)
+			}
+		}()
+	}
+	if result == &browserInfo && (result.WarmPool > 0 || result.WarmPoolMax > 0) {
+		go h.applyWarmPool(result, result.WarmPool)
+	}
 	w.Header().Set("Content-Type", "application/json")
 	json.NewEncoder(w).Encode(result)
 }
@@ -41,6 +62,21 @@ func (h *BrowserManagerHandler) DeleteBrowser(w http.ResponseWriter, r *http.Req
 		return
 	}
 	result := h.browserManager.DeleteBrowser(browserName, browserVersion)
+	if result != nil && (result.WarmPool > 0 || result.WarmPoolMax > 0) {
+		go h.disableWarmPool(result)
+	}
 	w.Header().Set("Content-Type", "application/json")
 	json.NewEncoder(w).Encode(result)
-}
\ No newline at end of file
+}
+
+func (h *BrowserManagerHandler) applyWarmPool(info *dto.BrowserInfo, size int) {
+	if err := h.seleniumService.ApplyWarmPool(info, size); err != nil {
+		log.Printf("Failed to configure warm pool for %s:%s: %v", info.Name, info.Version, err)
+	}
+}
+
+func (h *BrowserManagerHandler) disableWarmPool(info *dto.BrowserInfo) {
+	if err := h.seleniumService.DisableWarmPool(info); err != nil {
+		log.Printf("Failed to disable warm pool for %s:%s: %v", info.Name, info.Version, err)
+	}
+}
@@ -3,23 +3,19 @@ package handlers
 import (
 	"fmt"
 	"net/http"
-	"sync"
 
 	"github.com/balakshievas/jelenoid-server-go/internal/services"
-	"github.com/gorilla/websocket"
 )
 
 type DevToolsProxyHandler struct {
 	activeSessions *services.ActiveSessionsService
-	upgrader       websocket.Upgrader
+	proxy          *services.DevToolsProxy
 }
 
-func NewDevToolsProxyHandler(activeSessions *services.ActiveSessionsService) *DevToolsProxyHandler {
+func NewDevToolsProxyHandler(activeSessions *services.ActiveSessionsService, proxy *services.DevToolsProxy) *DevToolsProxyHandler {
 	return &DevToolsProxyHandler{
 		activeSessions: activeSessions,
-		upgrader: websocket.Upgrader{
-			CheckOrigin: func(r *http.Request) bool { return true },
-		},
+		proxy:          proxy,
 	}
 }
 
@@ -52,46 +48,5 @@ func (h *DevToolsProxyHandler) ServeHTTP(w http.ResponseWriter, r *http.Request)
 		session.DebuggerAddress,
 	)
 
-	clientConn, err := h.upgrader.Upgrade(w, r, nil)
-	if err != nil {
-		return
-	}
-	defer clientConn.Close()
-
-	containerConn, _, err := websocket.DefaultDialer.Dial(targetURL, nil)
-	if err != nil {
-		return
-	}
-	defer containerConn.Close()
-
-	var wg sync.WaitGroup
-	wg.Add(2)
-
-	go func() {
-		defer wg.Done()
-		for {
-			messageType, message, err := containerConn.ReadMessage()
-			if err != nil {
-				return
-			}
-			if err := clientConn.WriteMessage(messageType, message); err != nil {
-				return
-			}
-		}
-	}()
-
-	go func() {
-		defer wg.Done()
-		for {
-			messageType, message, err := clientConn.ReadMessage()
-			if err != nil {
-				return
-			}
-			if err := containerConn.WriteMessage(messageType, message); err != nil {
-				return
-			}
-		}
-	}()
-
-	wg.Wait()
+	h.proxy.ServeSession(w, r, sessionID, targetURL)
 }
@@ -1,10 +1,7 @@
 package handlers
 
 import (
-	"net"
 	"net/http"
-	"sync"
-	"time"
 
 	"github.com/balakshievas/jelenoid-server-go/internal/services"
 	"github.com/gorilla/websocket"
@@ -12,12 +9,14 @@ import (
 
 type VncProxyHandler struct {
 	activeSessions *services.ActiveSessionsService
+	proxy          *services.VncProxy
 	upgrader       websocket.Upgrader
 }
 
-func NewVncProxyHandler(activeSessions *services.ActiveSessionsService) *VncProxyHandler {
+func NewVncProxyHandler(activeSessions *services.ActiveSessionsService, proxy *services.VncProxy) *VncProxyHandler {
 	return &VncProxyHandler{
 		activeSessions: activeSessions,
+		proxy:          proxy,
 		upgrader: websocket.Upgrader{
 			CheckOrigin:  func(r *http.Request) bool { return true },
 			Subprotocols: []string{"binary"},
@@ -25,12 +24,6 @@ func NewVncProxyHandler(activeSessions *services.ActiveSessionsService) *VncProx
 	}
 }
 
-var vncBufPool = sync.Pool{
-	New: func() interface{} {
-		return make([]byte, 8192)
-	},
-}
-
 func (h *VncProxyHandler) ServeHTTP(w http.ResponseWriter, r *http.Request) {
 	const prefix = "/vnc/"
 	if len(r.URL.Path) <= len(prefix) {
@@ -58,47 +51,5 @@ func (h *VncProxyHandler) ServeHTTP(w http.ResponseWriter, r *http.Request) {
 		return
 	}
 
-	vncConn, err := net.DialTimeout("tcp", containerInfo.ContainerName+":5900", 5*time.Second)
-	if err != nil {
-		clientConn.WriteMessage(websocket.CloseMessage, websocket.FormatCloseMessage(websocket.CloseTryAgainLater, "VNC connection failed"))
-		return
-	}
-	defer vncConn.Close()
-
-	var wg sync.WaitGroup
-	wg.Add(2)
-
-	go func() {
-		defer wg.Done()
-		buf := vncBufPool.Get().([]byte)
-		defer vncBufPool.Put(buf)
-		for {
-			vncConn.SetReadDeadline(time.Now().Add(30 * time.Second))
-			n, err := vncConn.Read(buf)
-			if err != nil {
-				break
-			}
-			if err := clientConn.WriteMessage(websocket.BinaryMessage, buf[:n]); err != nil {
-				break
-			}
-		}
-	}()
-
-	go func() {
-		defer wg.Done()
-		for {
-			clientConn.SetReadDeadline(time.Now().Add(30 * time.Second))
-			messageType, message, err := clientConn.ReadMessage()
-			if err != nil {
-				break
-			}
-			if messageType == websocket.BinaryMessage {
-				if _, err := vncConn.Write(message); err != nil {
-					break
-				}
-			}
-		}
-	}()
-
-	wg.Wait()
-}
\ No newline at end of file
+	h.proxy.Serve(clientConn, sessionID, containerInfo.ContainerName)
+}
@@ -28,7 +28,7 @@ func (h *WdHubHandler) CreateSession(w http.ResponseWriter, r *http.Request) {
 		return
 	}
 
-	result, err := h.seleniumService.CreateSessionOrQueue(requestBody)
+	result, err := h.seleniumService.CreateSessionOrQueue(r.Context(), requestBody, r.Header.Get("Authorization"))
 	if err != nil {
 		if httpErr, ok := err.(*services.HTTPError); ok {
 			WriteErrorJSON(w, httpErr.StatusCode, httpErr.Message)
@@ -1,8 +1,12 @@
 package services
 
 import (
+	"crypto/sha256"
+	"encoding/hex"
+	"fmt"
 	"net/http"
-	"net/http/httputil"
+	"sort"
+	"strings"
 	"sync"
 	"sync/atomic"
 	"time"
@@ -12,8 +16,12 @@ import (
 )
 
 type sessionEntry struct {
-	session *dto.SeleniumSession
-	proxy   *httputil.ReverseProxy
+	session   *dto.SeleniumSession
+	proxy     http.Handler
+	transport *sessionTransport
+	timer     *wheelTimer
+	cdp       *cdpMux
+	vnc       *vncBroadcaster
 }
 
 type ActiveSessionsService struct {
@@ -26,20 +34,33 @@ type ActiveSessionsService struct {
 
 	seleniumSessionsMu sync.RWMutex
 	seleniumSessions   map[string]*sessionEntry
-	seleniumInProgress atomic.Int32
+	seleniumCapacity   *capacity
 
-	seleniumQueue   *queue[*dto.PendingRequest]
-	seleniumQueueMu sync.Mutex
+	browserSlotsMu sync.RWMutex
+	browserSlots   map[string]*capacity
+
+	seleniumQueues     map[string]pendingQueue
+	seleniumQueueSize  int
+	newSeleniumQueue   func() pendingQueue
+	seleniumQueueMu    sync.Mutex
+	seleniumQueueKey   string
+	seleniumQueueStats map[string]*queueKeyStats
+	seleniumReleased   chan struct{}
+
+	// Отмена таймаута ожидания каждого запроса в очереди.
+	seleniumQueueTimers map[*dto.PendingRequest]func()
 
 	playwrightSessionsMu sync.RWMutex
 	playwrightSessions   map[*websocket.Conn]*PlaywrightSessionPair
-	playwrightSemaphore  chan struct{}
+	playwrightCapacity   *capacity
 
-	playwrightQueue   *queue[*PlaywrightQueuedSession]
-	playwrightQueueMu sync.Mutex
+	playwrightQueue      *queue[*PlaywrightQueuedSession]
+	playwrightQueueMu    sync.Mutex
+	playwrightQueueStats map[string]*queueKeyStats
 
 	dockerService   *DockerExternalService
 	seleniumService *SeleniumSessionService
+	timeouts        *TimingWheel
 	statusChan      chan struct{}
 	enableQueue     bool
 }
@@ -52,14 +73,51 @@ type PlaywrightSessionPair struct {
 	Version               string
 	ConnectionEstablished atomic.Bool
 	Lock                  sync.Mutex
-	PendingMessages       [][]byte
 	RequestHeaders        http.Header
+	timeoutTimer          *wheelTimer
+
+	// Кадры клиента копятся в toContainer и до подключения к контейнеру.
+	toContainer *frameRelay
+	toClient    *frameRelay
+	// clientGone закрывается, когда чтение из клиентского сокета завершилось.
+	clientGone chan struct{}
+
+	// queued — сессия стоит в очереди; пока это так, её сокет пингуется
+	// и ожидание ограничено дедлайном.
+	queued     atomic.Bool
+	queuedAt   time.Time
+	queueTimer *wheelTimer
+	pingTimer  *wheelTimer
 }
 
 type PlaywrightQueuedSession struct {
 	Pair *PlaywrightSessionPair
 }
 
+type queueKeyStats struct {
+	depth      int
+	enqueued   int64
+	dispatched int64
+	timedOut   int64
+	cancelled  int64
+	wait       latencyHistogram
+}
+
+type admission int
+
+const (
+	admissionReserved admission = iota
+	admissionQueued
+	admissionQueueDisabled
+	admissionQueueFull
+)
+
+type SeleniumQueueConfig struct {
+	Discipline string
+	FairKey    string
+	Weights    map[string]int
+}
+
 func NewActiveSessionsService(
 	seleniumSessionLimit, seleniumQueueLimit int,
 	sessionTimeoutMs, queueTimeoutMs int64,
@@ -76,10 +134,18 @@ func NewActiveSessionsService(
 		playwrightMaxSessions: playwrightMaxSessions,
 		playwrightQueueLimit:  playwrightQueueLimit,
 		seleniumSessions:      make(map[string]*sessionEntry),
-		seleniumQueue:         newQueue[*dto.PendingRequest](seleniumQueueLimit),
+		seleniumCapacity:      newCapacity(seleniumSessionLimit),
+		browserSlots:          make(map[string]*capacity),
+		seleniumQueues:        make(map[string]pendingQueue),
+		newSeleniumQueue:      func() pendingQueue { return newQueue[*dto.PendingRequest](0) },
+		seleniumQueueKey:      "token",
+		seleniumQueueStats:    make(map[string]*queueKeyStats),
+		seleniumReleased:      make(chan struct{}, 1),
+		seleniumQueueTimers:   make(map[*dto.PendingRequest]func()),
 		playwrightSessions:    make(map[*websocket.Conn]*PlaywrightSessionPair),
-		playwrightSemaphore:   make(chan struct{}, playwrightMaxSessions),
+		playwrightCapacity:    newCapacity(playwrightMaxSessions),
 		playwrightQueue:       newQueue[*PlaywrightQueuedSession](playwrightQueueLimit),
+		playwrightQueueStats:  make(map[string]*queueKeyStats),
 		dockerService:         dockerService,
 		statusChan:            statusChan,
 		enableQueue:           enableQueue,
@@ -90,31 +156,235 @@ func (s *ActiveSessionsService) SetSeleniumService(svc *SeleniumSessionService)
 	s.seleniumService = svc
 }
 
+// SetTimingWheel подключает колесо таймеров, по которому истекают
+// неактивные сессии и ожидание в очереди. Без него таймауты не взводятся.
+func (s *ActiveSessionsService) SetTimingWheel(w *TimingWheel) {
+	s.timeouts = w
+}
+
+func (s *ActiveSessionsService) afterFunc(d time.Duration, fn func()) *wheelTimer {
+	if s.timeouts == nil {
+		return nil
+	}
+	return s.timeouts.afterFunc(d, fn)
+}
+
+func (s *ActiveSessionsService) stopTimer(t *wheelTimer) {
+	if s.timeouts != nil {
+		s.timeouts.stop(t)
+	}
+}
+
+// ConfigureSeleniumQueue выбирает дисциплину очереди: "fifo" (по умолчанию)
+// или "fair" — взвешенная справедливая очередь по ключу FairKey
+// ("token" — заголовок Authorization, "label:<name>" — selenoid:options.labels.<name>).
+// Вызывается до начала обслуживания запросов.
+func (s *ActiveSessionsService) ConfigureSeleniumQueue(cfg SeleniumQueueConfig) {
+	s.seleniumQueueMu.Lock()
+	defer s.seleniumQueueMu.Unlock()
+	if cfg.Discipline == "fair" {
+		weights := cfg.Weights
+		s.newSeleniumQueue = func() pendingQueue { return newFairQueue(weights) }
+	} else {
+		s.newSeleniumQueue = func() pendingQueue { return newQueue[*dto.PendingRequest](0) }
+	}
+	s.seleniumQueues = make(map[string]pendingQueue)
+	s.seleniumQueueSize = 0
+	if cfg.FairKey != "" {
+		s.seleniumQueueKey = cfg.FairKey
+	}
+}
+
+// SeleniumQueueKey возвращает ключ арендатора и приоритет запроса.
+// Ключ считается и для FIFO, чтобы метрики по ключам были сравнимы.
+func (s *ActiveSessionsService) SeleniumQueueKey(requestBody map[string]interface{}, authorization string) (string, int) {
+	options := findSelenoidOptions(requestBody)
+	priority := 0
+	if p, ok := options["priority"].(float64); ok {
+		priority = min(max(int(p), 0), maxQueuePriority)
+	}
+
+	if label, ok := strings.CutPrefix(s.seleniumQueueKey, "label:"); ok {
+		if labels, ok := options["labels"].(map[string]interface{}); ok {
+			if v, ok := labels[label].(string); ok && v != "" {
+				return v, priority
+			}
+		}
+		return "default", priority
+	}
+
+	if authorization == "" {
+		return "anonymous", priority
+	}
+	sum := sha256.Sum256([]byte(authorization))
+	return "token-" + hex.EncodeToString(sum[:4]), priority
+}
+
 func (s *ActiveSessionsService) IsQueueEnabled() bool {
 	return s.enableQueue
 }
 
 func (s *ActiveSessionsService) TryReserveSlot() bool {
-	limit := int32(s.seleniumSessionLimit)
-	for {
-		old := s.seleniumInProgress.Load()
-		if old >= limit {
-			return false
-		}
-		if s.seleniumInProgress.CompareAndSwap(old, old+1) {
+	return s.seleniumCapacity.TryReserve()
+}
+
+func (s *ActiveSessionsService) ReleaseSlot() {
+	s.seleniumCapacity.Release()
+}
+
+// slotsFor возвращает квоту браузера; без limit в browsers.json браузер
+// ограничен только общим лимитом.
+func (s *ActiveSessionsService) slotsFor(key string) *capacity {
+	s.browserSlotsMu.RLock()
+	slots, ok := s.browserSlots[key]
+	s.browserSlotsMu.RUnlock()
+	if ok {
+		return slots
+	}
+	s.browserSlotsMu.Lock()
+	defer s.browserSlotsMu.Unlock()
+	if slots, ok = s.browserSlots[key]; !ok {
+		slots = newCapacity(unlimitedCapacity)
+		s.browserSlots[key] = slots
+	}
+	return slots
+}
+
+// TryReserveBrowserSlot занимает общий слот и слот квоты браузера.
+func (s *ActiveSessionsService) TryReserveBrowserSlot(info *dto.BrowserInfo) bool {
+	slots := s.slotsFor(browserKey(info.Name, info.Version))
+	if info.Limit > 0 {
+		slots.SetLimit(info.Limit)
+	} else {
+		slots.SetLimit(unlimitedCapacity)
+	}
+
+	if !s.seleniumCapacity.TryReserve() {
+		return false
+	}
+	if !slots.TryReserve() {
+		s.seleniumCapacity.Release()
+		return false
+	}
+	return true
+}
+
+func (s *ActiveSessionsService) ReleaseBrowserSlot(browserName, version string) {
+	s.slotsFor(browserKey(browserName, version)).Release()
+	s.seleniumCapacity.Release()
+	s.notifySeleniumReleased()
+}
+
+// notifySeleniumReleased будит диспетчера очереди; сигналы схлопываются,
+// диспетчер за одно пробуждение разбирает всё, что может.
+func (s *ActiveSessionsService) notifySeleniumReleased() {
+	select {
+	case s.seleniumReleased <- struct{}{}:
+	default:
+	}
+}
+
+func (s *ActiveSessionsService) SeleniumReleases() <-chan struct{} {
+	return s.seleniumReleased
+}
+
+// reserveOrEnqueue под блокировкой очереди либо занимает слот, либо ставит
+// запрос в очередь. Быстрый путь разрешён, только если никто из ожидающих не
+// может занять освободившийся слот, — иначе новый запрос обгонял бы очередь.
+// Освобождение слота этой блокировки не берёт, но после освобождения всегда
+// будит диспетчера, а тот разбирает очередь уже под ней: запрос, вставший
+// в очередь рядом с освобождением, заберёт ближайший проход диспетчера.
+func (s *ActiveSessionsService) reserveOrEnqueue(req *dto.PendingRequest) admission {
+	s.seleniumQueueMu.Lock()
+	defer s.seleniumQueueMu.Unlock()
+
+	if !s.hasEligibleWaiterLocked(browserKey(req.BrowserInfo.Name, req.BrowserInfo.Version)) &&
+		s.TryReserveBrowserSlot(req.BrowserInfo) {
+		return admissionReserved
+	}
+	if !s.enableQueue {
+		return admissionQueueDisabled
+	}
+	if !s.offerLocked(req) {
+		return admissionQueueFull
+	}
+	return admissionQueued
+}
+
+func (s *ActiveSessionsService) hasEligibleWaiterLocked(key string) bool {
+	if s.seleniumQueueSize == 0 {
+		return false
+	}
+	if q, ok := s.seleniumQueues[key]; ok && q.len() > 0 {
+		return true
+	}
+	for k, q := range s.seleniumQueues {
+		if q.len() > 0 && s.slotsFor(k).HasRoom() {
 			return true
 		}
 	}
+	return false
 }
 
-func (s *ActiveSessionsService) ReleaseSlot() {
-	s.seleniumInProgress.Add(-1)
+func (s *ActiveSessionsService) GetBrowserUsage() map[string]dto.BrowserUsage {
+	s.browserSlotsMu.RLock()
+	result := make(map[string]dto.BrowserUsage, len(s.browserSlots))
+	for key, slots := range s.browserSlots {
+		result[key] = dto.BrowserUsage{
+			InProgress: slots.InUse(),
+			Limit:      max(slots.Limit(), 0),
+		}
+	}
+	s.browserSlotsMu.RUnlock()
+
+	s.seleniumQueueMu.Lock()
+	for key, q := range s.seleniumQueues {
+		usage := result[key]
+		usage.Queued = q.len()
+		result[key] = usage
+	}
+	s.seleniumQueueMu.Unlock()
+	return result
 }
 
-func (s *ActiveSessionsService) SessionSuccessfullyCreated(hubSessionID string, session *dto.SeleniumSession, proxy *httputil.ReverseProxy) {
+func (s *ActiveSessionsService) SessionSuccessfullyCreated(hubSessionID string, session *dto.SeleniumSession, proxy http.Handler, transport *sessionTransport) {
+	entry := &sessionEntry{session: session, proxy: proxy, transport: transport}
 	s.seleniumSessionsMu.Lock()
-	s.seleniumSessions[hubSessionID] = &sessionEntry{session: session, proxy: proxy}
+	s.seleniumSessions[hubSessionID] = entry
+	s.armSessionTimeoutLocked(hubSessionID, entry, time.Duration(s.sessionTimeoutMs)*time.Millisecond)
+	s.seleniumSessionsMu.Unlock()
+}
+
+func (s *ActiveSessionsService) armSessionTimeoutLocked(hubSessionID string, entry *sessionEntry, after time.Duration) {
+	entry.timer = s.afterFunc(after, func() { s.expireSession(hubSessionID, entry) })
+}
+
+// expireSession срабатывает по таймеру сессии. Активность таймер не
+// переставляет, поэтому здесь сверяется время последней активности: если
+// сессия ещё жива, таймер взводится на оставшийся срок.
+func (s *ActiveSessionsService) expireSession(hubSessionID string, entry *sessionEntry) {
+	timeout := time.Duration(s.sessionTimeoutMs) * time.Millisecond
+	idle := time.Duration(time.Now().UnixMilli()-entry.session.GetLastActivity()) * time.Millisecond
+
+	s.seleniumSessionsMu.Lock()
+	if s.seleniumSessions[hubSessionID] != entry {
+		s.seleniumSessionsMu.Unlock()
+		return
+	}
+	if idle <= timeout {
+		s.armSessionTimeoutLocked(hubSessionID, entry, timeout-idle)
+		s.seleniumSessionsMu.Unlock()
+		return
+	}
+	delete(s.seleniumSessions, hubSessionID)
+	cdp, vnc := entry.cdp, entry.vnc
 	s.seleniumSessionsMu.Unlock()
+
+	entry.transport.Close()
+	closeSessionStreams(cdp, vnc)
+	s.ReleaseBrowserSlot(entry.session.BrowserName, entry.session.Version)
+	go s.dockerService.StopContainer(entry.session.ContainerInfo.ContainerID)
+	s.DispatchStatus()
 }
 
 func (s *ActiveSessionsService) SessionDeleted(hubSessionID string) *dto.SeleniumSession {
@@ -125,11 +395,54 @@ func (s *ActiveSessionsService) SessionDeleted(hubSessionID string) *dto.Seleniu
 		return nil
 	}
 	delete(s.seleniumSessions, hubSessionID)
+	cdp, vnc := entry.cdp, entry.vnc
 	s.seleniumSessionsMu.Unlock()
-	s.ReleaseSlot()
+	s.stopTimer(entry.timer)
+	entry.transport.Close()
+	closeSessionStreams(cdp, vnc)
+	s.ReleaseBrowserSlot(entry.session.BrowserName, entry.session.Version)
 	return entry.session
 }
 
+// cdpMuxFor возвращает общий CDP-мультиплексор сессии и создаёт его через
+// open, если его ещё нет или прежний закрыт. nil — сессии уже нет.
+func (s *ActiveSessionsService) cdpMuxFor(hubSessionID string, open func() *cdpMux) *cdpMux {
+	s.seleniumSessionsMu.Lock()
+	defer s.seleniumSessionsMu.Unlock()
+	entry, ok := s.seleniumSessions[hubSessionID]
+	if !ok {
+		return nil
+	}
+	if entry.cdp == nil || entry.cdp.isClosed() {
+		entry.cdp = open()
+	}
+	return entry.cdp
+}
+
+// vncBroadcasterFor — то же для общей VNC-трансляции сессии.
+func (s *ActiveSessionsService) vncBroadcasterFor(hubSessionID string, open func() *vncBroadcaster) *vncBroadcaster {
+	s.seleniumSessionsMu.Lock()
+	defer s.seleniumSessionsMu.Unlock()
+	entry, ok := s.seleniumSessions[hubSessionID]
+	if !ok {
+		return nil
+	}
+	if entry.vnc == nil || entry.vnc.isClosed() {
+		entry.vnc = open()
+	}
+	return entry.vnc
+}
+
+// closeSessionStreams закрывает общие CDP- и VNC-соединения удалённой сессии.
+func closeSessionStreams(cdp *cdpMux, vnc *vncBroadcaster) {
+	if cdp != nil {
+		cdp.close()
+	}
+	if vnc != nil {
+		vnc.close()
+	}
+}
+
 func (s *ActiveSessionsService) Get(sessionID string) *dto.SeleniumSession {
 	s.seleniumSessionsMu.RLock()
 	defer s.seleniumSessionsMu.RUnlock()
@@ -140,7 +453,7 @@ func (s *ActiveSessionsService) Get(sessionID string) *dto.SeleniumSession {
 	return entry.session
 }
 
-func (s *ActiveSessionsService) GetProxy(sessionID string) *httputil.ReverseProxy {
+func (s *ActiveSessionsService) GetProxy(sessionID string) http.Handler {
 	s.seleniumSessionsMu.RLock()
 	defer s.seleniumSessionsMu.RUnlock()
 	entry, ok := s.seleniumSessions[sessionID]
@@ -153,28 +466,165 @@ func (s *ActiveSessionsService) GetProxy(sessionID string) *httputil.ReverseProx
 func (s *ActiveSessionsService) OfferToQueue(req *dto.PendingRequest) bool {
 	s.seleniumQueueMu.Lock()
 	defer s.seleniumQueueMu.Unlock()
-	if s.seleniumQueue.len() >= s.seleniumQueueLimit {
+	return s.offerLocked(req)
+}
+
+func (s *ActiveSessionsService) offerLocked(req *dto.PendingRequest) bool {
+	if s.seleniumQueueSize >= s.seleniumQueueLimit {
 		return false
 	}
-	s.seleniumQueue.push(req)
+	key := browserKey(req.BrowserInfo.Name, req.BrowserInfo.Version)
+	q, ok := s.seleniumQueues[key]
+	if !ok {
+		q = s.newSeleniumQueue()
+		s.seleniumQueues[key] = q
+	}
+	q.push(req)
+	s.seleniumQueueSize++
+	st := s.queueStatsLocked(req.QueueKey)
+	st.depth++
+	st.enqueued++
+	s.armQueueTimeoutLocked(req)
 	return true
 }
 
-func (s *ActiveSessionsService) PollFromQueue() *dto.PendingRequest {
+// armQueueTimeoutLocked взводит таймаут ожидания запроса. Без колеса или
+// после его остановки — обычным таймером: ожидающий не должен висеть вечно.
+func (s *ActiveSessionsService) armQueueTimeoutLocked(req *dto.PendingRequest) {
+	d := time.Duration(s.queueTimeoutMs) * time.Millisecond
+	expire := func() { s.expireQueued(req) }
+	if t := s.afterFunc(d, expire); t != nil {
+		s.seleniumQueueTimers[req] = func() { s.stopTimer(t) }
+		return
+	}
+	t := time.AfterFunc(d, expire)
+	s.seleniumQueueTimers[req] = func() { t.Stop() }
+}
+
+func (s *ActiveSessionsService) stopQueueTimeoutLocked(req *dto.PendingRequest) {
+	if stop, ok := s.seleniumQueueTimers[req]; ok {
+		stop()
+		delete(s.seleniumQueueTimers, req)
+	}
+}
+
+// expireQueued снимает запрос с очереди по таймауту. Если диспетчер уже
+// забрал запрос, Cancel не пройдёт и ожидающий получит созданную сессию.
+func (s *ActiveSessionsService) expireQueued(req *dto.PendingRequest) {
+	if !req.Cancel() {
+		return
+	}
+	s.removeFromQueue(req, true)
+	req.Future <- dto.PendingRequestResult{Err: fmt.Errorf("queue timeout")}
+	s.DispatchStatus()
+}
+
+// PollEligibleFromQueue выбирает самый старый из головных запросов тех
+// очередей, у браузера которых есть свободная квота, и сразу занимает под него
+// слот. Заблокированный по квоте браузер не задерживает остальные очереди.
+func (s *ActiveSessionsService) PollEligibleFromQueue() *dto.PendingRequest {
+	s.seleniumQueueMu.Lock()
+	defer s.seleniumQueueMu.Unlock()
+	if s.seleniumQueueSize == 0 || s.GetInProgressCount() >= s.seleniumSessionLimit {
+		return nil
+	}
+
+	var picked pendingQueue
+	var pickedReq *dto.PendingRequest
+	for key, q := range s.seleniumQueues {
+		req, ok := q.peek()
+		if !ok || !s.slotsFor(key).HasRoom() {
+			continue
+		}
+		if pickedReq == nil || req.QueuedTime.Before(pickedReq.QueuedTime) {
+			picked, pickedReq = q, req
+		}
+	}
+	if pickedReq == nil || !s.TryReserveBrowserSlot(pickedReq.BrowserInfo) {
+		return nil
+	}
+
+	picked.pop()
+	s.stopQueueTimeoutLocked(pickedReq)
+	s.seleniumQueueSize--
+	st := s.queueStatsLocked(pickedReq.QueueKey)
+	st.depth--
+	st.dispatched++
+	st.wait.observe(time.Since(pickedReq.QueuedTime))
+	return pickedReq
+}
+
+// RemoveFromQueue убирает из очереди его браузера запрос ушедшего клиента.
+func (s *ActiveSessionsService) RemoveFromQueue(req *dto.PendingRequest) {
+	s.removeFromQueue(req, false)
+}
+
+func (s *ActiveSessionsService) removeFromQueue(req *dto.PendingRequest, timedOut bool) {
+	s.seleniumQueueMu.Lock()
+	defer s.seleniumQueueMu.Unlock()
+	s.stopQueueTimeoutLocked(req)
+	q, ok := s.seleniumQueues[browserKey(req.BrowserInfo.Name, req.BrowserInfo.Version)]
+	if !ok {
+		return
+	}
+	before := q.len()
+	q.retainIf(func(r *dto.PendingRequest) bool { return r != req })
+	if removed := before - q.len(); removed > 0 {
+		s.seleniumQueueSize -= removed
+		st := s.queueStatsLocked(req.QueueKey)
+		st.depth -= removed
+		if timedOut {
+			st.timedOut += int64(removed)
+		} else {
+			st.cancelled += int64(removed)
+		}
+	}
+}
+
+func (s *ActiveSessionsService) queueStatsLocked(key string) *queueKeyStats {
+	return statsFor(s.seleniumQueueStats, key)
+}
+
+func statsFor(stats map[string]*queueKeyStats, key string) *queueKeyStats {
+	st, ok := stats[key]
+	if !ok {
+		st = &queueKeyStats{}
+		stats[key] = st
+	}
+	return st
+}
+
+func (s *ActiveSessionsService) GetSeleniumQueueStats() []dto.QueueKeyStats {
 	s.seleniumQueueMu.Lock()
 	defer s.seleniumQueueMu.Unlock()
-	req, _ := s.seleniumQueue.pop()
-	return req
+	return queueStatsSnapshot(s.seleniumQueueStats)
+}
+
+func queueStatsSnapshot(stats map[string]*queueKeyStats) []dto.QueueKeyStats {
+	result := make([]dto.QueueKeyStats, 0, len(stats))
+	for key, st := range stats {
+		result = append(result, dto.QueueKeyStats{
+			Key:        key,
+			Depth:      st.depth,
+			Enqueued:   st.enqueued,
+			Dispatched: st.dispatched,
+			TimedOut:   st.timedOut,
+			Cancelled:  st.cancelled,
+			Wait:       st.wait.stats(),
+		})
+	}
+	sort.Slice(result, func(i, j int) bool { return result[i].Key < result[j].Key })
+	return result
 }
 
 func (s *ActiveSessionsService) GetQueueSize() int {
 	s.seleniumQueueMu.Lock()
 	defer s.seleniumQueueMu.Unlock()
-	return s.seleniumQueue.len()
+	return s.seleniumQueueSize
 }
 
 func (s *ActiveSessionsService) GetInProgressCount() int {
-	return int(s.seleniumInProgress.Load())
+	return s.seleniumCapacity.InUse()
 }
 
 func (s *ActiveSessionsService) GetSeleniumActiveSessions() map[string]*dto.SeleniumSession {
@@ -187,10 +637,35 @@ func (s *ActiveSessionsService) GetSeleniumActiveSessions() map[string]*dto.Sele
 	return result
 }
 
+func (s *ActiveSessionsService) GetSessionPoolStats() []dto.SessionPoolStats {
+	s.seleniumSessionsMu.RLock()
+	result := make([]dto.SessionPoolStats, 0, len(s.seleniumSessions))
+	for id, entry := range s.seleniumSessions {
+		if entry.transport == nil {
+			continue
+		}
+		st := entry.transport.Stats()
+		st.SessionID = id
+		result = append(result, st)
+	}
+	s.seleniumSessionsMu.RUnlock()
+
+	sort.Slice(result, func(i, j int) bool { return result[i].SessionID < result[j].SessionID })
+	return result
+}
+
 func (s *ActiveSessionsService) GetSeleniumPendingRequests() []*dto.PendingRequest {
 	s.seleniumQueueMu.Lock()
-	defer s.seleniumQueueMu.Unlock()
-	return s.seleniumQueue.snapshot()
+	var result []*dto.PendingRequest
+	for _, q := range s.seleniumQueues {
+		result = append(result, q.snapshot()...)
+	}
+	s.seleniumQueueMu.Unlock()
+
+	sort.SliceStable(result, func(i, j int) bool {
+		return result[i].QueuedTime.Before(result[j].QueuedTime)
+	})
+	return result
 }
 
 func (s *ActiveSessionsService) GetSeleniumSessionLimit() int {
@@ -208,68 +683,39 @@ func (s *ActiveSessionsService) DispatchStatus() {
 	}
 }
 
-func (s *ActiveSessionsService) CheckInactiveSessions() {
-	now := time.Now().UnixMilli()
-
-	type timedOutSession struct {
-		containerID string
-	}
-
-	s.seleniumSessionsMu.Lock()
-	var timedOut []timedOutSession
-	for id, entry := range s.seleniumSessions {
-		if now-entry.session.GetLastActivity() > s.sessionTimeoutMs {
-			timedOut = append(timedOut, timedOutSession{
-				containerID: entry.session.ContainerInfo.ContainerID,
-			})
-			delete(s.seleniumSessions, id)
-		}
-	}
-	s.seleniumSessionsMu.Unlock()
-
-	for range timedOut {
-		s.ReleaseSlot()
-	}
-	for _, t := range timedOut {
-		go s.dockerService.StopContainer(t.containerID)
-	}
-	if len(timedOut) > 0 && s.seleniumService != nil {
-		go s.seleniumService.ProcessQueue()
-	}
-
-	s.seleniumQueueMu.Lock()
-	s.seleniumQueue.retainIf(func(req *dto.PendingRequest) bool {
-		if now-req.StartTime > s.queueTimeoutMs {
-			req.Future <- dto.PendingRequestResult{
-				Response: map[string]interface{}{
-					"value": map[string]interface{}{
-						"error":   "session not created",
-						"message": "Queue timeout",
-					},
-				},
-			}
-			return false
-		}
-		return true
-	})
-	s.seleniumQueueMu.Unlock()
-
-	s.DispatchStatus()
-}
-
 func (s *ActiveSessionsService) Cleanup() {
 	s.seleniumSessionsMu.Lock()
 	for id, entry := range s.seleniumSessions {
+		s.stopTimer(entry.timer)
+		entry.transport.Close()
 		go s.dockerService.StopContainer(entry.session.ContainerInfo.ContainerID)
 		delete(s.seleniumSessions, id)
 	}
 	s.seleniumSessionsMu.Unlock()
 
+	// Ожидающие в очереди получают ошибку сразу, а не висят до остановки сервера.
 	s.seleniumQueueMu.Lock()
-	s.seleniumQueue.clear()
+	for _, q := range s.seleniumQueues {
+		for _, req := range q.snapshot() {
+			s.stopQueueTimeoutLocked(req)
+			if req.Cancel() {
+				req.Future <- dto.PendingRequestResult{Err: fmt.Errorf("hub is shutting down")}
+			}
+		}
+		q.clear()
+	}
+	s.seleniumQueueSize = 0
+	for _, st := range s.seleniumQueueStats {
+		st.depth = 0
+	}
 	s.seleniumQueueMu.Unlock()
 
-	s.seleniumInProgress.Store(0)
+	s.seleniumCapacity.Reset()
+	s.browserSlotsMu.RLock()
+	for _, slots := range s.browserSlots {
+		slots.Reset()
+	}
+	s.browserSlotsMu.RUnlock()
 }
 
 func (s *ActiveSessionsService) OfferPlaywrightQueue(pair *PlaywrightSessionPair) bool {
@@ -278,7 +724,12 @@ func (s *ActiveSessionsService) OfferPlaywrightQueue(pair *PlaywrightSessionPair
 	if s.playwrightQueue.len() >= s.playwrightQueueLimit {
 		return false
 	}
+	pair.queuedAt = time.Now()
+	pair.queued.Store(true)
 	s.playwrightQueue.push(&PlaywrightQueuedSession{Pair: pair})
+	st := statsFor(s.playwrightQueueStats, pair.Version)
+	st.depth++
+	st.enqueued++
 	return true
 }
 
@@ -289,15 +740,66 @@ func (s *ActiveSessionsService) PollFromPlaywrightQueue() *PlaywrightSessionPair
 	if !ok {
 		return nil
 	}
+	q.Pair.queued.Store(false)
+	st := statsFor(s.playwrightQueueStats, q.Pair.Version)
+	st.depth--
+	st.dispatched++
+	st.wait.observe(time.Since(q.Pair.queuedAt))
 	return q.Pair
 }
 
+// RemoveFromPlaywrightQueue снимает с очереди сессию ушедшего клиента.
 func (s *ActiveSessionsService) RemoveFromPlaywrightQueue(conn *websocket.Conn) bool {
+	return s.removeFromPlaywrightQueue(conn, false)
+}
+
+// ExpireFromPlaywrightQueue снимает с очереди сессию, не дождавшуюся слота.
+// false — сессия уже получила слот или ушла сама.
+func (s *ActiveSessionsService) ExpireFromPlaywrightQueue(conn *websocket.Conn) bool {
+	return s.removeFromPlaywrightQueue(conn, true)
+}
+
+func (s *ActiveSessionsService) removeFromPlaywrightQueue(conn *websocket.Conn, timedOut bool) bool {
 	s.playwrightQueueMu.Lock()
 	defer s.playwrightQueueMu.Unlock()
-	return s.playwrightQueue.removeFirst(func(q *PlaywrightQueuedSession) bool {
-		return q.Pair.ClientConn == conn
+	var removed *PlaywrightSessionPair
+	s.playwrightQueue.removeFirst(func(q *PlaywrightQueuedSession) bool {
+		if q.Pair.ClientConn != conn {
+			return false
+		}
+		removed = q.Pair
+		return true
 	})
+	if removed == nil {
+		return false
+	}
+	removed.queued.Store(false)
+	st := statsFor(s.playwrightQueueStats, removed.Version)
+	st.depth--
+	if timedOut {
+		st.timedOut++
+	} else {
+		st.cancelled++
+	}
+	return true
+}
+
+func (s *ActiveSessionsService) GetPlaywrightQueueStats() []dto.QueueKeyStats {
+	s.playwrightQueueMu.Lock()
+	defer s.playwrightQueueMu.Unlock()
+	return queueStatsSnapshot(s.playwrightQueueStats)
+}
+
+// PlaywrightRetryHint — через сколько имеет смысл переподключиться к версии:
+// медиана ожидания тех, кто слот дождался.
+func (s *ActiveSessionsService) PlaywrightRetryHint(version string) time.Duration {
+	s.playwrightQueueMu.Lock()
+	defer s.playwrightQueueMu.Unlock()
+	st, ok := s.playwrightQueueStats[version]
+	if !ok {
+		return 0
+	}
+	return time.Duration(st.wait.quantile(0.5)) * time.Millisecond
 }
 
 func (s *ActiveSessionsService) PutPlaywrightActiveSession(conn *websocket.Conn, pair *PlaywrightSessionPair) {
@@ -325,24 +827,36 @@ func (s *ActiveSessionsService) GetPlaywrightActiveSession(conn *websocket.Conn)
 }
 
 func (s *ActiveSessionsService) TryAcquirePlaywrightSlot() bool {
-	select {
-	case s.playwrightSemaphore <- struct{}{}:
-		return true
-	default:
-		return false
-	}
+	return s.playwrightCapacity.TryReserve()
 }
 
-func (s *ActiveSessionsService) ReleasePlaywrightSlot() {
-	<-s.playwrightSemaphore
+// HandOffPlaywrightSlot отдаёт освободившийся слот следующему в очереди
+// через start, не возвращая его в общий пул.
+func (s *ActiveSessionsService) HandOffPlaywrightSlot(start func(pair *PlaywrightSessionPair)) {
+	s.playwrightCapacity.ReleaseTo(func() bool {
+		next := s.PollFromPlaywrightQueue()
+		if next == nil {
+			return false
+		}
+		start(next)
+		return true
+	}, func() bool {
+		return s.GetPlaywrightQueueSize() > 0
+	})
 }
 
 func (s *ActiveSessionsService) AvailablePlaywrightSlots() int {
-	return len(s.playwrightSemaphore)
+	return s.playwrightMaxSessions - s.playwrightCapacity.InUse()
 }
 
 func (s *ActiveSessionsService) UsedPlaywrightSlots() int {
-	return s.playwrightMaxSessions - s.AvailablePlaywrightSlots()
+	return s.playwrightCapacity.InUse()
+}
+
+func (s *ActiveSessionsService) GetPlaywrightQueueSize() int {
+	s.playwrightQueueMu.Lock()
+	defer s.playwrightQueueMu.Unlock()
+	return s.playwrightQueue.len()
 }
 
 func (s *ActiveSessionsService) GetPlaywrightActiveSessions() map[*websocket.Conn]*PlaywrightSessionPair {
@@ -355,6 +869,24 @@ func (s *ActiveSessionsService) GetPlaywrightActiveSessions() map[*websocket.Con
 	return result
 }
 
+func (s *ActiveSessionsService) GetPlaywrightRelayStats() []dto.PlaywrightRelayStats {
+	s.playwrightSessionsMu.RLock()
+	defer s.playwrightSessionsMu.RUnlock()
+	result := make([]dto.PlaywrightRelayStats, 0, len(s.playwrightSessions))
+	for conn, pair := range s.playwrightSessions {
+		if pair.toContainer == nil || pair.toClient == nil {
+			continue
+		}
+		result = append(result, dto.PlaywrightRelayStats{
+			ClientSessionID: conn.RemoteAddr().String(),
+			Version:         pair.Version,
+			ToContainer:     pair.toContainer.stats(),
+			ToClient:        pair.toClient.stats(),
+		})
+	}
+	return result
+}
+
 func (s *ActiveSessionsService) GetPlaywrightWaitingQueue() []*PlaywrightSessionPair {
 	s.playwrightQueueMu.Lock()
 	defer s.playwrightQueueMu.Unlock()
@@ -4,6 +4,10 @@ import (
 	"sync"
 	"sync/atomic"
 	"testing"
+	"time"
+
+	"github.com/balakshievas/jelenoid-server-go/internal/dto"
+	"github.com/gorilla/websocket"
 )
 
 func newTestActiveSessionsService(limit, queueLimit int) *ActiveSessionsService {
@@ -80,3 +84,167 @@ func TestReleaseSlot_DoesNotGoNegative(t *testing.T) {
 		t.Fatalf("expected -2 after extra releases, got=%d", got)
 	}
 }
+
+func TestPollEligibleFromQueue_SkipsSaturatedBrowser(t *testing.T) {
+	s := newTestActiveSessionsService(10, 100)
+	firefox := &dto.BrowserInfo{Name: "firefox", Version: "125", Limit: 1}
+	chrome := &dto.BrowserInfo{Name: "chrome", Version: "138", Limit: 2}
+
+	if !s.TryReserveBrowserSlot(firefox) {
+		t.Fatal("first firefox slot should be reservable")
+	}
+	if s.TryReserveBrowserSlot(firefox) {
+		t.Fatal("firefox quota should be exhausted")
+	}
+
+	older := newTestPendingRequest("a", 0)
+	older.BrowserInfo = firefox
+	older.QueuedTime = time.Now().Add(-2 * time.Second)
+	newer := newTestPendingRequest("a", 0)
+	newer.BrowserInfo = chrome
+	if !s.OfferToQueue(older) || !s.OfferToQueue(newer) {
+		t.Fatal("requests should be queued")
+	}
+
+	if req := s.PollEligibleFromQueue(); req != newer {
+		t.Fatalf("expected chrome request to bypass saturated firefox, got %+v", req)
+	}
+	if req := s.PollEligibleFromQueue(); req != nil {
+		t.Fatalf("firefox request should wait for its quota, got %+v", req)
+	}
+
+	s.ReleaseBrowserSlot(firefox.Name, firefox.Version)
+	if req := s.PollEligibleFromQueue(); req != older {
+		t.Fatalf("expected firefox request after release, got %+v", req)
+	}
+	if got := s.GetInProgressCount(); got != 2 {
+		t.Fatalf("in-progress counter mismatch: got=%d, want=2", got)
+	}
+	if got := s.GetQueueSize(); got != 0 {
+		t.Fatalf("queue should be empty, got=%d", got)
+	}
+}
+
+func TestReserveOrEnqueue_NewcomerDoesNotOvertakeQueue(t *testing.T) {
+	s := newTestActiveSessionsService(1, 100)
+	chrome := &dto.BrowserInfo{Name: "chrome", Version: "138"}
+
+	first := newTestPendingRequest("a", 0)
+	first.BrowserInfo = chrome
+	if got := s.reserveOrEnqueue(first); got != admissionReserved {
+		t.Fatalf("first request should take the free slot, got=%d", got)
+	}
+	waiter := newTestPendingRequest("a", 0)
+	waiter.BrowserInfo = chrome
+	if got := s.reserveOrEnqueue(waiter); got != admissionQueued {
+		t.Fatalf("second request should be queued, got=%d", got)
+	}
+
+	s.ReleaseBrowserSlot(chrome.Name, chrome.Version)
+	newcomer := newTestPendingRequest("a", 0)
+	newcomer.BrowserInfo = chrome
+	if got := s.reserveOrEnqueue(newcomer); got != admissionQueued {
+		t.Fatalf("newcomer must not steal the slot released for the waiter, got=%d", got)
+	}
+	if req := s.PollEligibleFromQueue(); req != waiter {
+		t.Fatalf("expected the waiter to get the slot, got %+v", req)
+	}
+}
+
+func TestRemoveFromQueue_CancelledWaiter(t *testing.T) {
+	s := newTestActiveSessionsService(0, 100)
+	req := newTestPendingRequest("a", 0)
+	req.BrowserInfo = &dto.BrowserInfo{Name: "chrome", Version: "138"}
+	if got := s.reserveOrEnqueue(req); got != admissionQueued {
+		t.Fatalf("request should be queued, got=%d", got)
+	}
+
+	if !req.Cancel() {
+		t.Fatal("waiting request should be cancellable")
+	}
+	if req.Claim() {
+		t.Fatal("cancelled request must not be claimed")
+	}
+	s.RemoveFromQueue(req)
+
+	expired := newTestPendingRequest("b", 0)
+	expired.BrowserInfo = req.BrowserInfo
+	if got := s.reserveOrEnqueue(expired); got != admissionQueued {
+		t.Fatalf("request should be queued, got=%d", got)
+	}
+	s.expireQueued(expired)
+	if got := s.GetQueueSize(); got != 0 {
+		t.Fatalf("queue should be empty, got=%d", got)
+	}
+
+	stats := make(map[string]dto.QueueKeyStats)
+	for _, st := range s.GetSeleniumQueueStats() {
+		stats[st.Key] = st
+	}
+	if st := stats["a"]; st.Cancelled != 1 || st.TimedOut != 0 {
+		t.Fatalf("client leaving the queue should count as cancelled, got %+v", st)
+	}
+	if st := stats["b"]; st.Cancelled != 0 || st.TimedOut != 1 {
+		t.Fatalf("queue timeout should count as timed out, got %+v", st)
+	}
+}
+
+func TestCleanup_FailsQueuedWaiters(t *testing.T) {
+	s := newTestActiveSessionsService(0, 100)
+	req := newTestPendingRequest("a", 0)
+	req.BrowserInfo = &dto.BrowserInfo{Name: "chrome", Version: "138"}
+	if got := s.reserveOrEnqueue(req); got != admissionQueued {
+		t.Fatalf("request should be queued, got=%d", got)
+	}
+
+	s.Cleanup()
+	select {
+	case result := <-req.Future:
+		if result.Err == nil {
+			t.Fatal("queued waiter should get an error on shutdown")
+		}
+	default:
+		t.Fatal("queued waiter was left hanging")
+	}
+	if len(s.seleniumQueueTimers) != 0 {
+		t.Fatal("queue timeout should be cancelled")
+	}
+}
+
+func TestPlaywrightQueue_ExpireAndCancelStats(t *testing.T) {
+	s := newTestActiveSessionsService(1, 10)
+	pairs := make([]*PlaywrightSessionPair, 3)
+	for i := range pairs {
+		pairs[i] = &PlaywrightSessionPair{ClientConn: &websocket.Conn{}, Version: "1.58.0"}
+		if !s.OfferPlaywrightQueue(pairs[i]) || !pairs[i].queued.Load() {
+			t.Fatalf("pair %d was not queued", i)
+		}
+	}
+
+	if !s.ExpireFromPlaywrightQueue(pairs[0].ClientConn) || pairs[0].queued.Load() {
+		t.Fatal("queued pair should expire")
+	}
+	if s.ExpireFromPlaywrightQueue(pairs[0].ClientConn) {
+		t.Fatal("expired pair cannot expire twice")
+	}
+	if !s.RemoveFromPlaywrightQueue(pairs[1].ClientConn) {
+		t.Fatal("queued pair should be cancelled")
+	}
+	if next := s.PollFromPlaywrightQueue(); next != pairs[2] || next.queued.Load() {
+		t.Fatalf("expected third pair to be dispatched, got %+v", next)
+	}
+	// Слот уже выдан — таймаут очереди больше не действует.
+	if s.ExpireFromPlaywrightQueue(pairs[2].ClientConn) {
+		t.Fatal("dispatched pair must not expire")
+	}
+
+	stats := s.GetPlaywrightQueueStats()
+	if len(stats) != 1 {
+		t.Fatalf("expected stats for one version, got %d", len(stats))
+	}
+	st := stats[0]
+	if st.Key != "1.58.0" || st.Depth != 0 || st.Enqueued != 3 || st.TimedOut != 1 ||
+		st.Cancelled != 1 || st.Dispatched != 1 || st.Wait.Count != 1 {
+		t.Fatalf("unexpected stats: %+v", st)
+	}
+}
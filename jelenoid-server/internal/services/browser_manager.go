@@ -229,6 +229,9 @@ func (s *BrowserManagerService) readBrowsersFromFile() ([]*dto.BrowserInfo, erro
 				DockerImageName: vi.Image,
 				IsDefault:       isDefault,
 				WireBrowserName: vi.WireBrowserName,
+				WarmPool:        vi.WarmPool,
+				WarmPoolMax:     vi.WarmPoolMax,
+				Limit:           vi.Limit,
 			})
 		}
 	}
@@ -292,10 +295,19 @@ func (s *BrowserManagerService) snapshotToJSON(snap *browserSnapshot) []byte {
 			data[b.Name] = entry
 		}
 		versions := entry["versions"].(map[string]interface{})
-		versionEntry := map[string]string{"image": b.DockerImageName}
+		versionEntry := map[string]interface{}{"image": b.DockerImageName}
 		if b.WireBrowserName != "" {
 			versionEntry["wireBrowserName"] = b.WireBrowserName
 		}
+		if b.WarmPool > 0 {
+			versionEntry["warmPool"] = b.WarmPool
+		}
+		if b.WarmPoolMax > 0 {
+			versionEntry["warmPoolMax"] = b.WarmPoolMax
+		}
+		if b.Limit > 0 {
+			versionEntry["limit"] = b.Limit
+		}
 		versions[b.Version] = versionEntry
 		if b.IsDefault {
 			entry["default"] = b.Version
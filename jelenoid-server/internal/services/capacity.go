@@ -0,0 +1,74 @@
+package services
+
+import "sync/atomic"
+
+const unlimitedCapacity = -1
+
+// capacity — лимит одновременных слотов на CAS, без мьютексов и каналов:
+// ни резервирование, ни освобождение не паркуют горутину. Используется для
+// общего лимита selenium, квот браузеров и лимита playwright.
+type capacity struct {
+	limit atomic.Int32
+	inUse atomic.Int32
+}
+
+func newCapacity(limit int) *capacity {
+	c := &capacity{}
+	c.limit.Store(int32(limit))
+	return c
+}
+
+// TryReserve занимает слот; отрицательный лимит означает «без ограничения».
+func (c *capacity) TryReserve() bool {
+	for {
+		limit := c.limit.Load()
+		old := c.inUse.Load()
+		if limit >= 0 && old >= limit {
+			return false
+		}
+		if c.inUse.CompareAndSwap(old, old+1) {
+			return true
+		}
+	}
+}
+
+func (c *capacity) Release() {
+	c.inUse.Add(-1)
+}
+
+// ReleaseTo передаёт слот ожидающему напрямую: если take забрал ожидающего,
+// слот остаётся занятым за ним и не может быть перехвачен. Иначе слот
+// освобождается; если за это время кто-то встал в очередь (pending), слот
+// берётся снова и попытка повторяется, чтобы ожидающий не остался без пробуждения.
+func (c *capacity) ReleaseTo(take func() bool, pending func() bool) {
+	for {
+		if take() {
+			return
+		}
+		c.Release()
+		if !pending() || !c.TryReserve() {
+			return
+		}
+	}
+}
+
+func (c *capacity) HasRoom() bool {
+	limit := c.limit.Load()
+	return limit < 0 || c.inUse.Load() < limit
+}
+
+func (c *capacity) InUse() int {
+	return int(c.inUse.Load())
+}
+
+func (c *capacity) Limit() int {
+	return int(c.limit.Load())
+}
+
+func (c *capacity) SetLimit(limit int) {
+	c.limit.Store(int32(limit))
+}
+
+func (c *capacity) Reset() {
+	c.inUse.Store(0)
+}
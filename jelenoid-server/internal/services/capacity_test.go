@@ -0,0 +1,127 @@
+package services
+
+import (
+	"sync"
+	"sync/atomic"
+	"testing"
+)
+
+func TestCapacity_NeverExceedsLimit(t *testing.T) {
+	c := newCapacity(8)
+	var peak atomic.Int32
+	var wg sync.WaitGroup
+	for i := 0; i < 64; i++ {
+		wg.Add(1)
+		go func() {
+			defer wg.Done()
+			for j := 0; j < 1000; j++ {
+				if !c.TryReserve() {
+					continue
+				}
+				if n := int32(c.InUse()); n > peak.Load() {
+					peak.Store(n)
+				}
+				c.Release()
+			}
+		}()
+	}
+	wg.Wait()
+
+	if peak.Load() > 8 {
+		t.Fatalf("limit exceeded: peak=%d", peak.Load())
+	}
+	if c.InUse() != 0 {
+		t.Fatalf("expected no slots in use, got=%d", c.InUse())
+	}
+}
+
+func TestCapacity_ReleaseToWaiterKeepsSlot(t *testing.T) {
+	c := newCapacity(1)
+	if !c.TryReserve() {
+		t.Fatal("expected free slot")
+	}
+
+	waiters := 1
+	c.ReleaseTo(func() bool {
+		if waiters == 0 {
+			return false
+		}
+		waiters--
+		return true
+	}, func() bool { return waiters > 0 })
+
+	if c.InUse() != 1 {
+		t.Fatalf("slot should stay with the waiter, got=%d", c.InUse())
+	}
+	if c.TryReserve() {
+		t.Fatal("handed-off slot must not be available to newcomers")
+	}
+
+	c.ReleaseTo(func() bool { return false }, func() bool { return false })
+	if c.InUse() != 0 {
+		t.Fatalf("expected slot to be released, got=%d", c.InUse())
+	}
+}
+
+func TestCapacity_Unlimited(t *testing.T) {
+	c := newCapacity(unlimitedCapacity)
+	for i := 0; i < 100; i++ {
+		if !c.TryReserve() {
+			t.Fatalf("unlimited capacity rejected reservation #%d", i)
+		}
+	}
+	if !c.HasRoom() {
+		t.Fatal("unlimited capacity should always have room")
+	}
+}
+
+// Сравнение с прежними вариантами: канал-семафор (playwright) и счётчик под мьютексом.
+
+const benchCapacityLimit = 16
+
+func BenchmarkCapacity_CAS(b *testing.B) {
+	c := newCapacity(benchCapacityLimit)
+	b.SetParallelism(64)
+	b.RunParallel(func(pb *testing.PB) {
+		for pb.Next() {
+			if c.TryReserve() {
+				c.Release()
+			}
+		}
+	})
+}
+
+func BenchmarkCapacity_ChannelSemaphore(b *testing.B) {
+	sem := make(chan struct{}, benchCapacityLimit)
+	b.SetParallelism(64)
+	b.RunParallel(func(pb *testing.PB) {
+		for pb.Next() {
+			select {
+			case sem <- struct{}{}:
+				<-sem
+			default:
+			}
+		}
+	})
+}
+
+func BenchmarkCapacity_Mutex(b *testing.B) {
+	var mu sync.Mutex
+	inUse := 0
+	b.SetParallelism(64)
+	b.RunParallel(func(pb *testing.PB) {
+		for pb.Next() {
+			mu.Lock()
+			ok := inUse < benchCapacityLimit
+			if ok {
+				inUse++
+			}
+			mu.Unlock()
+			if ok {
+				mu.Lock()
+				inUse--
+				mu.Unlock()
+			}
+		}
+	})
+}
@@ -0,0 +1,473 @@
+package services
+
+import (
+	"context"
+	"encoding/json"
+	"errors"
+	"log"
+	"strconv"
+	"strings"
+	"sync"
+	"time"
+
+	"github.com/gorilla/websocket"
+)
+
+type cdpPending struct {
+	// client == nil — запрос самого мультиплексора, ответ никому не нужен.
+	client *cdpClient
+	id     json.RawMessage
+	// enable — домен, который включает этот запрос: его ответ запоминается.
+	enable *cdpDomain
+}
+
+// cdpKey — домен в сессии CDP. session пуст для корневой сессии; после
+// Target.attachToTarget{flatten:true} у каждой цели свой sessionId.
+type cdpKey struct {
+	session string
+	domain  string
+}
+
+// cdpDomain — включённый в браузере домен. reply — ответ браузера на первое
+// X.enable без id; пока его нет, повторные включения ждут в waiters.
+type cdpDomain struct {
+	key     cdpKey
+	refs    int
+	reply   []byte
+	waiters []cdpPending
+}
+
+type cdpClient struct {
+	conn *websocket.Conn
+	out  *frameRelay
+	// domains — домены, к которым клиент обращался: ему идут их события.
+	// enabled — домены, включённые клиентом через X.enable. Оба под cdpMux.mu.
+	domains map[cdpKey]bool
+	enabled map[cdpKey]*cdpDomain
+}
+
+// cdpMux держит одно CDP-соединение с браузером сессии на всех подключённых
+// клиентов. id запросов клиентов переписываются на сквозные id соединения
+// и возвращаются обратно в ответах; события раздаются клиентам по сессии
+// и домену. X.enable и X.disable считаются по клиентам отдельно в каждой
+// сессии: в браузер уходит только первое включение и последнее выключение.
+// Остальные включения получают ответ браузера на первое, дождавшись его, —
+// кроме доменов из cdpReplaysState, которые включаются в браузере заново.
+type cdpMux struct {
+	proxy      *DevToolsProxy
+	targetURL  string
+	toUpstream *frameRelay
+
+	mu       sync.Mutex
+	upstream *websocket.Conn
+	clients  map[*cdpClient]struct{}
+	pending  map[int64]cdpPending
+	enabled  map[cdpKey]*cdpDomain
+	nextID   int64
+	closed   bool
+
+	done      chan struct{}
+	closeOnce sync.Once
+}
+
+func newCDPMux(proxy *DevToolsProxy, targetURL string) *cdpMux {
+	m := &cdpMux{
+		proxy:     proxy,
+		targetURL: targetURL,
+		toUpstream: newFrameRelay(PlaywrightRelayConfig{
+			HighWatermark: proxy.cfg.BufferBytes,
+			LowWatermark:  proxy.cfg.BufferBytes / 4,
+		}),
+		clients: make(map[*cdpClient]struct{}),
+		pending: make(map[int64]cdpPending),
+		enabled: make(map[cdpKey]*cdpDomain),
+		done:    make(chan struct{}),
+	}
+	go m.run()
+	return m
+}
+
+// run подключается к браузеру и разбирает его сообщения, пока соединение живо.
+// Запросы клиентов, пришедшие до подключения, ждут в toUpstream.
+func (m *cdpMux) run() {
+	ctx, cancel := context.WithCancel(context.Background())
+	go func() {
+		select {
+		case <-m.done:
+			cancel()
+		case <-ctx.Done():
+		}
+	}()
+	conn, _, err := devToolsDialer.DialContext(ctx, m.targetURL, nil)
+	cancel()
+	if err != nil {
+		if !errors.Is(err, context.Canceled) {
+			log.Printf("DevTools mux: failed to connect to %s: %v", m.targetURL, err)
+		}
+		m.close()
+		return
+	}
+	if m.proxy.cfg.MaxMessageSize > 0 {
+		conn.SetReadLimit(m.proxy.cfg.MaxMessageSize)
+	}
+
+	m.mu.Lock()
+	if m.closed {
+		m.mu.Unlock()
+		conn.Close()
+		return
+	}
+	m.upstream = conn
+	m.mu.Unlock()
+
+	go func() {
+		m.toUpstream.pumpTo(conn)
+		m.close()
+	}()
+	for {
+		_, msg, err := conn.ReadMessage()
+		if err != nil {
+			break
+		}
+		m.fromUpstream(msg)
+	}
+	m.close()
+}
+
+func (m *cdpMux) isClosed() bool {
+	m.mu.Lock()
+	defer m.mu.Unlock()
+	return m.closed
+}
+
+// close рвёт соединение с браузером и отключает всех клиентов.
+func (m *cdpMux) close() {
+	m.closeOnce.Do(func() {
+		m.mu.Lock()
+		m.closed = true
+		upstream := m.upstream
+		clients := make([]*cdpClient, 0, len(m.clients))
+		for c := range m.clients {
+			clients = append(clients, c)
+		}
+		m.mu.Unlock()
+
+		close(m.done)
+		m.toUpstream.close()
+		if upstream != nil {
+			upstream.Close()
+		}
+		for _, c := range clients {
+			c.out.close()
+		}
+	})
+}
+
+// serve обслуживает клиента до его отключения. false — мультиплексор уже
+// закрыт и клиента нужно подключить к новому.
+func (m *cdpMux) serve(conn *websocket.Conn) bool {
+	c := &cdpClient{
+		conn:    conn,
+		out:     newFrameRelay(PlaywrightRelayConfig{}),
+		domains: make(map[cdpKey]bool),
+		enabled: make(map[cdpKey]*cdpDomain),
+	}
+	c.out.compression = m.proxy.compression
+
+	m.mu.Lock()
+	if m.closed {
+		m.mu.Unlock()
+		return false
+	}
+	m.clients[c] = struct{}{}
+	m.mu.Unlock()
+
+	writerDone := make(chan struct{})
+	go func() {
+		defer close(writerDone)
+		if c.out.pumpTo(conn) == nil {
+			conn.WriteControl(websocket.CloseMessage,
+				websocket.FormatCloseMessage(websocket.CloseGoingAway, "DevTools connection closed"),
+				time.Now().Add(time.Second))
+		}
+		conn.Close()
+	}()
+
+	for {
+		_, msg, err := conn.ReadMessage()
+		if err != nil || !m.fromClient(c, msg) {
+			break
+		}
+	}
+	m.detach(c)
+	c.out.close()
+	conn.Close()
+	<-writerDone
+	return true
+}
+
+// cdpReplaysState — домены, чей X.enable присылает события о текущем
+// состоянии (контексты, скрипты, стили, накопленные записи). Ответ на первое
+// включение их не заменяет, поэтому каждое включение уходит в браузер;
+// события повтора получат и клиенты, включившие домен раньше.
+var cdpReplaysState = map[string]bool{
+	"Runtime":  true,
+	"Debugger": true,
+	"DOM":      true,
+	"CSS":      true,
+	"Log":      true,
+}
+
+// fromClient переписывает id запроса и отправляет его в браузер; включение
+// уже включённого в той же сессии домена отвечается ответом на первое
+// включение, выключение ещё нужного другим — на месте.
+func (m *cdpMux) fromClient(c *cdpClient, msg []byte) bool {
+	var fields map[string]json.RawMessage
+	if err := json.Unmarshal(msg, &fields); err != nil {
+		c.out.push(websocket.TextMessage, []byte(`{"error":{"code":-32700,"message":"Message must be a valid JSON"}}`))
+		return true
+	}
+	var method, session string
+	json.Unmarshal(fields["method"], &method)
+	json.Unmarshal(fields["sessionId"], &session)
+	clientID := fields["id"]
+	domain, action, _ := strings.Cut(method, ".")
+	key := cdpKey{session: session, domain: domain}
+
+	m.mu.Lock()
+	if m.closed {
+		m.mu.Unlock()
+		return false
+	}
+	forward := true
+	var enabling *cdpDomain
+	if domain != "" {
+		c.domains[key] = true
+	}
+	switch action {
+	case "enable":
+		d, first := m.enable(c, key)
+		switch {
+		case first:
+			enabling = d
+		case cdpReplaysState[domain]:
+			// Повтор состояния нужен и этому клиенту: включение уходит в браузер.
+		case d.reply == nil:
+			// Первое включение ещё в пути: ответ придёт вместе с ним.
+			d.waiters = append(d.waiters, cdpPending{client: c, id: clientID})
+			m.mu.Unlock()
+			return true
+		default:
+			reply := d.reply
+			m.mu.Unlock()
+			return c.out.push(websocket.TextMessage, cdpWithID(clientID, reply))
+		}
+	case "disable":
+		delete(c.domains, key)
+		forward = c.enabled[key] != nil && m.release(c, key)
+	}
+	if !forward {
+		m.mu.Unlock()
+		return c.out.push(websocket.TextMessage, cdpEmptyResult(clientID, session))
+	}
+	id := m.track(c, clientID, enabling)
+	m.mu.Unlock()
+
+	fields["id"] = json.RawMessage(strconv.FormatInt(id, 10))
+	data, err := json.Marshal(fields)
+	if err != nil {
+		return false
+	}
+	return m.toUpstream.push(websocket.TextMessage, data)
+}
+
+// track выдаёт запросу сквозной id соединения. Вызывается под m.mu.
+func (m *cdpMux) track(c *cdpClient, clientID json.RawMessage, enable *cdpDomain) int64 {
+	m.nextID++
+	m.pending[m.nextID] = cdpPending{client: c, id: clientID, enable: enable}
+	return m.nextID
+}
+
+// enable учитывает включение домена клиентом; true — включение первое
+// и его нужно отправить в браузер. Вызывается под m.mu.
+func (m *cdpMux) enable(c *cdpClient, key cdpKey) (*cdpDomain, bool) {
+	if d := c.enabled[key]; d != nil {
+		return d, false
+	}
+	d := m.enabled[key]
+	first := d == nil
+	if first {
+		d = &cdpDomain{key: key}
+		m.enabled[key] = d
+	}
+	d.refs++
+	c.enabled[key] = d
+	return d, first
+}
+
+// enableDone запоминает ответ браузера на включение домена и возвращает
+// ждавших его клиентов. Ошибку не запоминает: домен снова считается
+// выключенным, и следующий X.enable уйдёт в браузер.
+func (m *cdpMux) enableDone(d *cdpDomain, body []byte, failed bool) []cdpPending {
+	m.mu.Lock()
+	defer m.mu.Unlock()
+	waiters := d.waiters
+	d.waiters = nil
+	if !failed {
+		d.reply = body
+		return waiters
+	}
+	if m.enabled[d.key] == d {
+		delete(m.enabled, d.key)
+	}
+	for c := range m.clients {
+		if c.enabled[d.key] == d {
+			delete(c.enabled, d.key)
+		}
+	}
+	return waiters
+}
+
+// release снимает с клиента включение домена; true — домен больше никому
+// не нужен и его пора выключить в браузере. Вызывается под m.mu.
+func (m *cdpMux) release(c *cdpClient, key cdpKey) bool {
+	d := c.enabled[key]
+	delete(c.enabled, key)
+	if d == nil || m.enabled[key] != d {
+		return false
+	}
+	d.refs--
+	if d.refs > 0 {
+		return false
+	}
+	delete(m.enabled, key)
+	return true
+}
+
+// detach убирает отключившегося клиента: его ответы больше не ждут,
+// а домены, которые были нужны только ему, выключаются в браузере в той
+// же сессии, где он их включал.
+func (m *cdpMux) detach(c *cdpClient) {
+	m.mu.Lock()
+	delete(m.clients, c)
+	for id, p := range m.pending {
+		if p.client == c {
+			p.client = nil
+			m.pending[id] = p
+		}
+	}
+	var disable [][]byte
+	if !m.closed {
+		for key := range c.enabled {
+			if m.release(c, key) {
+				disable = append(disable, cdpDisable(m.track(nil, nil, nil), key))
+			}
+		}
+	}
+	m.mu.Unlock()
+
+	for _, msg := range disable {
+		m.toUpstream.push(websocket.TextMessage, msg)
+	}
+}
+
+// fromUpstream возвращает ответ клиенту, отправившему запрос, с его id
+// (ответ на включение домена — и ждавшим его клиентам), а событие — всем
+// клиентам, работающим с доменом события в его сессии.
+func (m *cdpMux) fromUpstream(msg []byte) {
+	var envelope struct {
+		ID        *int64 `json:"id"`
+		Method    string `json:"method"`
+		SessionID string `json:"sessionId"`
+	}
+	if err := json.Unmarshal(msg, &envelope); err != nil {
+		return
+	}
+
+	if envelope.ID != nil {
+		m.mu.Lock()
+		p, ok := m.pending[*envelope.ID]
+		delete(m.pending, *envelope.ID)
+		m.mu.Unlock()
+		if !ok || (p.client == nil && p.enable == nil) {
+			return
+		}
+		var fields map[string]json.RawMessage
+		if err := json.Unmarshal(msg, &fields); err != nil {
+			return
+		}
+		delete(fields, "id")
+		body, err := json.Marshal(fields)
+		if err != nil {
+			return
+		}
+		var waiters []cdpPending
+		if p.enable != nil {
+			waiters = m.enableDone(p.enable, body, fields["error"] != nil)
+		}
+		if p.client != nil {
+			m.send(p.client, cdpWithID(p.id, body))
+		}
+		for _, w := range waiters {
+			m.send(w.client, cdpWithID(w.id, body))
+		}
+		return
+	}
+
+	domain, _, _ := strings.Cut(envelope.Method, ".")
+	key := cdpKey{session: envelope.SessionID, domain: domain}
+	m.mu.Lock()
+	var subscribers []*cdpClient
+	for c := range m.clients {
+		if c.domains[key] {
+			subscribers = append(subscribers, c)
+		}
+	}
+	m.mu.Unlock()
+	for _, c := range subscribers {
+		m.send(c, msg)
+	}
+}
+
+// send не ждёт медленного клиента: если он отстал больше чем на BufferBytes,
+// его соединение закрывается, а остальные клиенты продолжают получать события.
+func (m *cdpMux) send(c *cdpClient, data []byte) {
+	if limit := m.proxy.cfg.BufferBytes; limit > 0 && c.out.buffered.Load() > limit {
+		c.out.close()
+		return
+	}
+	c.out.push(websocket.TextMessage, data)
+}
+
+// cdpEmptyResult — ответ мультиплексора за браузер. sessionId обязателен:
+// по нему клиенты с flatten находят сессию, которой адресован ответ.
+func cdpEmptyResult(id json.RawMessage, session string) []byte {
+	if session == "" {
+		return cdpWithID(id, []byte(`{"result":{}}`))
+	}
+	sessionID, _ := json.Marshal(session)
+	return cdpWithID(id, append(append([]byte(`{"result":{},"sessionId":`), sessionID...), '}'))
+}
+
+// cdpDisable — выключение домена от имени мультиплексора в сессии, где
+// домен был включён.
+func cdpDisable(id int64, key cdpKey) []byte {
+	data, _ := json.Marshal(struct {
+		ID        int64  `json:"id"`
+		Method    string `json:"method"`
+		SessionID string `json:"sessionId,omitempty"`
+	}{ID: id, Method: key.domain + ".disable", SessionID: key.session})
+	return data
+}
+
+// cdpWithID подставляет id клиента в ответ без id: {"result":…} → {"id":N,"result":…}.
+func cdpWithID(id json.RawMessage, body []byte) []byte {
+	if len(id) == 0 {
+		id = json.RawMessage("null")
+	}
+	out := append([]byte(`{"id":`), id...)
+	if len(body) <= 2 {
+		return append(out, '}')
+	}
+	return append(append(out, ','), body[1:]...)
+}
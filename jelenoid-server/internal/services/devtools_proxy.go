@@ -0,0 +1,217 @@
+package services
+
+import (
+	"context"
+	"errors"
+	"io"
+	"log"
+	"net/http"
+	"sync"
+	"time"
+
+	"github.com/gorilla/websocket"
+)
+
+const (
+	devToolsHandshakeTimeout = 10 * time.Second
+	devToolsFrameBufferSize  = 32 * 1024
+)
+
+type DevToolsProxyConfig struct {
+	// MaxMessageSize ограничивает одно сообщение CDP с каждой стороны.
+	MaxMessageSize int64
+	// BufferBytes — сколько байт клиентских сообщений может ждать отправки
+	// в браузер, в том числе пока хаб ещё подключается к контейнеру.
+	BufferBytes int64
+	// Multiplex — все клиенты сессии делят одно соединение с браузером.
+	Multiplex bool
+}
+
+var devToolsWriteBuffers = &sync.Pool{}
+
+// devToolsDialer — единый клиент для всех CDP-соединений с контейнерами.
+var devToolsDialer = &websocket.Dialer{
+	Proxy:            http.ProxyFromEnvironment,
+	HandshakeTimeout: devToolsHandshakeTimeout,
+	ReadBufferSize:   devToolsFrameBufferSize,
+	WriteBufferSize:  devToolsFrameBufferSize,
+	WriteBufferPool:  devToolsWriteBuffers,
+}
+
+var devToolsCopyBuffers = newProxyBufferPool(devToolsFrameBufferSize)
+
+// DevToolsProxy проксирует CDP-сокет клиента в браузер контейнера.
+type DevToolsProxy struct {
+	activeSessions *ActiveSessionsService
+	cfg            DevToolsProxyConfig
+	compression    CompressionConfig
+	upgrader       websocket.Upgrader
+}
+
+func NewDevToolsProxy(activeSessions *ActiveSessionsService, cfg DevToolsProxyConfig, compression CompressionConfig) *DevToolsProxy {
+	return &DevToolsProxy{
+		activeSessions: activeSessions,
+		cfg:            cfg,
+		compression:    compression,
+		upgrader: websocket.Upgrader{
+			ReadBufferSize:    devToolsFrameBufferSize,
+			WriteBufferSize:   devToolsFrameBufferSize,
+			WriteBufferPool:   devToolsWriteBuffers,
+			EnableCompression: compression.Enabled,
+			CheckOrigin:       func(r *http.Request) bool { return true },
+		},
+	}
+}
+
+// ServeSession подключает клиента к CDP сессии hubSessionID: в режиме
+// Multiplex — через общий мультиплексор сессии, иначе отдельным соединением.
+func (p *DevToolsProxy) ServeSession(w http.ResponseWriter, r *http.Request, hubSessionID, targetURL string) {
+	if !p.cfg.Multiplex {
+		p.Serve(w, r, targetURL)
+		return
+	}
+	clientConn, err := p.upgrader.Upgrade(w, r, nil)
+	if err != nil {
+		return
+	}
+	defer clientConn.Close()
+	p.compression.Apply(clientConn)
+	if p.cfg.MaxMessageSize > 0 {
+		clientConn.SetReadLimit(p.cfg.MaxMessageSize)
+	}
+
+	// Мультиплексор мог закрыться между выдачей и подключением клиента
+	// (браузер закрыл соединение) — тогда берётся новый.
+	for attempt := 0; attempt < 2; attempt++ {
+		mux := p.activeSessions.cdpMuxFor(hubSessionID, func() *cdpMux { return newCDPMux(p, targetURL) })
+		if mux == nil {
+			break
+		}
+		if mux.serve(clientConn) {
+			return
+		}
+	}
+	clientConn.WriteControl(websocket.CloseMessage,
+		websocket.FormatCloseMessage(websocket.CloseInternalServerErr, "Failed to connect to browser DevTools"),
+		time.Now().Add(time.Second))
+}
+
+// Serve принимает клиента и подключается к targetURL в фоне. Сообщения,
+// пришедшие от клиента до подключения, ждут в relay (не больше BufferBytes)
+// и уходят в браузер по порядку сразу после рукопожатия.
+func (p *DevToolsProxy) Serve(w http.ResponseWriter, r *http.Request, targetURL string) {
+	clientConn, err := p.upgrader.Upgrade(w, r, nil)
+	if err != nil {
+		return
+	}
+	defer clientConn.Close()
+	p.compression.Apply(clientConn)
+	if p.cfg.MaxMessageSize > 0 {
+		clientConn.SetReadLimit(p.cfg.MaxMessageSize)
+	}
+
+	toContainer := newFrameRelay(PlaywrightRelayConfig{
+		HighWatermark: p.cfg.BufferBytes,
+		LowWatermark:  p.cfg.BufferBytes / 4,
+	})
+	clientGone := make(chan struct{})
+	go func() {
+		defer close(clientGone)
+		defer toContainer.close()
+		for {
+			messageType, buf, err := readRelayFrame(clientConn)
+			if err != nil {
+				return
+			}
+			if !toContainer.pushBuffer(messageType, buf) {
+				return
+			}
+		}
+	}()
+
+	// Клиент ушёл, не дождавшись рукопожатия, — подключение отменяется.
+	ctx, cancel := context.WithCancel(context.Background())
+	go func() {
+		select {
+		case <-clientGone:
+			cancel()
+		case <-ctx.Done():
+		}
+	}()
+	containerConn, _, err := devToolsDialer.DialContext(ctx, targetURL, nil)
+	cancel()
+	if err != nil {
+		if !errors.Is(err, context.Canceled) {
+			log.Printf("DevTools proxy: failed to connect to %s: %v", targetURL, err)
+		}
+		clientConn.WriteControl(websocket.CloseMessage,
+			websocket.FormatCloseMessage(websocket.CloseInternalServerErr, "Failed to connect to browser DevTools"),
+			time.Now().Add(time.Second))
+		clientConn.Close()
+		<-clientGone
+		return
+	}
+	defer containerConn.Close()
+	if p.cfg.MaxMessageSize > 0 {
+		containerConn.SetReadLimit(p.cfg.MaxMessageSize)
+	}
+
+	containerDone := make(chan struct{})
+	go func() {
+		defer close(containerDone)
+		p.streamMessages(clientConn, containerConn)
+		clientConn.Close()
+	}()
+
+	if toContainer.pumpTo(containerConn) == nil {
+		containerConn.WriteControl(websocket.CloseMessage,
+			websocket.FormatCloseMessage(websocket.CloseNormalClosure, ""),
+			time.Now().Add(time.Second))
+	}
+	containerConn.Close()
+	clientConn.Close()
+	<-clientGone
+	<-containerDone
+}
+
+// streamMessages пересылает сообщения из src в dst частями по размеру буфера:
+// ответ на Page.captureScreenshot или Page.printToPDF не собирается в памяти
+// целиком, и его начало уходит клиенту, пока хвост ещё читается из браузера.
+func (p *DevToolsProxy) streamMessages(dst, src *websocket.Conn) error {
+	buf := devToolsCopyBuffers.Get()
+	defer devToolsCopyBuffers.Put(buf)
+	for {
+		messageType, r, err := src.NextReader()
+		if err != nil {
+			return err
+		}
+		// Первый кусок читается заранее: если сообщение в него уместилось,
+		// его размер известен и по нему решается, сжимать ли сообщение.
+		n, err := io.ReadFull(r, buf)
+		whole := err == io.EOF || err == io.ErrUnexpectedEOF
+		if err != nil && !whole {
+			return err
+		}
+		if p.compression.Enabled {
+			dst.EnableWriteCompression(!whole || p.compression.ShouldCompress(n))
+		}
+
+		w, err := dst.NextWriter(messageType)
+		if err != nil {
+			return err
+		}
+		if _, err := w.Write(buf[:n]); err != nil {
+			w.Close()
+			return err
+		}
+		if !whole {
+			if _, err := io.CopyBuffer(w, r, buf); err != nil {
+				w.Close()
+				return err
+			}
+		}
+		if err := w.Close(); err != nil {
+			return err
+		}
+	}
+}
@@ -0,0 +1,199 @@
+package services
+
+import (
+	"bytes"
+	"encoding/json"
+	"net/http"
+	"net/http/httptest"
+	"strings"
+	"sync"
+	"testing"
+
+	"github.com/gorilla/websocket"
+)
+
+// Клиент пишет сразу после рукопожатия с хабом: сообщения должны дождаться
+// подключения к браузеру и вернуться по порядку, большое — без искажений.
+func TestDevToolsProxy_BuffersEarlyMessagesAndStreamsLarge(t *testing.T) {
+	browserURL := newEchoServer(t)
+
+	proxy := NewDevToolsProxy(nil, DevToolsProxyConfig{MaxMessageSize: 8 << 20, BufferBytes: 4 << 20}, CompressionConfig{})
+	hub := httptest.NewServer(http.HandlerFunc(func(w http.ResponseWriter, r *http.Request) {
+		proxy.Serve(w, r, browserURL)
+	}))
+	defer hub.Close()
+
+	client, _, err := websocket.DefaultDialer.Dial("ws"+strings.TrimPrefix(hub.URL, "http"), nil)
+	if err != nil {
+		t.Fatal(err)
+	}
+	defer client.Close()
+
+	large := bytes.Repeat([]byte("x"), 1<<20)
+	sent := [][]byte{[]byte(`{"id":1}`), []byte(`{"id":2}`), large}
+	for _, msg := range sent {
+		if err := client.WriteMessage(websocket.TextMessage, msg); err != nil {
+			t.Fatal(err)
+		}
+	}
+	for i, want := range sent {
+		_, got, err := client.ReadMessage()
+		if err != nil {
+			t.Fatal(err)
+		}
+		if !bytes.Equal(got, want) {
+			t.Fatalf("message %d: got %d bytes, want %d", i, len(got), len(want))
+		}
+	}
+}
+
+// Два клиента на одном соединении с браузером: Network.enable уходит в браузер
+// один раз на сессию, ответы приходят с id клиента, событие Network — тем,
+// кто включил домен в сессии события.
+func TestCDPMux_SharesUpstreamAndRoutesByID(t *testing.T) {
+	var mu sync.Mutex
+	enables := make(map[string]int)
+	upgrader := websocket.Upgrader{}
+	browser := httptest.NewServer(http.HandlerFunc(func(w http.ResponseWriter, r *http.Request) {
+		conn, err := upgrader.Upgrade(w, r, nil)
+		if err != nil {
+			return
+		}
+		defer conn.Close()
+		for {
+			var req struct {
+				ID        int64  `json:"id"`
+				Method    string `json:"method"`
+				SessionID string `json:"sessionId,omitempty"`
+			}
+			if err := conn.ReadJSON(&req); err != nil {
+				return
+			}
+			switch {
+			case strings.HasSuffix(req.Method, ".enable"):
+				mu.Lock()
+				enables[req.Method+"@"+req.SessionID]++
+				mu.Unlock()
+			case req.Method == "Page.reload":
+				conn.WriteJSON(map[string]interface{}{"method": "Network.dataReceived", "params": map[string]interface{}{}, "sessionId": req.SessionID})
+			}
+			conn.WriteJSON(map[string]interface{}{"id": req.ID, "result": map[string]interface{}{"method": req.Method}, "sessionId": req.SessionID})
+		}
+	}))
+	defer browser.Close()
+
+	proxy := NewDevToolsProxy(nil, DevToolsProxyConfig{BufferBytes: 1 << 20, Multiplex: true}, CompressionConfig{})
+	mux := newCDPMux(proxy, "ws"+strings.TrimPrefix(browser.URL, "http"))
+	defer mux.close()
+	hub := httptest.NewServer(http.HandlerFunc(func(w http.ResponseWriter, r *http.Request) {
+		conn, err := proxy.upgrader.Upgrade(w, r, nil)
+		if err != nil {
+			return
+		}
+		mux.serve(conn)
+	}))
+	defer hub.Close()
+
+	dial := func() *websocket.Conn {
+		conn, _, err := websocket.DefaultDialer.Dial("ws"+strings.TrimPrefix(hub.URL, "http"), nil)
+		if err != nil {
+			t.Fatal(err)
+		}
+		t.Cleanup(func() { conn.Close() })
+		return conn
+	}
+	type message struct {
+		ID        *int64          `json:"id"`
+		Method    string          `json:"method"`
+		Result    json.RawMessage `json:"result"`
+		SessionID string          `json:"sessionId"`
+	}
+	write := func(conn *websocket.Conn, id int64, method, session string) {
+		t.Helper()
+		req := map[string]interface{}{"id": id, "method": method}
+		if session != "" {
+			req["sessionId"] = session
+		}
+		if err := conn.WriteJSON(req); err != nil {
+			t.Fatal(err)
+		}
+	}
+	read := func(conn *websocket.Conn) message {
+		t.Helper()
+		var msg message
+		if err := conn.ReadJSON(&msg); err != nil {
+			t.Fatal(err)
+		}
+		return msg
+	}
+	enabled := func(method string) int {
+		mu.Lock()
+		defer mu.Unlock()
+		return enables[method]
+	}
+
+	// Второе включение может прийти раньше ответа браузера на первое:
+	// оба клиента должны получить настоящий ответ, а не пустой.
+	a, b := dial(), dial()
+	for _, conn := range []*websocket.Conn{a, b} {
+		write(conn, 7, "Network.enable", "")
+	}
+	for _, conn := range []*websocket.Conn{a, b} {
+		msg := read(conn)
+		if msg.ID == nil || *msg.ID != 7 {
+			t.Fatalf("enable response must carry the client id, got %+v", msg)
+		}
+		if string(msg.Result) != `{"method":"Network.enable"}` {
+			t.Fatalf("enable response must carry the browser result, got %s", msg.Result)
+		}
+	}
+
+	write(a, 8, "Page.reload", "")
+	if msg := read(a); msg.Method != "Network.dataReceived" {
+		t.Fatalf("client A expected the Network event first, got %+v", msg)
+	}
+	if msg := read(a); msg.ID == nil || *msg.ID != 8 {
+		t.Fatalf("client A expected response with id 8, got %+v", msg)
+	}
+	if msg := read(b); msg.Method != "Network.dataReceived" {
+		t.Fatalf("client B expected the Network event, got %+v", msg)
+	}
+	if n := enabled("Network.enable@"); n != 1 {
+		t.Fatalf("browser should see one Network.enable, got %d", n)
+	}
+
+	// Клиенты в своих сессиях (flatten): включение в одной сессии не отвечает
+	// за другую, а события сессии не уходят чужому клиенту.
+	for _, c := range []struct {
+		conn    *websocket.Conn
+		session string
+	}{{a, "S1"}, {b, "S2"}} {
+		write(c.conn, 9, "Network.enable", c.session)
+		if msg := read(c.conn); msg.ID == nil || *msg.ID != 9 || msg.SessionID != c.session {
+			t.Fatalf("enable in %s: got %+v", c.session, msg)
+		}
+		if n := enabled("Network.enable@" + c.session); n != 1 {
+			t.Fatalf("browser should see Network.enable in %s, got %d", c.session, n)
+		}
+	}
+	write(b, 10, "Page.reload", "S2")
+	if msg := read(b); msg.Method != "Network.dataReceived" || msg.SessionID != "S2" {
+		t.Fatalf("client B expected the S2 Network event, got %+v", msg)
+	}
+	if msg := read(b); msg.ID == nil || *msg.ID != 10 {
+		t.Fatalf("client B expected response with id 10, got %+v", msg)
+	}
+
+	// Runtime.enable повторяет состояние событиями: каждое включение — в браузер.
+	write(a, 11, "Runtime.enable", "")
+	if msg := read(a); msg.ID == nil || *msg.ID != 11 {
+		t.Fatalf("client A expected response with id 11, got %+v", msg)
+	}
+	write(b, 11, "Runtime.enable", "")
+	if msg := read(b); msg.ID == nil || *msg.ID != 11 {
+		t.Fatalf("client B expected response with id 11, got %+v", msg)
+	}
+	if n := enabled("Runtime.enable@"); n != 2 {
+		t.Fatalf("browser should see both Runtime.enable, got %d", n)
+	}
+}
@@ -70,6 +70,51 @@ func (s *DockerExternalService) StartPlaywrightContainer(image string, playwrigh
 	return dto.NewContainerInfo(record.ContainerID, record.ContainerName), nil
 }
 
+// PreparePlaywright просит container-manager собрать образ с предустановленным
+// playwright; сборка идёт в фоне, её состояние — в /api/playwright/stats.
+func (s *DockerExternalService) PreparePlaywright(image, version string) error {
+	url := fmt.Sprintf("%s/api/playwright/prepare?image=%s&version=%s", s.containerManagerAddr, image, version)
+	resp, err := s.httpClient.Post(url, "application/json", nil)
+	if err != nil {
+		return fmt.Errorf("failed to prepare playwright image: %w", err)
+	}
+	defer resp.Body.Close()
+
+	if resp.StatusCode != http.StatusAccepted {
+		body, _ := io.ReadAll(resp.Body)
+		return fmt.Errorf("failed to prepare playwright image, status: %d, body: %s", resp.StatusCode, string(body))
+	}
+	return nil
+}
+
+func (s *DockerExternalService) ConfigureSeleniumPool(image string, isVncEnabled bool, size, maxSize int) error {
+	url := fmt.Sprintf("%s/api/pool/selenium?image=%s&isVncEnabled=%v&size=%d&maxSize=%d", s.containerManagerAddr, image, isVncEnabled, size, maxSize)
+	return s.configurePool("selenium", url)
+}
+
+func (s *DockerExternalService) ConfigurePlaywrightPool(image, version string, size, maxSize int) error {
+	url := fmt.Sprintf("%s/api/pool/playwright?image=%s&version=%s&size=%d&maxSize=%d", s.containerManagerAddr, image, version, size, maxSize)
+	return s.configurePool("playwright", url)
+}
+
+func (s *DockerExternalService) configurePool(kind, url string) error {
+	req, err := http.NewRequest(http.MethodPut, url, nil)
+	if err != nil {
+		return err
+	}
+	resp, err := s.httpClient.Do(req)
+	if err != nil {
+		return fmt.Errorf("failed to configure %s pool: %w", kind, err)
+	}
+	defer resp.Body.Close()
+
+	if resp.StatusCode != http.StatusOK {
+		body, _ := io.ReadAll(resp.Body)
+		return fmt.Errorf("failed to configure %s pool, status: %d, body: %s", kind, resp.StatusCode, string(body))
+	}
+	return nil
+}
+
 func (s *DockerExternalService) StopContainer(containerID string) (bool, error) {
 	url := fmt.Sprintf("%s/api/containers?containerId=%s", s.containerManagerAddr, containerID)
 	req, err := http.NewRequest(http.MethodDelete, url, nil)
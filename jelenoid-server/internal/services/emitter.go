@@ -5,7 +5,10 @@ import (
 	"fmt"
 	"log"
 	"net/http"
+	"strconv"
+	"strings"
 	"sync"
+	"time"
 )
 
 type SSEEvent struct {
@@ -14,55 +17,89 @@ type SSEEvent struct {
 }
 
 type SSEHub struct {
-	subscribers         map[chan []byte]bool
-	mu                 sync.RWMutex
-	initialDataBuilder func() SSEEvent
+	subscribers map[chan []byte]bool
+	mu          sync.RWMutex
+
+	// Версионированные события Publish: номер последнего, снимок состояния
+	// на этот номер и кольцевой журнал для досылки по Last-Event-ID. epoch
+	// отличает номера этого процесса от номеров до перезапуска.
+	epoch    string
+	seq      int64
+	snapshot SSEEvent
+	replay   [][]byte
 }
 
-func NewSSEHub() *SSEHub {
+func NewSSEHub(replaySize int) *SSEHub {
 	return &SSEHub{
 		subscribers: make(map[chan []byte]bool),
+		epoch:       strconv.FormatInt(time.Now().UnixNano(), 36),
+		replay:      make([][]byte, max(replaySize, 0)),
 	}
 }
 
-func (h *SSEHub) SetInitialDataBuilder(builder func() SSEEvent) {
-	h.mu.Lock()
-	defer h.mu.Unlock()
-	h.initialDataBuilder = builder
-}
-
-func (h *SSEHub) Subscribe() chan []byte {
-	ch := make(chan []byte, 16)
-	h.mu.Lock()
-	h.subscribers[ch] = true
-	h.mu.Unlock()
-	return ch
-}
-
 func (h *SSEHub) Unsubscribe(ch chan []byte) {
 	h.mu.Lock()
-	delete(h.subscribers, ch)
-	close(ch)
+	if h.subscribers[ch] {
+		delete(h.subscribers, ch)
+		close(ch)
+	}
 	h.mu.Unlock()
 }
 
-func (h *SSEHub) Broadcast(event SSEEvent) {
+// Publish рассылает событие со следующим номером и запоминает его в журнале.
+// snapshot — полное состояние после этого события, его получает новый
+// подписчик. Дельту нельзя потерять, поэтому подписчика с переполненным
+// буфером хаб отключает: браузер переподключится с Last-Event-ID и
+// получит пропущенное из журнала.
+func (h *SSEHub) Publish(event SSEEvent, snapshot SSEEvent) {
 	data, err := json.Marshal(event.Data)
 	if err != nil {
 		return
 	}
-	frame := fmt.Appendf(nil, "event: %s\ndata: %s\n\n", event.Event, string(data))
 
-	h.mu.RLock()
-	defer h.mu.RUnlock()
+	h.mu.Lock()
+	defer h.mu.Unlock()
+	h.seq++
+	frame := fmt.Appendf(nil, "id: %s\nevent: %s\ndata: %s\n\n", h.eventID(h.seq), event.Event, data)
+	if len(h.replay) > 0 {
+		h.replay[h.seq%int64(len(h.replay))] = frame
+	}
+	h.snapshot = snapshot
 	for ch := range h.subscribers {
 		select {
 		case ch <- frame:
 		default:
+			delete(h.subscribers, ch)
+			close(ch)
 		}
 	}
 }
 
+func (h *SSEHub) eventID(seq int64) string {
+	return h.epoch + "-" + strconv.FormatInt(seq, 10)
+}
+
+// subscribe регистрирует подписчика и возвращает, с чего ему начать:
+// события из журнала после lastEventID, если они там все есть, иначе
+// снимок состояния с его номером.
+func (h *SSEHub) subscribe(lastEventID string) (ch chan []byte, missed [][]byte, snapshot SSEEvent, seq int64) {
+	ch = make(chan []byte, 16)
+	h.mu.Lock()
+	defer h.mu.Unlock()
+	h.subscribers[ch] = true
+
+	if epoch, n, ok := strings.Cut(lastEventID, "-"); ok && epoch == h.epoch {
+		last, err := strconv.ParseInt(n, 10, 64)
+		if err == nil && last >= 0 && last <= h.seq && h.seq-last <= int64(len(h.replay)) {
+			for s := last + 1; s <= h.seq; s++ {
+				missed = append(missed, h.replay[s%int64(len(h.replay))])
+			}
+			return ch, missed, SSEEvent{}, h.seq
+		}
+	}
+	return ch, nil, h.snapshot, h.seq
+}
+
 func (h *SSEHub) ServeHTTP(w http.ResponseWriter, r *http.Request) {
 	log.Printf("SSEHub: Serving /events from %s", r.RemoteAddr)
 
@@ -84,28 +121,29 @@ func (h *SSEHub) ServeHTTP(w http.ResponseWriter, r *http.Request) {
 	w.Header().Set("Connection", "keep-alive")
 	w.Header().Set("X-Accel-Buffering", "no")
 
-	ch := h.Subscribe()
+	ch, missed, snapshot, seq := h.subscribe(r.Header.Get("Last-Event-ID"))
 	defer h.Unsubscribe(ch)
 
-	h.mu.RLock()
-	initialBuilder := h.initialDataBuilder
-	h.mu.RUnlock()
-
-	if initialBuilder != nil {
-		initialEvent := initialBuilder()
-		data, err := json.Marshal(initialEvent.Data)
+	if snapshot.Event != "" {
+		data, err := json.Marshal(snapshot.Data)
 		if err == nil {
-			fmt.Fprintf(w, "event: %s\ndata: %s\n\n", initialEvent.Event, string(data))
-			flusher.Flush()
+			fmt.Fprintf(w, "id: %s\nevent: %s\ndata: %s\n\n", h.eventID(seq), snapshot.Event, string(data))
 		}
 	}
+	for _, frame := range missed {
+		w.Write(frame)
+	}
+	flusher.Flush()
 
 	ctx := r.Context()
 	for {
 		select {
 		case <-ctx.Done():
 			return
-		case frame := <-ch:
+		case frame, ok := <-ch:
+			if !ok {
+				return
+			}
 			w.Write(frame)
 			flusher.Flush()
 		}
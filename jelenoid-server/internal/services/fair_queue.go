@@ -0,0 +1,166 @@
+package services
+
+import (
+	"sort"
+
+	"github.com/balakshievas/jelenoid-server-go/internal/dto"
+)
+
+const maxQueuePriority = 9
+
+// pendingQueue — дисциплина очереди selenium-запросов одного браузера.
+// Вызывается под seleniumQueueMu.
+type pendingQueue interface {
+	push(req *dto.PendingRequest)
+	pop() (*dto.PendingRequest, bool)
+	peek() (*dto.PendingRequest, bool)
+	len() int
+	retainIf(pred func(*dto.PendingRequest) bool)
+	snapshot() []*dto.PendingRequest
+	clear()
+}
+
+type fairFlow struct {
+	key    string
+	weight int
+	credit int
+	items  *queue[*dto.PendingRequest]
+}
+
+type fairBand struct {
+	priority int
+	flows    map[string]*fairFlow
+	ring     *queue[*fairFlow]
+	size     int
+}
+
+// fairQueue — взвешенный round-robin по ключам арендаторов внутри строгих
+// приоритетов: ключ с весом w получает w выдач за круг. push/pop — O(1),
+// не считая прохода по приоритетам (их не больше maxQueuePriority+1).
+type fairQueue struct {
+	weights map[string]int
+	bands   []*fairBand
+	size    int
+}
+
+func newFairQueue(weights map[string]int) *fairQueue {
+	return &fairQueue{weights: weights}
+}
+
+func (q *fairQueue) weightOf(key string) int {
+	if w, ok := q.weights[key]; ok && w > 0 {
+		return w
+	}
+	return 1
+}
+
+func (q *fairQueue) band(priority int) *fairBand {
+	i := 0
+	for ; i < len(q.bands); i++ {
+		if q.bands[i].priority == priority {
+			return q.bands[i]
+		}
+		if q.bands[i].priority < priority {
+			break
+		}
+	}
+	b := &fairBand{
+		priority: priority,
+		flows:    make(map[string]*fairFlow),
+		ring:     newQueue[*fairFlow](0),
+	}
+	q.bands = append(q.bands, nil)
+	copy(q.bands[i+1:], q.bands[i:])
+	q.bands[i] = b
+	return b
+}
+
+func (q *fairQueue) push(req *dto.PendingRequest) {
+	b := q.band(req.Priority)
+	f, ok := b.flows[req.QueueKey]
+	if !ok {
+		w := q.weightOf(req.QueueKey)
+		f = &fairFlow{key: req.QueueKey, weight: w, credit: w, items: newQueue[*dto.PendingRequest](0)}
+		b.flows[req.QueueKey] = f
+		b.ring.push(f)
+	}
+	f.items.push(req)
+	b.size++
+	q.size++
+}
+
+func (q *fairQueue) pop() (*dto.PendingRequest, bool) {
+	for _, b := range q.bands {
+		if b.size == 0 {
+			continue
+		}
+		f, _ := b.ring.peek()
+		req, _ := f.items.pop()
+		b.size--
+		q.size--
+		f.credit--
+		if f.items.len() == 0 {
+			b.ring.pop()
+			delete(b.flows, f.key)
+		} else if f.credit <= 0 {
+			f.credit = f.weight
+			b.ring.pop()
+			b.ring.push(f)
+		}
+		return req, true
+	}
+	return nil, false
+}
+
+func (q *fairQueue) peek() (*dto.PendingRequest, bool) {
+	for _, b := range q.bands {
+		if b.size == 0 {
+			continue
+		}
+		f, _ := b.ring.peek()
+		return f.items.peek()
+	}
+	return nil, false
+}
+
+func (q *fairQueue) len() int {
+	return q.size
+}
+
+func (q *fairQueue) retainIf(pred func(*dto.PendingRequest) bool) {
+	q.size = 0
+	for _, b := range q.bands {
+		b.size = 0
+		b.ring.retainIf(func(f *fairFlow) bool {
+			f.items.retainIf(pred)
+			if f.items.len() == 0 {
+				delete(b.flows, f.key)
+				return false
+			}
+			b.size += f.items.len()
+			return true
+		})
+		q.size += b.size
+	}
+}
+
+func (q *fairQueue) snapshot() []*dto.PendingRequest {
+	if q.size == 0 {
+		return nil
+	}
+	out := make([]*dto.PendingRequest, 0, q.size)
+	for _, b := range q.bands {
+		for _, f := range b.ring.snapshot() {
+			out = append(out, f.items.snapshot()...)
+		}
+	}
+	sort.SliceStable(out, func(i, j int) bool {
+		return out[i].QueuedTime.Before(out[j].QueuedTime)
+	})
+	return out
+}
+
+func (q *fairQueue) clear() {
+	q.bands = nil
+	q.size = 0
+}
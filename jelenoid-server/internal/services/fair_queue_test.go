@@ -0,0 +1,99 @@
+package services
+
+import (
+	"testing"
+	"time"
+
+	"github.com/balakshievas/jelenoid-server-go/internal/dto"
+)
+
+func newTestPendingRequest(key string, priority int) *dto.PendingRequest {
+	return &dto.PendingRequest{
+		QueueKey:   key,
+		Priority:   priority,
+		Future:     make(chan dto.PendingRequestResult, 1),
+		QueuedTime: time.Now(),
+		StartTime:  time.Now().UnixMilli(),
+	}
+}
+
+func TestFairQueue_SmallTenantIsNotStarved(t *testing.T) {
+	q := newFairQueue(nil)
+	for i := 0; i < 500; i++ {
+		q.push(newTestPendingRequest("big", 0))
+	}
+	q.push(newTestPendingRequest("small", 0))
+	q.push(newTestPendingRequest("small", 0))
+
+	served := 0
+	for i := 0; i < 4; i++ {
+		req, ok := q.pop()
+		if !ok {
+			t.Fatal("queue drained unexpectedly")
+		}
+		if req.QueueKey == "small" {
+			served++
+		}
+	}
+	if served != 2 {
+		t.Fatalf("small tenant should be served within 4 pops, got=%d", served)
+	}
+	if q.len() != 498 {
+		t.Fatalf("unexpected queue length: got=%d, want=498", q.len())
+	}
+}
+
+func TestFairQueue_Weights(t *testing.T) {
+	q := newFairQueue(map[string]int{"a": 3})
+	for i := 0; i < 30; i++ {
+		q.push(newTestPendingRequest("a", 0))
+		q.push(newTestPendingRequest("b", 0))
+	}
+
+	counts := map[string]int{}
+	for i := 0; i < 20; i++ {
+		req, _ := q.pop()
+		counts[req.QueueKey]++
+	}
+	if counts["a"] != 15 || counts["b"] != 5 {
+		t.Fatalf("expected 3:1 share, got a=%d b=%d", counts["a"], counts["b"])
+	}
+}
+
+func TestFairQueue_PriorityFirst(t *testing.T) {
+	q := newFairQueue(nil)
+	q.push(newTestPendingRequest("a", 0))
+	q.push(newTestPendingRequest("b", 5))
+	q.push(newTestPendingRequest("c", 1))
+
+	want := []string{"b", "c", "a"}
+	for _, key := range want {
+		req, ok := q.pop()
+		if !ok || req.QueueKey != key {
+			t.Fatalf("expected %s, got %+v", key, req)
+		}
+	}
+	if _, ok := q.pop(); ok {
+		t.Fatal("expected empty queue")
+	}
+}
+
+func TestFairQueue_RetainIf(t *testing.T) {
+	q := newFairQueue(nil)
+	q.push(newTestPendingRequest("a", 0))
+	q.push(newTestPendingRequest("b", 0))
+	q.push(newTestPendingRequest("a", 2))
+
+	q.retainIf(func(req *dto.PendingRequest) bool { return req.QueueKey != "a" })
+
+	if q.len() != 1 {
+		t.Fatalf("unexpected length after retainIf: %d", q.len())
+	}
+	req, ok := q.pop()
+	if !ok || req.QueueKey != "b" {
+		t.Fatalf("expected b, got %+v", req)
+	}
+	if len(q.snapshot()) != 0 {
+		t.Fatal("expected empty snapshot")
+	}
+}
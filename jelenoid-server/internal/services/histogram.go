@@ -0,0 +1,63 @@
+package services
+
+import (
+	"math"
+	"sort"
+	"time"
+
+	"github.com/balakshievas/jelenoid-server-go/internal/dto"
+)
+
+var latencyBucketsMs = [...]int64{10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000, 120000, 300000}
+
+// latencyHistogram — гистограмма с фиксированными бакетами; квантили
+// оцениваются верхней границей бакета. Синхронизация — на вызывающем.
+type latencyHistogram struct {
+	counts [len(latencyBucketsMs) + 1]int64
+	count  int64
+	sumMs  int64
+	maxMs  int64
+}
+
+func (h *latencyHistogram) observe(d time.Duration) {
+	ms := d.Milliseconds()
+	i := sort.Search(len(latencyBucketsMs), func(i int) bool { return ms <= latencyBucketsMs[i] })
+	h.counts[i]++
+	h.count++
+	h.sumMs += ms
+	if ms > h.maxMs {
+		h.maxMs = ms
+	}
+}
+
+func (h *latencyHistogram) quantile(q float64) int64 {
+	if h.count == 0 {
+		return 0
+	}
+	rank := int64(math.Ceil(q * float64(h.count)))
+	var cum int64
+	for i, c := range h.counts {
+		cum += c
+		if cum >= rank {
+			if i < len(latencyBucketsMs) {
+				return min(latencyBucketsMs[i], h.maxMs)
+			}
+			return h.maxMs
+		}
+	}
+	return h.maxMs
+}
+
+func (h *latencyHistogram) stats() dto.LatencyStats {
+	s := dto.LatencyStats{
+		Count: h.count,
+		P50Ms: h.quantile(0.5),
+		P90Ms: h.quantile(0.9),
+		P99Ms: h.quantile(0.99),
+		MaxMs: h.maxMs,
+	}
+	if h.count > 0 {
+		s.AvgMs = h.sumMs / h.count
+	}
+	return s
+}
@@ -25,6 +25,10 @@ type poolEntry struct {
 
 	refCount atomic.Int32
 	state    atomic.Int32
+	// sessions — сколько клиентов контейнер обслужил за жизнь; retiring —
+	// лимит исчерпан, новых клиентов не принимает и гасится после последнего.
+	sessions int
+	retiring bool
 
 	createdAt time.Time
 	idleSince atomic.Int64
@@ -65,6 +69,8 @@ type PlaywrightContainerPool struct {
 	idleTimeout time.Duration
 	maxSize     int
 	maxPerKey   int
+	clientsPer  int
+	retireAfter int
 
 	totalSlots chan struct{}
 
@@ -80,6 +86,11 @@ type PlaywrightPoolConfig struct {
 	IdleMs    int64
 	MaxSize   int
 	MaxPerKey int
+	// ClientsPerContainer — сколько клиентов одновременно обслуживает
+	// один run-server. 1 — по контейнеру на клиента.
+	ClientsPerContainer int
+	// RetireAfter — после скольких клиентов контейнер пересоздаётся; 0 — без ограничения.
+	RetireAfter int
 }
 
 func NewPlaywrightContainerPool(dockerService *DockerExternalService, cfg PlaywrightPoolConfig) *PlaywrightContainerPool {
@@ -95,6 +106,7 @@ func NewPlaywrightContainerPool(dockerService *DockerExternalService, cfg Playwr
 	if idleMs <= 0 {
 		idleMs = 60000
 	}
+	clientsPer := max(cfg.ClientsPerContainer, 1)
 
 	p := &PlaywrightContainerPool{
 		dockerService: dockerService,
@@ -102,6 +114,8 @@ func NewPlaywrightContainerPool(dockerService *DockerExternalService, cfg Playwr
 		idleTimeout:   time.Duration(idleMs) * time.Millisecond,
 		maxSize:       maxSize,
 		maxPerKey:     maxPerKey,
+		clientsPer:    clientsPer,
+		retireAfter:   max(cfg.RetireAfter, 0),
 		totalSlots:    make(chan struct{}, maxSize),
 		entries:       make(map[string][]*poolEntry),
 		stopIdleLoop:  make(chan struct{}),
@@ -142,33 +156,26 @@ func (p *PlaywrightContainerPool) Acquire(image, version string) (*poolEntry, er
 	}
 	key := poolKey(image, version)
 
-	for _, e := range p.entries[key] {
-		if e.State() == poolStateReady && e.refCount.Load() == 0 {
-			e.refCount.Add(1)
-			e.MarkActive()
-			if e.idleTimer != nil {
-				e.idleTimer.Stop()
-			}
-			p.mu.Unlock()
-			return e, nil
-		}
+	if picked := p.pickLocked(key); picked != nil {
+		p.leaseLocked(picked)
+		p.mu.Unlock()
+		return picked, nil
 	}
 
 	if len(p.entries[key]) >= p.maxPerKey {
-		existing := p.entries[key]
 		var picked *poolEntry
-		for _, e := range existing {
-			if e.State() == poolStateReady {
-				picked = e
-				break
+		// Без плотного режима лимит на ключ исчерпан — подсаживаем клиента
+		// в первый готовый контейнер сверх нормы, как раньше.
+		if p.clientsPer == 1 {
+			for _, e := range p.entries[key] {
+				if e.State() == poolStateReady && !e.retiring {
+					picked = e
+					break
+				}
 			}
 		}
 		if picked != nil {
-			picked.refCount.Add(1)
-			picked.MarkActive()
-			if picked.idleTimer != nil {
-				picked.idleTimer.Stop()
-			}
+			p.leaseLocked(picked)
 			p.mu.Unlock()
 			return picked, nil
 		}
@@ -194,7 +201,7 @@ func (p *PlaywrightContainerPool) Acquire(image, version string) (*poolEntry, er
 		createdAt: time.Now(),
 	}
 	entry.setState(poolStateStarting)
-	entry.refCount.Add(1)
+	p.leaseLocked(entry)
 	p.entries[key] = append(p.entries[key], entry)
 	p.mu.Unlock()
 
@@ -203,6 +210,39 @@ func (p *PlaywrightContainerPool) Acquire(image, version string) (*poolEntry, er
 	return entry, nil
 }
 
+// pickLocked выбирает контейнер с местом для ещё одного клиента — в том числе
+// ещё стартующий. Из подходящих берётся самый загруженный: клиенты собираются
+// плотнее, а лишние контейнеры простаивают и выселяются по таймауту.
+func (p *PlaywrightContainerPool) pickLocked(key string) *poolEntry {
+	var picked *poolEntry
+	for _, e := range p.entries[key] {
+		state := e.State()
+		if e.retiring || (state != poolStateReady && state != poolStateStarting) {
+			continue
+		}
+		refs := e.refCount.Load()
+		if int(refs) >= p.clientsPer {
+			continue
+		}
+		if picked == nil || refs > picked.refCount.Load() {
+			picked = e
+		}
+	}
+	return picked
+}
+
+func (p *PlaywrightContainerPool) leaseLocked(e *poolEntry) {
+	e.refCount.Add(1)
+	e.MarkActive()
+	if e.idleTimer != nil {
+		e.idleTimer.Stop()
+	}
+	e.sessions++
+	if p.retireAfter > 0 && e.sessions >= p.retireAfter {
+		e.retiring = true
+	}
+}
+
 func (p *PlaywrightContainerPool) startEntry(entry *poolEntry, key string) {
 	info, err := p.dockerService.StartPlaywrightContainer(entry.image, entry.version)
 	if err != nil {
@@ -243,7 +283,10 @@ func (p *PlaywrightContainerPool) Release(entry *poolEntry) {
 
 	entry.MarkIdle()
 
-	if !p.enabled {
+	p.mu.Lock()
+	retiring := entry.retiring
+	p.mu.Unlock()
+	if !p.enabled || retiring {
 		p.evict(entry)
 		return
 	}
@@ -346,16 +389,24 @@ func (p *PlaywrightContainerPool) Stats() PlaywrightPoolStats {
 	defer p.mu.Unlock()
 
 	stats := PlaywrightPoolStats{
-		Enabled: p.enabled,
-		MaxSize: p.maxSize,
-		Total:   0,
-		ByKey:   make(map[string]PlaywrightPoolKeyStats),
+		Enabled:             p.enabled,
+		MaxSize:             p.maxSize,
+		ClientsPerContainer: p.clientsPer,
+		RetireAfter:         p.retireAfter,
+		Total:               0,
+		ByKey:               make(map[string]PlaywrightPoolKeyStats),
 	}
 
 	for key, list := range p.entries {
 		ks := PlaywrightPoolKeyStats{}
 		for _, e := range list {
 			stats.Total++
+			clients := int(e.refCount.Load())
+			stats.Clients += clients
+			ks.Clients += clients
+			if e.retiring {
+				ks.Retiring++
+			}
 			switch e.State() {
 			case poolStateStarting:
 				ks.Starting++
@@ -378,11 +429,16 @@ type PlaywrightPoolKeyStats struct {
 	Ready    int `json:"ready"`
 	InUse    int `json:"inUse"`
 	Draining int `json:"draining"`
+	Retiring int `json:"retiring"`
+	Clients  int `json:"clients"`
 }
 
 type PlaywrightPoolStats struct {
-	Enabled bool                              `json:"enabled"`
-	MaxSize int                               `json:"maxSize"`
-	Total   int                               `json:"total"`
-	ByKey   map[string]PlaywrightPoolKeyStats `json:"byKey"`
+	Enabled             bool                              `json:"enabled"`
+	MaxSize             int                               `json:"maxSize"`
+	ClientsPerContainer int                               `json:"clientsPerContainer"`
+	RetireAfter         int                               `json:"retireAfter"`
+	Total               int                               `json:"total"`
+	Clients             int                               `json:"clients"`
+	ByKey               map[string]PlaywrightPoolKeyStats `json:"byKey"`
 }
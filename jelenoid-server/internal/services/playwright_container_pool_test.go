@@ -0,0 +1,63 @@
+package services
+
+import (
+	"testing"
+
+	"github.com/balakshievas/jelenoid-server-go/internal/dto"
+)
+
+func newTestPoolEntry(p *PlaywrightContainerPool, state poolContainerState, refs int32) *poolEntry {
+	e := &poolEntry{
+		image:         "playwright",
+		version:       "1.58.0",
+		containerInfo: &dto.ContainerInfo{ContainerID: "c"},
+	}
+	e.setState(state)
+	e.refCount.Store(refs)
+	key := poolKey(e.image, e.version)
+	p.entries[key] = append(p.entries[key], e)
+	return e
+}
+
+func TestPlaywrightPool_PacksClientsIntoBusiestContainer(t *testing.T) {
+	p := NewPlaywrightContainerPool(nil, PlaywrightPoolConfig{ClientsPerContainer: 3})
+	idle := newTestPoolEntry(p, poolStateReady, 0)
+	busy := newTestPoolEntry(p, poolStateReady, 2)
+	newTestPoolEntry(p, poolStateReady, 3)
+
+	key := poolKey("playwright", "1.58.0")
+	if picked := p.pickLocked(key); picked != busy {
+		t.Fatal("expected the busiest container with room")
+	}
+	p.leaseLocked(busy)
+	if picked := p.pickLocked(key); picked != idle {
+		t.Fatal("full container must not receive more clients")
+	}
+
+	stats := p.Stats()
+	if stats.Total != 3 || stats.Clients != 6 || stats.ByKey[key].Clients != 6 {
+		t.Fatalf("unexpected occupancy: %+v", stats)
+	}
+}
+
+func TestPlaywrightPool_RetiresAfterSessions(t *testing.T) {
+	p := NewPlaywrightContainerPool(nil, PlaywrightPoolConfig{ClientsPerContainer: 4, RetireAfter: 2})
+	e := newTestPoolEntry(p, poolStateStarting, 0)
+	key := poolKey("playwright", "1.58.0")
+
+	for i := 0; i < 2; i++ {
+		if picked := p.pickLocked(key); picked != e {
+			t.Fatalf("lease %d: expected starting container to accept clients", i)
+		}
+		p.leaseLocked(e)
+	}
+	if !e.retiring {
+		t.Fatal("container should retire after two sessions")
+	}
+	if p.pickLocked(key) != nil {
+		t.Fatal("retiring container must not accept new clients")
+	}
+	if p.Stats().ByKey[key].Retiring != 1 {
+		t.Fatal("retiring container should be reported")
+	}
+}
@@ -0,0 +1,256 @@
+package services
+
+import (
+	"bytes"
+	"sync"
+	"sync/atomic"
+
+	"github.com/balakshievas/jelenoid-server-go/internal/dto"
+	"github.com/gorilla/websocket"
+)
+
+// Сколько кадров писатель забирает из ящика за один проход.
+const relayBatchSize = 64
+
+type PlaywrightRelayConfig struct {
+	// HighWatermark — сколько байт может ждать отправки в одном направлении,
+	// прежде чем чтение с быстрой стороны встанет на паузу.
+	HighWatermark int64
+	// LowWatermark — до скольких байт нужно слить буфер, чтобы чтение продолжилось.
+	LowWatermark int64
+	// MaxFrameSize ограничивает размер одного входящего кадра с каждой стороны.
+	MaxFrameSize int64
+}
+
+type relayFrame struct {
+	messageType int
+	data        []byte
+	// buf — буфер из пула, в котором лежит data; после записи возвращается в пул.
+	buf *bytes.Buffer
+}
+
+// readRelayFrame читает кадр в буфер из пула. В отличие от ReadMessage,
+// кадр не собирается в новый срез с ростом через копирование: буфер
+// переиспользуется, а текст и бинарные данные одинаково идут как есть.
+func readRelayFrame(conn *websocket.Conn) (int, *bytes.Buffer, error) {
+	messageType, r, err := conn.NextReader()
+	if err != nil {
+		return 0, nil, err
+	}
+	buf := getFrameBuffer()
+	if _, err := buf.ReadFrom(r); err != nil {
+		putFrameBuffer(buf)
+		return 0, nil, err
+	}
+	return messageType, buf, nil
+}
+
+type relayNode struct {
+	next  atomic.Pointer[relayNode]
+	frame relayFrame
+}
+
+// Пройденные писателем узлы переиспользуются — на кадр не остаётся аллокаций.
+var relayNodes = sync.Pool{
+	New: func() interface{} {
+		return new(relayNode)
+	},
+}
+
+// frameRelay — почтовый ящик кадров одного направления playwright-прокси.
+// Читатель сокета кладёт кадры через push, единственный писатель забирает их
+// пачками через next и пишет в другой сокет. На пути кадра нет мьютексов:
+// очередь — связный список на атомиках (вставка в голову, чтение с хвоста
+// только писателем), порядок кадров сохраняется.
+//
+// Когда в ящике не меньше high байт, push встаёт на паузу, пока писатель
+// не сольёт ящик до low: медленная сторона тормозит чтение быстрой,
+// а не растит память хаба.
+type frameRelay struct {
+	high int64
+	low  int64
+	// compression решает по размеру кадра, сжимать ли его при записи.
+	compression CompressionConfig
+
+	head atomic.Pointer[relayNode]
+	// tail — последний прочитанный узел, принадлежит писателю.
+	tail *relayNode
+
+	buffered atomic.Int64
+	peak     atomic.Int64
+	pauses   atomic.Int64
+
+	// parked/wake будят писателя, waiting/resume — поставленного на паузу читателя.
+	parked  atomic.Bool
+	wake    chan struct{}
+	waiting atomic.Bool
+	resume  chan struct{}
+
+	closed    atomic.Bool
+	done      chan struct{}
+	closeOnce sync.Once
+}
+
+func newFrameRelay(cfg PlaywrightRelayConfig) *frameRelay {
+	stub := &relayNode{}
+	r := &frameRelay{
+		high:   cfg.HighWatermark,
+		low:    min(max(cfg.LowWatermark, 0), cfg.HighWatermark),
+		tail:   stub,
+		wake:   make(chan struct{}, 1),
+		resume: make(chan struct{}, 1),
+		done:   make(chan struct{}),
+	}
+	r.head.Store(stub)
+	return r
+}
+
+// push ставит кадр в ящик и, если он переполнен, ждёт слива.
+// false — relay закрыт, читать дальше незачем.
+func (r *frameRelay) push(messageType int, data []byte) bool {
+	return r.enqueue(relayFrame{messageType: messageType, data: data})
+}
+
+// pushBuffer — push для кадра в буфере из пула; буфер переходит во владение relay.
+func (r *frameRelay) pushBuffer(messageType int, buf *bytes.Buffer) bool {
+	if r.closed.Load() {
+		putFrameBuffer(buf)
+		return false
+	}
+	return r.enqueue(relayFrame{messageType: messageType, data: buf.Bytes(), buf: buf})
+}
+
+func (r *frameRelay) enqueue(f relayFrame) bool {
+	if r.closed.Load() {
+		return false
+	}
+	n := relayNodes.Get().(*relayNode)
+	n.frame = f
+	r.head.Swap(n).next.Store(n)
+
+	buffered := r.buffered.Add(int64(len(f.data)))
+	if buffered > r.peak.Load() {
+		r.peak.Store(buffered)
+	}
+	if r.parked.Load() && r.parked.CompareAndSwap(true, false) {
+		signal(r.wake)
+	}
+
+	if r.high > 0 && buffered >= r.high {
+		r.pauses.Add(1)
+		for r.buffered.Load() > r.low && !r.closed.Load() {
+			r.waiting.Store(true)
+			// Писатель мог слить ящик до того, как увидел waiting.
+			if r.buffered.Load() <= r.low || r.closed.Load() {
+				r.waiting.Store(false)
+				break
+			}
+			select {
+			case <-r.resume:
+			case <-r.done:
+			}
+		}
+	}
+	return !r.closed.Load()
+}
+
+// next ждёт кадры и дописывает в batch всё, что накопилось (не больше
+// relayBatchSize). После close отдаёт оставшиеся кадры, затем false.
+// Вызывается только писателем.
+func (r *frameRelay) next(batch []relayFrame) ([]relayFrame, bool) {
+	for {
+		for len(batch) < relayBatchSize {
+			n := r.tail.next.Load()
+			if n == nil {
+				break
+			}
+			batch = append(batch, n.frame)
+			n.frame = relayFrame{}
+			// Старый хвост уже никому не виден: читатель дописал в него next.
+			prev := r.tail
+			r.tail = n
+			prev.next.Store(nil)
+			relayNodes.Put(prev)
+		}
+		if len(batch) > 0 {
+			return batch, true
+		}
+		if r.closed.Load() {
+			// Кадр мог быть вставлен между проверкой очереди и close.
+			if r.tail.next.Load() != nil {
+				continue
+			}
+			return batch, false
+		}
+
+		r.parked.Store(true)
+		if r.tail.next.Load() != nil || r.closed.Load() {
+			r.parked.Store(false)
+			continue
+		}
+		select {
+		case <-r.wake:
+		case <-r.done:
+		}
+		r.parked.Store(false)
+	}
+}
+
+// release учитывает записанные байты и снимает читателя с паузы,
+// если ящик слит до low.
+func (r *frameRelay) release(n int64) {
+	if r.buffered.Add(-n) <= r.low && r.waiting.CompareAndSwap(true, false) {
+		signal(r.resume)
+	}
+}
+
+func (r *frameRelay) close() {
+	r.closeOnce.Do(func() {
+		r.closed.Store(true)
+		close(r.done)
+	})
+}
+
+// pumpTo пишет кадры в dst, пока relay не закрыт и не пуст. При ошибке записи
+// relay закрывается, чтобы читатель не остался на паузе навсегда.
+func (r *frameRelay) pumpTo(dst *websocket.Conn) error {
+	batch := make([]relayFrame, 0, relayBatchSize)
+	for {
+		var ok bool
+		batch, ok = r.next(batch[:0])
+		if !ok {
+			return nil
+		}
+		var written int64
+		for _, f := range batch {
+			if r.compression.Enabled {
+				dst.EnableWriteCompression(r.compression.ShouldCompress(len(f.data)))
+			}
+			if err := dst.WriteMessage(f.messageType, f.data); err != nil {
+				r.close()
+				return err
+			}
+			written += int64(len(f.data))
+			if f.buf != nil {
+				putFrameBuffer(f.buf)
+			}
+		}
+		clear(batch)
+		r.release(written)
+	}
+}
+
+func (r *frameRelay) stats() dto.RelayDirectionStats {
+	return dto.RelayDirectionStats{
+		BufferedBytes: r.buffered.Load(),
+		PeakBytes:     r.peak.Load(),
+		Pauses:        r.pauses.Load(),
+	}
+}
+
+func signal(ch chan struct{}) {
+	select {
+	case ch <- struct{}{}:
+	default:
+	}
+}
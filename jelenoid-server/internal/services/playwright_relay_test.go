@@ -0,0 +1,290 @@
+package services
+
+import (
+	"bytes"
+	"fmt"
+	"net/http"
+	"net/http/httptest"
+	"runtime"
+	"strings"
+	"sync"
+	"testing"
+	"time"
+
+	"github.com/gorilla/websocket"
+)
+
+// drainOnce забирает одну пачку кадров и отпускает их байты, как писатель.
+func drainOnce(t *testing.T, r *frameRelay) []relayFrame {
+	t.Helper()
+	batch, ok := r.next(nil)
+	if !ok {
+		t.Fatal("relay closed unexpectedly")
+	}
+	var n int64
+	for _, f := range batch {
+		n += int64(len(f.data))
+	}
+	r.release(n)
+	return batch
+}
+
+func TestFrameRelay_PausesAboveHighWatermark(t *testing.T) {
+	r := newFrameRelay(PlaywrightRelayConfig{HighWatermark: 100, LowWatermark: 40})
+	if !r.push(websocket.TextMessage, make([]byte, 60)) {
+		t.Fatal("push below high watermark should not block or fail")
+	}
+
+	resumed := make(chan bool)
+	go func() { resumed <- r.push(websocket.TextMessage, make([]byte, 60)) }()
+
+	select {
+	case <-resumed:
+		t.Fatal("reader should pause at high watermark")
+	case <-time.After(50 * time.Millisecond):
+	}
+
+	if batch := drainOnce(t, r); len(batch) != 2 {
+		t.Fatalf("writer should take queued frames in one batch, got=%d", len(batch))
+	}
+	select {
+	case ok := <-resumed:
+		if !ok {
+			t.Fatal("push should succeed after drain")
+		}
+	case <-time.After(time.Second):
+		t.Fatal("reader was not resumed at low watermark")
+	}
+
+	st := r.stats()
+	if st.Pauses != 1 || st.PeakBytes != 120 || st.BufferedBytes != 0 {
+		t.Fatalf("unexpected stats: %+v", st)
+	}
+}
+
+func TestFrameRelay_PreservesOrder(t *testing.T) {
+	r := newFrameRelay(PlaywrightRelayConfig{HighWatermark: 64, LowWatermark: 16})
+	const frames = 10000
+
+	go func() {
+		for i := 0; i < frames; i++ {
+			r.push(websocket.BinaryMessage, []byte{byte(i), byte(i >> 8)})
+		}
+		r.close()
+	}()
+
+	got := 0
+	for {
+		batch, ok := r.next(nil)
+		if !ok {
+			break
+		}
+		for _, f := range batch {
+			if int(f.data[0])|int(f.data[1])<<8 != got {
+				t.Fatalf("frame %d arrived out of order", got)
+			}
+			got++
+		}
+		r.release(int64(2 * len(batch)))
+	}
+	if got != frames {
+		t.Fatalf("lost frames: got=%d, want=%d", got, frames)
+	}
+}
+
+func TestFrameRelay_CloseDrainsAndUnblocks(t *testing.T) {
+	r := newFrameRelay(PlaywrightRelayConfig{HighWatermark: 10, LowWatermark: 0})
+
+	done := make(chan bool)
+	go func() { done <- r.push(websocket.BinaryMessage, make([]byte, 20)) }()
+
+	time.Sleep(20 * time.Millisecond)
+	r.close()
+	select {
+	case ok := <-done:
+		if ok {
+			t.Fatal("push should report closed relay")
+		}
+	case <-time.After(time.Second):
+		t.Fatal("close did not unblock paused reader")
+	}
+
+	if batch, ok := r.next(nil); !ok || len(batch) != 1 || len(batch[0].data) != 20 {
+		t.Fatalf("expected buffered frame after close, got ok=%v batch=%d", ok, len(batch))
+	}
+	if _, ok := r.next(nil); ok {
+		t.Fatal("expected closed relay to be empty")
+	}
+	if r.push(websocket.TextMessage, []byte("x")) {
+		t.Fatal("push after close should fail")
+	}
+}
+
+// newEchoServer — локальная замена playwright run-server или браузера:
+// WebSocket-сервер, возвращающий каждый кадр. Возвращает его ws-адрес.
+func newEchoServer(tb testing.TB) string {
+	tb.Helper()
+	upgrader := websocket.Upgrader{}
+	server := httptest.NewServer(http.HandlerFunc(func(w http.ResponseWriter, r *http.Request) {
+		conn, err := upgrader.Upgrade(w, r, nil)
+		if err != nil {
+			return
+		}
+		defer conn.Close()
+		for {
+			mt, msg, err := conn.ReadMessage()
+			if err != nil {
+				return
+			}
+			if err := conn.WriteMessage(mt, msg); err != nil {
+				return
+			}
+		}
+	}))
+	tb.Cleanup(server.Close)
+	return "ws" + strings.TrimPrefix(server.URL, "http")
+}
+
+// newEchoWebSocket подключается к newEchoServer.
+func newEchoWebSocket(tb testing.TB) *websocket.Conn {
+	tb.Helper()
+	conn, _, err := playwrightDialer.Dial(newEchoServer(tb), nil)
+	if err != nil {
+		tb.Fatal(err)
+	}
+	tb.Cleanup(func() { conn.Close() })
+	return conn
+}
+
+func readEchoes(b *testing.B, conn *websocket.Conn, n int, done chan<- struct{}) {
+	defer close(done)
+	for i := 0; i < n; i++ {
+		if _, _, err := conn.ReadMessage(); err != nil {
+			b.Error(err)
+			return
+		}
+	}
+}
+
+func reportFrameRate(b *testing.B, start time.Time) {
+	b.ReportMetric(float64(b.N)/time.Since(start).Seconds(), "frames/s")
+}
+
+// Кадры одной сессии через ящик и писателя к echo-серверу.
+func BenchmarkFrameRelay_Mailbox(b *testing.B) {
+	conn := newEchoWebSocket(b)
+	r := newFrameRelay(PlaywrightRelayConfig{HighWatermark: 4 << 20, LowWatermark: 1 << 20})
+	frame := make([]byte, 512)
+	done := make(chan struct{})
+
+	b.SetBytes(int64(len(frame)))
+	b.ReportAllocs()
+	b.ResetTimer()
+	start := time.Now()
+	go readEchoes(b, conn, b.N, done)
+	go r.pumpTo(conn)
+	for i := 0; i < b.N; i++ {
+		r.push(websocket.BinaryMessage, frame)
+	}
+	<-done
+	reportFrameRate(b, start)
+	r.close()
+}
+
+// Прежний вариант: запись кадра прямо из читателя под мьютексом сессии.
+func BenchmarkFrameRelay_LockedWrite(b *testing.B) {
+	conn := newEchoWebSocket(b)
+	var mu sync.Mutex
+	frame := make([]byte, 512)
+	done := make(chan struct{})
+
+	b.SetBytes(int64(len(frame)))
+	b.ResetTimer()
+	start := time.Now()
+	go readEchoes(b, conn, b.N, done)
+	for i := 0; i < b.N; i++ {
+		mu.Lock()
+		err := conn.WriteMessage(websocket.BinaryMessage, frame)
+		mu.Unlock()
+		if err != nil {
+			b.Fatal(err)
+		}
+	}
+	<-done
+	reportFrameRate(b, start)
+}
+
+var benchFrameSizes = []int{4 << 10, 256 << 10, 1 << 20}
+
+// newFrameSource — сервер, без остановки шлющий текстовые кадры заданного
+// размера, как run-server при отдаче трейса или скриншота в base64.
+func newFrameSource(b *testing.B, size int) *websocket.Conn {
+	b.Helper()
+	upgrader := websocket.Upgrader{}
+	payload := bytes.Repeat([]byte("a"), size)
+	server := httptest.NewServer(http.HandlerFunc(func(w http.ResponseWriter, r *http.Request) {
+		conn, err := upgrader.Upgrade(w, r, nil)
+		if err != nil {
+			return
+		}
+		defer conn.Close()
+		pm, err := websocket.NewPreparedMessage(websocket.TextMessage, payload)
+		if err != nil {
+			return
+		}
+		for {
+			if err := conn.WritePreparedMessage(pm); err != nil {
+				return
+			}
+		}
+	}))
+	b.Cleanup(server.Close)
+
+	conn, _, err := playwrightDialer.Dial("ws"+strings.TrimPrefix(server.URL, "http"), nil)
+	if err != nil {
+		b.Fatal(err)
+	}
+	b.Cleanup(func() { conn.Close() })
+	return conn
+}
+
+// benchmarkFrameRead считает, сколько байт выделяется на мегабайт прочитанных кадров.
+func benchmarkFrameRead(b *testing.B, read func(conn *websocket.Conn) error) {
+	for _, size := range benchFrameSizes {
+		b.Run(fmt.Sprintf("%dKiB", size>>10), func(b *testing.B) {
+			conn := newFrameSource(b, size)
+			var before, after runtime.MemStats
+			b.SetBytes(int64(size))
+			b.ReportAllocs()
+			runtime.ReadMemStats(&before)
+			b.ResetTimer()
+			for i := 0; i < b.N; i++ {
+				if err := read(conn); err != nil {
+					b.Fatal(err)
+				}
+			}
+			b.StopTimer()
+			runtime.ReadMemStats(&after)
+			mb := float64(b.N) * float64(size) / (1 << 20)
+			b.ReportMetric(float64(after.TotalAlloc-before.TotalAlloc)/mb, "allocB/MB")
+		})
+	}
+}
+
+// Прежний путь: ReadMessage собирает каждый кадр в новый срез.
+func BenchmarkFrameRead_ReadMessage(b *testing.B) {
+	benchmarkFrameRead(b, func(conn *websocket.Conn) error {
+		_, _, err := conn.ReadMessage()
+		return err
+	})
+}
+
+func BenchmarkFrameRead_Pooled(b *testing.B) {
+	benchmarkFrameRead(b, func(conn *websocket.Conn) error {
+		_, buf, err := readRelayFrame(conn)
+		if err == nil {
+			putFrameBuffer(buf)
+		}
+		return err
+	})
+}
@@ -3,14 +3,44 @@ package services
 import (
 	"errors"
 	"fmt"
+	"math"
 	"net/http"
 	"strings"
+	"sync"
 	"time"
 
 	"github.com/balakshievas/jelenoid-server-go/internal/dto"
 	"github.com/gorilla/websocket"
 )
 
+const (
+	playwrightHandshakeTimeout = 15 * time.Second
+	playwrightFrameBufferSize  = 32 * 1024
+	// Подсказка для переподключения, пока по версии нет статистики ожидания.
+	playwrightDefaultRetryAfter = 5 * time.Second
+)
+
+type PlaywrightQueueConfig struct {
+	// TimeoutMs — сколько сессия может ждать слота; 0 — без ограничения.
+	TimeoutMs int64
+	// PingIntervalMs — как часто пинговать сокеты в очереди; 0 — не пинговать.
+	PingIntervalMs int64
+}
+
+// playwrightWriteBuffers общий для обеих сторон прокси: буфер записи
+// берётся только на время отправки кадра, а не держится на каждом соединении.
+var playwrightWriteBuffers = &sync.Pool{}
+
+// playwrightDialer — единый клиент для всех соединений с контейнерами.
+// Своих потоков у соединения нет: чтение и запись идут через netpoller рантайма.
+var playwrightDialer = &websocket.Dialer{
+	Proxy:            http.ProxyFromEnvironment,
+	HandshakeTimeout: playwrightHandshakeTimeout,
+	ReadBufferSize:   playwrightFrameBufferSize,
+	WriteBufferSize:  playwrightFrameBufferSize,
+	WriteBufferPool:  playwrightWriteBuffers,
+}
+
 type PlaywrightSessionService struct {
 	activeSessions   *ActiveSessionsService
 	dockerService    *DockerExternalService
@@ -18,6 +48,10 @@ type PlaywrightSessionService struct {
 	pool             *PlaywrightContainerPool
 	statusChan       chan struct{}
 	sessionTimeoutMs int64
+	prepareImages    bool
+	relay            PlaywrightRelayConfig
+	queue            PlaywrightQueueConfig
+	compression      CompressionConfig
 
 	wsUpgrader websocket.Upgrader
 }
@@ -29,6 +63,10 @@ func NewPlaywrightSessionService(
 	pool *PlaywrightContainerPool,
 	statusChan chan struct{},
 	sessionTimeoutMs int64,
+	prepareImages bool,
+	relay PlaywrightRelayConfig,
+	queue PlaywrightQueueConfig,
+	compression CompressionConfig,
 ) *PlaywrightSessionService {
 	return &PlaywrightSessionService{
 		activeSessions:   activeSessions,
@@ -37,8 +75,16 @@ func NewPlaywrightSessionService(
 		pool:             pool,
 		statusChan:       statusChan,
 		sessionTimeoutMs: sessionTimeoutMs,
+		prepareImages:    prepareImages,
+		relay:            relay,
+		queue:            queue,
+		compression:      compression,
 		wsUpgrader: websocket.Upgrader{
-			CheckOrigin: func(r *http.Request) bool { return true },
+			ReadBufferSize:    playwrightFrameBufferSize,
+			WriteBufferSize:   playwrightFrameBufferSize,
+			WriteBufferPool:   playwrightWriteBuffers,
+			EnableCompression: compression.Enabled,
+			CheckOrigin:       func(r *http.Request) bool { return true },
 		},
 	}
 }
@@ -50,6 +96,14 @@ func (s *PlaywrightSessionService) ServeHTTP(w http.ResponseWriter, r *http.Requ
 	}
 
 	playwrightVersion := s.getPlaywrightVersion(r.URL.Path)
+	// Неизвестную версию отклоняем сразу: в очередь и её статистику по
+	// версиям попадают только версии из browsers.json.
+	if s.browserManager.GetBrowserInfoByBrowserNameAndVersion("playwright", playwrightVersion) == nil {
+		conn.WriteMessage(websocket.CloseMessage,
+			websocket.FormatCloseMessage(websocket.ClosePolicyViolation, "Unknown Playwright version"))
+		conn.Close()
+		return
+	}
 
 	copyHeaders := make(http.Header)
 	for key, values := range r.Header {
@@ -62,14 +116,27 @@ func (s *PlaywrightSessionService) ServeHTTP(w http.ResponseWriter, r *http.Requ
 		}
 	}
 
+	if s.relay.MaxFrameSize > 0 {
+		conn.SetReadLimit(s.relay.MaxFrameSize)
+	}
+	s.compression.Apply(conn)
 	pair := &PlaywrightSessionPair{
 		ClientConn:     conn,
 		RequestHeaders: copyHeaders,
 		Version:        playwrightVersion,
+		toContainer:    newFrameRelay(s.relay),
+		toClient:       newFrameRelay(s.relay),
+		clientGone:     make(chan struct{}),
 	}
+	pair.toClient.compression = s.compression
+	conn.SetPongHandler(func(string) error {
+		s.extendQueuedDeadline(conn, pair)
+		return nil
+	})
 	s.activeSessions.PutPlaywrightActiveSession(conn, pair)
 
 	if s.activeSessions.TryAcquirePlaywrightSlot() {
+		go s.readClient(conn, pair)
 		go s.startProxyForSession(conn, pair, playwrightVersion)
 	} else {
 		if !s.activeSessions.IsQueueEnabled() {
@@ -85,10 +152,159 @@ func (s *PlaywrightSessionService) ServeHTTP(w http.ResponseWriter, r *http.Requ
 				websocket.FormatCloseMessage(websocket.CloseTryAgainLater, "Proxy queue is full."))
 			conn.Close()
 			s.activeSessions.RemovePlaywrightActiveSession(conn)
+			return
+		}
+		s.watchQueued(conn, pair)
+		go s.readClient(conn, pair)
+		// Слот мог освободиться между неудачным захватом и постановкой в очередь.
+		if s.activeSessions.TryAcquirePlaywrightSlot() {
+			s.activeSessions.HandOffPlaywrightSlot(s.startQueued)
+		}
+	}
+}
+
+// readClient читает клиентский сокет с момента подключения, в том числе пока
+// сессия ждёт в очереди: кадры копятся в toContainer, а при переполнении
+// чтение встаёт на паузу. Ушедший из очереди клиент сразу освобождает место.
+func (s *PlaywrightSessionService) readClient(clientConn *websocket.Conn, pair *PlaywrightSessionPair) {
+	defer func() {
+		pair.toContainer.close()
+		close(pair.clientGone)
+		if s.activeSessions.RemoveFromPlaywrightQueue(clientConn) {
+			s.unwatchQueued(clientConn, pair)
+			s.activeSessions.RemovePlaywrightActiveSession(clientConn)
+			s.dispatchStatusUpdate()
+		}
+	}()
+	for {
+		messageType, buf, err := readRelayFrame(clientConn)
+		if err != nil {
+			return
+		}
+		ci := pair.ContainerInfo
+		if ci != nil {
+			ci.UpdateActivity()
 		}
+		if !pair.toContainer.pushBuffer(messageType, buf) {
+			return
+		}
+	}
+}
+
+func (s *PlaywrightSessionService) startQueued(pair *PlaywrightSessionPair) {
+	s.unwatchQueued(pair.ClientConn, pair)
+	go s.startProxyForSession(pair.ClientConn, pair, pair.Version)
+}
+
+// watchQueued ограничивает ожидание в очереди дедлайном и пингует сокет,
+// чтобы мёртвое соединение выпало из очереди раньше, чем получит слот.
+func (s *PlaywrightSessionService) watchQueued(conn *websocket.Conn, pair *PlaywrightSessionPair) {
+	var queueTimer, pingTimer *wheelTimer
+	if s.queue.TimeoutMs > 0 {
+		queueTimer = s.activeSessions.afterFunc(time.Duration(s.queue.TimeoutMs)*time.Millisecond,
+			func() { s.expireQueued(conn, pair) })
+	}
+	if s.queue.PingIntervalMs > 0 {
+		s.extendQueuedDeadline(conn, pair)
+		pingTimer = s.activeSessions.afterFunc(s.pingInterval(), func() { s.pingQueued(conn, pair) })
+	}
+	pair.Lock.Lock()
+	pair.queueTimer = queueTimer
+	pair.pingTimer = pingTimer
+	pair.Lock.Unlock()
+
+	// Сессия могла получить слот, пока таймеры взводились.
+	if !pair.queued.Load() {
+		s.unwatchQueued(conn, pair)
+	}
+}
+
+func (s *PlaywrightSessionService) unwatchQueued(conn *websocket.Conn, pair *PlaywrightSessionPair) {
+	pair.Lock.Lock()
+	queueTimer, pingTimer := pair.queueTimer, pair.pingTimer
+	pair.queueTimer, pair.pingTimer = nil, nil
+	pair.Lock.Unlock()
+
+	s.activeSessions.stopTimer(queueTimer)
+	s.activeSessions.stopTimer(pingTimer)
+	if s.queue.PingIntervalMs > 0 {
+		conn.SetReadDeadline(time.Time{})
+	}
+}
+
+func (s *PlaywrightSessionService) pingInterval() time.Duration {
+	return time.Duration(s.queue.PingIntervalMs) * time.Millisecond
+}
+
+// extendQueuedDeadline продлевает чтение сокета в очереди на два интервала
+// пинга. Не пришёл понг — чтение упадёт, и readClient уберёт сессию из очереди.
+func (s *PlaywrightSessionService) extendQueuedDeadline(conn *websocket.Conn, pair *PlaywrightSessionPair) {
+	if s.queue.PingIntervalMs <= 0 || !pair.queued.Load() {
+		return
+	}
+	conn.SetReadDeadline(time.Now().Add(2 * s.pingInterval()))
+	if !pair.queued.Load() {
+		conn.SetReadDeadline(time.Time{})
 	}
 }
 
+func (s *PlaywrightSessionService) pingQueued(conn *websocket.Conn, pair *PlaywrightSessionPair) {
+	if !pair.queued.Load() {
+		return
+	}
+	go func() {
+		if err := conn.WriteControl(websocket.PingMessage, nil, time.Now().Add(time.Second)); err != nil {
+			conn.Close()
+		}
+	}()
+	timer := s.activeSessions.afterFunc(s.pingInterval(), func() { s.pingQueued(conn, pair) })
+	pair.Lock.Lock()
+	pair.pingTimer = timer
+	pair.Lock.Unlock()
+}
+
+// expireQueued закрывает не дождавшуюся слота сессию с кодом 1013 и
+// подсказкой, через сколько секунд переподключаться.
+func (s *PlaywrightSessionService) expireQueued(conn *websocket.Conn, pair *PlaywrightSessionPair) {
+	if !s.activeSessions.ExpireFromPlaywrightQueue(conn) {
+		return
+	}
+	s.unwatchQueued(conn, pair)
+	s.activeSessions.RemovePlaywrightActiveSession(conn)
+
+	retryAfter := s.activeSessions.PlaywrightRetryHint(pair.Version)
+	if retryAfter <= 0 {
+		retryAfter = playwrightDefaultRetryAfter
+	}
+	reason := fmt.Sprintf("Queue timeout. Retry after %ds.", int(math.Ceil(retryAfter.Seconds())))
+	go func() {
+		conn.WriteControl(websocket.CloseMessage,
+			websocket.FormatCloseMessage(websocket.CloseTryAgainLater, reason),
+			time.Now().Add(time.Second))
+		conn.Close()
+	}()
+	s.dispatchStatusUpdate()
+}
+
+// PrepareImages просит container-manager заранее собрать образы с нужной
+// версией playwright для всех playwright-записей browsers.json.
+func (s *PlaywrightSessionService) PrepareImages() error {
+	var firstErr error
+	for _, b := range s.browserManager.GetAllBrowsers() {
+		if err := s.PrepareImage(b); err != nil && firstErr == nil {
+			firstErr = err
+		}
+	}
+	return firstErr
+}
+
+func (s *PlaywrightSessionService) PrepareImage(info *dto.BrowserInfo) error {
+	if !s.prepareImages || info.Name != "playwright" {
+		return nil
+	}
+	return s.dockerService.PreparePlaywright(info.DockerImageName, info.Version)
+}
+
 func (s *PlaywrightSessionService) getPlaywrightVersion(path string) string {
 	if strings.HasPrefix(path, "/playwright-") {
 		return strings.TrimPrefix(path, "/playwright-")
@@ -102,19 +318,13 @@ func (s *PlaywrightSessionService) getPlaywrightVersion(path string) string {
 func (s *PlaywrightSessionService) startProxyForSession(clientConn *websocket.Conn, pair *PlaywrightSessionPair, playwrightVersion string) {
 	defer func() {
 		if r := recover(); r != nil {
-			s.activeSessions.RemovePlaywrightActiveSession(clientConn)
-			s.activeSessions.ReleasePlaywrightSlot()
-			clientConn.Close()
-			s.dispatchStatusUpdate()
+			s.abortStart(clientConn)
 		}
 	}()
 
 	browserInfo := s.browserManager.GetBrowserInfoByBrowserNameAndVersion("playwright", playwrightVersion)
 	if browserInfo == nil {
-		s.activeSessions.RemovePlaywrightActiveSession(clientConn)
-		s.activeSessions.ReleasePlaywrightSlot()
-		clientConn.Close()
-		s.dispatchStatusUpdate()
+		s.abortStart(clientConn)
 		return
 	}
 
@@ -128,10 +338,7 @@ func (s *PlaywrightSessionService) startProxyForSession(clientConn *websocket.Co
 		}
 		clientConn.WriteMessage(websocket.CloseMessage,
 			websocket.FormatCloseMessage(code, reason))
-		s.activeSessions.RemovePlaywrightActiveSession(clientConn)
-		s.activeSessions.ReleasePlaywrightSlot()
-		clientConn.Close()
-		s.dispatchStatusUpdate()
+		s.abortStart(clientConn)
 		return
 	}
 
@@ -157,37 +364,36 @@ func (s *PlaywrightSessionService) startProxyForSession(clientConn *websocket.Co
 		headers = make(http.Header)
 	}
 
-	containerConn, _, err := websocket.DefaultDialer.Dial(containerURL, headers)
+	containerConn, _, err := playwrightDialer.Dial(containerURL, headers)
 	if err != nil {
-		clientConn.Close()
 		if poolEntry != nil {
 			s.releaseContainer(poolEntry)
 		} else if containerInfo != nil {
 			go s.dockerService.StopContainer(containerInfo.ContainerID)
 		}
-		s.activeSessions.RemovePlaywrightActiveSession(clientConn)
-		s.activeSessions.ReleasePlaywrightSlot()
-		s.dispatchStatusUpdate()
+		s.abortStart(clientConn)
 		return
 	}
 
+	if s.relay.MaxFrameSize > 0 {
+		containerConn.SetReadLimit(s.relay.MaxFrameSize)
+	}
 	pair.Lock.Lock()
 	pair.ContainerConn = containerConn
 	pair.ConnectionEstablished.Store(true)
-	for _, msg := range pair.PendingMessages {
-		containerConn.WriteMessage(websocket.TextMessage, msg)
-	}
-	pair.PendingMessages = nil
 	pair.Lock.Unlock()
 
+	s.armSessionTimeout(clientConn, pair, time.Duration(s.sessionTimeoutMs)*time.Millisecond)
 	s.dispatchStatusUpdate()
 
-	done := make(chan struct{})
-
+	// Каждое направление: читатель кладёт кадры в relay, отдельный писатель
+	// сливает их в другой сокет.
+	containerRead := make(chan struct{})
 	go func() {
-		defer close(done)
+		defer close(containerRead)
+		defer pair.toClient.close()
 		for {
-			messageType, message, err := containerConn.ReadMessage()
+			messageType, buf, err := readRelayFrame(containerConn)
 			if err != nil {
 				return
 			}
@@ -195,40 +401,27 @@ func (s *PlaywrightSessionService) startProxyForSession(clientConn *websocket.Co
 			if ci != nil {
 				ci.UpdateActivity()
 			}
-			if err := clientConn.WriteMessage(messageType, message); err != nil {
+			if !pair.toClient.pushBuffer(messageType, buf) {
 				return
 			}
 		}
 	}()
 
-	for {
-		messageType, message, err := clientConn.ReadMessage()
-		if err != nil {
-			break
-		}
+	go func() {
+		pair.toClient.pumpTo(clientConn)
+		// Контейнер закрыл соединение или клиент не принимает кадры —
+		// закрываем клиента, readClient завершит сессию.
+		clientConn.Close()
+	}()
 
-		ci := pair.ContainerInfo
-		if ci != nil {
-			ci.UpdateActivity()
-		}
-		if pair.ConnectionEstablished.Load() {
-			containerConn.WriteMessage(messageType, message)
-		} else {
-			pair.Lock.Lock()
-			if pair.ConnectionEstablished.Load() {
-				pair.Lock.Unlock()
-				containerConn.WriteMessage(messageType, message)
-			} else {
-				pair.PendingMessages = append(pair.PendingMessages, message)
-				pair.Lock.Unlock()
-			}
-		}
+	if pair.toContainer.pumpTo(containerConn) == nil {
+		containerConn.WriteMessage(websocket.CloseMessage,
+			websocket.FormatCloseMessage(websocket.CloseNormalClosure, ""))
 	}
-
-	containerConn.WriteMessage(websocket.CloseMessage,
-		websocket.FormatCloseMessage(websocket.CloseNormalClosure, ""))
 	containerConn.Close()
-	<-done
+	clientConn.Close()
+	<-pair.clientGone
+	<-containerRead
 
 	s.dispatchStatusUpdate()
 
@@ -261,20 +454,23 @@ func (s *PlaywrightSessionService) waitForContainerReady(clientConn *websocket.C
 			return true
 		}
 		if entry.State() == poolStateStopped {
-			s.activeSessions.RemovePlaywrightActiveSession(clientConn)
-			s.activeSessions.ReleasePlaywrightSlot()
-			clientConn.Close()
-			s.dispatchStatusUpdate()
+			s.abortStart(clientConn)
 			return false
 		}
 		time.Sleep(50 * time.Millisecond)
 	}
 
+	s.abortStart(clientConn)
+	return false
+}
+
+// abortStart снимает сессию, которая не дошла до контейнера, и отдаёт её
+// слот следующему в очереди.
+func (s *PlaywrightSessionService) abortStart(clientConn *websocket.Conn) {
 	s.activeSessions.RemovePlaywrightActiveSession(clientConn)
-	s.activeSessions.ReleasePlaywrightSlot()
 	clientConn.Close()
+	s.activeSessions.HandOffPlaywrightSlot(s.startQueued)
 	s.dispatchStatusUpdate()
-	return false
 }
 
 func (s *PlaywrightSessionService) releaseContainer(entry *poolEntry) {
@@ -288,12 +484,7 @@ func (s *PlaywrightSessionService) handleDisconnect(clientConn *websocket.Conn,
 		s.activeSessions.RemovePlaywrightActiveSession(clientConn)
 		s.cleanupContainerOnce(removedPair)
 
-		nextPair := s.activeSessions.PollFromPlaywrightQueue()
-		if nextPair != nil {
-			go s.startProxyForSession(nextPair.ClientConn, nextPair, nextPair.Version)
-		} else {
-			s.activeSessions.ReleasePlaywrightSlot()
-		}
+		s.activeSessions.HandOffPlaywrightSlot(s.startQueued)
 	} else {
 		s.activeSessions.RemoveFromPlaywrightQueue(clientConn)
 	}
@@ -306,8 +497,11 @@ func (s *PlaywrightSessionService) cleanupContainerOnce(pair *PlaywrightSessionP
 	containerInfo := pair.ContainerInfo
 	pair.PoolEntry = nil
 	pair.ContainerInfo = nil
+	timer := pair.timeoutTimer
+	pair.timeoutTimer = nil
 	pair.Lock.Unlock()
 
+	s.activeSessions.stopTimer(timer)
 	if entry != nil {
 		s.releaseContainer(entry)
 	} else if containerInfo != nil {
@@ -315,28 +509,45 @@ func (s *PlaywrightSessionService) cleanupContainerOnce(pair *PlaywrightSessionP
 	}
 }
 
-func (s *PlaywrightSessionService) CheckSessionTimeouts() {
-	now := time.Now().UnixMilli()
-	sessions := s.activeSessions.GetPlaywrightActiveSessions()
-	for conn, pair := range sessions {
-		pair.Lock.Lock()
-		if pair.ContainerInfo != nil && (now-pair.ContainerInfo.GetLastActivity()) > s.sessionTimeoutMs {
-			pair.Lock.Unlock()
-			conn.WriteMessage(websocket.CloseMessage,
-				websocket.FormatCloseMessage(websocket.CloseTryAgainLater, "Session timeout"))
-			conn.Close()
-			s.dispatchStatusUpdate()
-			continue
-		}
-		pair.Lock.Unlock()
+func (s *PlaywrightSessionService) armSessionTimeout(clientConn *websocket.Conn, pair *PlaywrightSessionPair, after time.Duration) {
+	timer := s.activeSessions.afterFunc(after, func() { s.expireSession(clientConn, pair) })
+	pair.Lock.Lock()
+	pair.timeoutTimer = timer
+	pair.Lock.Unlock()
+}
+
+// expireSession срабатывает по таймеру сессии: живую сессию взводит на
+// оставшийся срок, простаивающую закрывает — дальше отработает handleDisconnect.
+func (s *PlaywrightSessionService) expireSession(clientConn *websocket.Conn, pair *PlaywrightSessionPair) {
+	pair.Lock.Lock()
+	ci := pair.ContainerInfo
+	pair.Lock.Unlock()
+	if ci == nil {
+		return
 	}
+
+	timeout := time.Duration(s.sessionTimeoutMs) * time.Millisecond
+	idle := time.Duration(time.Now().UnixMilli()-ci.GetLastActivity()) * time.Millisecond
+	if idle <= timeout {
+		s.armSessionTimeout(clientConn, pair, timeout-idle)
+		return
+	}
+
+	go func() {
+		clientConn.WriteControl(websocket.CloseMessage,
+			websocket.FormatCloseMessage(websocket.CloseTryAgainLater, "Session timeout"),
+			time.Now().Add(time.Second))
+		clientConn.Close()
+		s.dispatchStatusUpdate()
+	}()
 }
 
 func (s *PlaywrightSessionService) Shutdown() {
 	sessions := s.activeSessions.GetPlaywrightActiveSessions()
 	for conn, pair := range sessions {
-		conn.WriteMessage(websocket.CloseMessage,
-			websocket.FormatCloseMessage(websocket.CloseGoingAway, "Server shutting down"))
+		conn.WriteControl(websocket.CloseMessage,
+			websocket.FormatCloseMessage(websocket.CloseGoingAway, "Server shutting down"),
+			time.Now().Add(time.Second))
 		conn.Close()
 		pair.Lock.Lock()
 		entry := pair.PoolEntry
@@ -0,0 +1,44 @@
+package services
+
+import (
+	"testing"
+	"time"
+)
+
+// Старт сессии сорвался, пока другой клиент ждёт в очереди: слот должен
+// перейти к ждущему, а не вернуться в счётчик.
+func TestPlaywrightStartFailure_HandsSlotToQueue(t *testing.T) {
+	activeSessions := NewActiveSessionsService(1, 10, 600000, 30000, 1, 10, nil, make(chan struct{}, 1), true)
+	s := &PlaywrightSessionService{
+		activeSessions: activeSessions,
+		// Без browsers.json версия не находится, и каждый старт срывается.
+		browserManager: &BrowserManagerService{},
+		statusChan:     make(chan struct{}, 1),
+	}
+
+	running := &PlaywrightSessionPair{ClientConn: newEchoWebSocket(t), Version: "1.58.0"}
+	waiting := &PlaywrightSessionPair{ClientConn: newEchoWebSocket(t), Version: "1.58.0"}
+	if !activeSessions.TryAcquirePlaywrightSlot() {
+		t.Fatal("the only slot should be free")
+	}
+	activeSessions.PutPlaywrightActiveSession(running.ClientConn, running)
+	activeSessions.PutPlaywrightActiveSession(waiting.ClientConn, waiting)
+	if !activeSessions.OfferPlaywrightQueue(waiting) {
+		t.Fatal("second session should be queued")
+	}
+
+	s.startProxyForSession(running.ClientConn, running, running.Version)
+
+	deadline := time.Now().Add(time.Second)
+	for activeSessions.UsedPlaywrightSlots() != 0 || activeSessions.GetPlaywrightActiveSession(waiting.ClientConn) != nil {
+		if time.Now().After(deadline) {
+			t.Fatalf("queued session was not started: queue %d, slots in use %d",
+				activeSessions.GetPlaywrightQueueSize(), activeSessions.UsedPlaywrightSlots())
+		}
+		time.Sleep(10 * time.Millisecond)
+	}
+	st := activeSessions.GetPlaywrightQueueStats()[0]
+	if st.Depth != 0 || st.Dispatched != 1 || st.TimedOut != 0 {
+		t.Fatalf("queued session should be dispatched, got %+v", st)
+	}
+}
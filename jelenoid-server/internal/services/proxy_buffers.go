@@ -0,0 +1,65 @@
+package services
+
+import (
+	"bytes"
+	"sync"
+)
+
+const (
+	defaultProxyBufferSize = 32 * 1024
+	// Буферы крупнее этого в пул не возвращаются, чтобы один большой кадр
+	// (трейс, скриншот) не держал память после себя.
+	maxPooledFrameSize = 4 << 20
+)
+
+// proxyBufferPool — общий пул буферов копирования для httputil.ReverseProxy.
+// Без него прокси выделяет новый буфер на каждый ответ; с пулом память на
+// команду в полёте ограничена размером буфера, а не размером ответа.
+type proxyBufferPool struct {
+	size int
+	pool sync.Pool
+}
+
+func newProxyBufferPool(size int) *proxyBufferPool {
+	if size <= 0 {
+		size = defaultProxyBufferSize
+	}
+	p := &proxyBufferPool{size: size}
+	p.pool.New = func() interface{} {
+		buf := make([]byte, size)
+		return &buf
+	}
+	return p
+}
+
+func (p *proxyBufferPool) Get() []byte {
+	return *p.pool.Get().(*[]byte)
+}
+
+func (p *proxyBufferPool) Put(buf []byte) {
+	if cap(buf) < p.size {
+		return
+	}
+	buf = buf[:p.size]
+	p.pool.Put(&buf)
+}
+
+// frameBuffers — буферы кадров playwright-прокси. Кадр читается из сокета
+// сразу в буфер из пула и возвращается в пул после записи в другой сокет.
+var frameBuffers = sync.Pool{
+	New: func() interface{} {
+		return new(bytes.Buffer)
+	},
+}
+
+func getFrameBuffer() *bytes.Buffer {
+	return frameBuffers.Get().(*bytes.Buffer)
+}
+
+func putFrameBuffer(buf *bytes.Buffer) {
+	if buf.Cap() > maxPooledFrameSize {
+		return
+	}
+	buf.Reset()
+	frameBuffers.Put(buf)
+}
@@ -26,6 +26,14 @@ func (q *queue[T]) pop() (T, bool) {
 	return item, true
 }
 
+func (q *queue[T]) peek() (T, bool) {
+	if q.len() == 0 {
+		var zero T
+		return zero, false
+	}
+	return q.items[q.head], true
+}
+
 func (q *queue[T]) len() int {
 	return len(q.items) - q.head
 }
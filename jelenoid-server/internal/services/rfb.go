@@ -0,0 +1,384 @@
+package services
+
+import (
+	"crypto/des"
+	"crypto/rand"
+	"crypto/subtle"
+	"encoding/binary"
+	"errors"
+	"fmt"
+	"io"
+	"math/bits"
+)
+
+const (
+	rfbEncodingRaw         = 0
+	rfbEncodingCopyRect    = 1
+	rfbEncodingDesktopSize = -223
+
+	rfbSecurityNone    = 1
+	rfbSecurityVncAuth = 2
+
+	// Сообщения сервера.
+	rfbFramebufferUpdate   = 0
+	rfbSetColourMapEntries = 1
+	rfbBell                = 2
+	rfbServerCutText       = 3
+
+	// Сообщения клиента.
+	rfbSetPixelFormat           = 0
+	rfbSetEncodings             = 2
+	rfbFramebufferUpdateRequest = 3
+	rfbKeyEvent                 = 4
+	rfbPointerEvent             = 5
+	rfbClientCutText            = 6
+
+	rfbBytesPerPixel = 4
+	// Ограничения на длину строк из сети, чтобы битое сообщение не заняло память.
+	rfbMaxCutText = 1 << 20
+	rfbMaxName    = 4096
+)
+
+// rfbPixelFormat — 32 бита на пиксель, true colour, little-endian, сдвиги
+// красного/зелёного/синего 0/8/16: формат, который noVNC задаёт через
+// SetPixelFormat. Хаб просит его у VNC-сервера и отдаёт зрителям как есть.
+var rfbPixelFormat = [16]byte{32, 24, 0, 1, 0, 255, 0, 255, 0, 255, 0, 8, 16}
+
+var errRfbPixelFormat = errors.New("rfb: viewer requested an unsupported pixel format")
+
+type rfbServerInit struct {
+	width  int
+	height int
+	name   string
+}
+
+// rfbMinorVersion разбирает ProtocolVersion и приводит её к одной из
+// поддерживаемых версий: 3.3, 3.7 или 3.8.
+func rfbMinorVersion(version []byte) (int, error) {
+	var major, minor int
+	if _, err := fmt.Sscanf(string(version), "RFB %03d.%03d\n", &major, &minor); err != nil || major != 3 {
+		return 0, fmt.Errorf("rfb: unsupported protocol version %q", version)
+	}
+	switch {
+	case minor >= 8:
+		return 8, nil
+	case minor == 7:
+		return 7, nil
+	default:
+		return 3, nil
+	}
+}
+
+func rfbReadReason(r io.Reader) error {
+	var n uint32
+	if err := binary.Read(r, binary.BigEndian, &n); err != nil {
+		return err
+	}
+	if n > rfbMaxName {
+		return errors.New("rfb: connection refused")
+	}
+	reason := make([]byte, n)
+	if _, err := io.ReadFull(r, reason); err != nil {
+		return err
+	}
+	return fmt.Errorf("rfb: connection refused: %s", reason)
+}
+
+// rfbVncAuthResponse шифрует challenge паролем по схеме VNC Authentication:
+// DES, ключ — первые 8 байт пароля с обратным порядком бит в каждом байте.
+func rfbVncAuthResponse(password string, challenge []byte) ([]byte, error) {
+	key := make([]byte, 8)
+	copy(key, password)
+	for i, b := range key {
+		key[i] = bits.Reverse8(b)
+	}
+	block, err := des.NewCipher(key)
+	if err != nil {
+		return nil, err
+	}
+	response := make([]byte, 16)
+	block.Encrypt(response[:8], challenge[:8])
+	block.Encrypt(response[8:], challenge[8:16])
+	return response, nil
+}
+
+// rfbClientHandshake проходит рукопожатие с VNC-сервером от имени клиента
+// до ServerInit включительно. Соединение открывается как shared, чтобы
+// не отключать других клиентов сервера.
+func rfbClientHandshake(r io.Reader, w io.Writer, password string) (*rfbServerInit, error) {
+	version := make([]byte, 12)
+	if _, err := io.ReadFull(r, version); err != nil {
+		return nil, err
+	}
+	minor, err := rfbMinorVersion(version)
+	if err != nil {
+		return nil, err
+	}
+	if _, err := fmt.Fprintf(w, "RFB 003.%03d\n", minor); err != nil {
+		return nil, err
+	}
+
+	var security uint32
+	if minor >= 7 {
+		var n [1]byte
+		if _, err := io.ReadFull(r, n[:]); err != nil {
+			return nil, err
+		}
+		if n[0] == 0 {
+			return nil, rfbReadReason(r)
+		}
+		types := make([]byte, n[0])
+		if _, err := io.ReadFull(r, types); err != nil {
+			return nil, err
+		}
+		for _, t := range types {
+			if t == rfbSecurityNone || (t == rfbSecurityVncAuth && security != rfbSecurityNone) {
+				security = uint32(t)
+			}
+		}
+		if security == 0 {
+			return nil, fmt.Errorf("rfb: no supported security type in %v", types)
+		}
+		if _, err := w.Write([]byte{byte(security)}); err != nil {
+			return nil, err
+		}
+	} else {
+		if err := binary.Read(r, binary.BigEndian, &security); err != nil {
+			return nil, err
+		}
+		if security == 0 {
+			return nil, rfbReadReason(r)
+		}
+		if security != rfbSecurityNone && security != rfbSecurityVncAuth {
+			return nil, fmt.Errorf("rfb: unsupported security type %d", security)
+		}
+	}
+
+	if security == rfbSecurityVncAuth {
+		challenge := make([]byte, 16)
+		if _, err := io.ReadFull(r, challenge); err != nil {
+			return nil, err
+		}
+		response, err := rfbVncAuthResponse(password, challenge)
+		if err != nil {
+			return nil, err
+		}
+		if _, err := w.Write(response); err != nil {
+			return nil, err
+		}
+	}
+	if security == rfbSecurityVncAuth || minor >= 8 {
+		var result uint32
+		if err := binary.Read(r, binary.BigEndian, &result); err != nil {
+			return nil, err
+		}
+		if result != 0 {
+			if minor >= 8 {
+				return nil, rfbReadReason(r)
+			}
+			return nil, errors.New("rfb: authentication failed")
+		}
+	}
+
+	if _, err := w.Write([]byte{1}); err != nil {
+		return nil, err
+	}
+	var init struct {
+		Width   uint16
+		Height  uint16
+		Format  [16]byte
+		NameLen uint32
+	}
+	if err := binary.Read(r, binary.BigEndian, &init); err != nil {
+		return nil, err
+	}
+	if init.NameLen > rfbMaxName {
+		return nil, errors.New("rfb: desktop name is too long")
+	}
+	name := make([]byte, init.NameLen)
+	if _, err := io.ReadFull(r, name); err != nil {
+		return nil, err
+	}
+	return &rfbServerInit{width: int(init.Width), height: int(init.Height), name: string(name)}, nil
+}
+
+// rfbServerHandshake проходит рукопожатие со зрителем от имени сервера до
+// ClientInit. Зрителю предлагается только VNC Authentication с паролем
+// VNC-сервера контейнера: трансляция не должна снимать с сессии пароль.
+func rfbServerHandshake(r io.Reader, w io.Writer, password string) error {
+	if _, err := io.WriteString(w, "RFB 003.008\n"); err != nil {
+		return err
+	}
+	version := make([]byte, 12)
+	if _, err := io.ReadFull(r, version); err != nil {
+		return err
+	}
+	minor, err := rfbMinorVersion(version)
+	if err != nil {
+		return err
+	}
+	if minor >= 7 {
+		if _, err := w.Write([]byte{1, rfbSecurityVncAuth}); err != nil {
+			return err
+		}
+		var choice [1]byte
+		if _, err := io.ReadFull(r, choice[:]); err != nil {
+			return err
+		}
+		if choice[0] != rfbSecurityVncAuth {
+			return fmt.Errorf("rfb: viewer chose unsupported security type %d", choice[0])
+		}
+	} else if _, err := w.Write([]byte{0, 0, 0, rfbSecurityVncAuth}); err != nil {
+		return err
+	}
+
+	challenge := make([]byte, 16)
+	if _, err := rand.Read(challenge); err != nil {
+		return err
+	}
+	if _, err := w.Write(challenge); err != nil {
+		return err
+	}
+	response := make([]byte, 16)
+	if _, err := io.ReadFull(r, response); err != nil {
+		return err
+	}
+	want, err := rfbVncAuthResponse(password, challenge)
+	if err != nil {
+		return err
+	}
+	if subtle.ConstantTimeCompare(response, want) != 1 {
+		result := []byte{0, 0, 0, 1}
+		if minor >= 8 {
+			const reason = "Authentication failed"
+			result = binary.BigEndian.AppendUint32(result, uint32(len(reason)))
+			result = append(result, reason...)
+		}
+		w.Write(result)
+		return errors.New("rfb: viewer failed authentication")
+	}
+	if _, err := w.Write([]byte{0, 0, 0, 0}); err != nil {
+		return err
+	}
+
+	var clientInit [1]byte
+	_, err = io.ReadFull(r, clientInit[:])
+	return err
+}
+
+func rfbServerInitMessage(width, height int, name string) []byte {
+	msg := make([]byte, 0, 24+len(name))
+	msg = binary.BigEndian.AppendUint16(msg, uint16(width))
+	msg = binary.BigEndian.AppendUint16(msg, uint16(height))
+	msg = append(msg, rfbPixelFormat[:]...)
+	msg = binary.BigEndian.AppendUint32(msg, uint32(len(name)))
+	return append(msg, name...)
+}
+
+func rfbUpdateRequest(incremental bool, width, height int) []byte {
+	msg := []byte{rfbFramebufferUpdateRequest, 0, 0, 0, 0, 0}
+	if incremental {
+		msg[1] = 1
+	}
+	msg = binary.BigEndian.AppendUint16(msg, uint16(width))
+	return binary.BigEndian.AppendUint16(msg, uint16(height))
+}
+
+type rfbRect struct {
+	x, y, w, h int
+}
+
+func (r rfbRect) empty() bool {
+	return r.w <= 0 || r.h <= 0
+}
+
+func (r rfbRect) union(o rfbRect) rfbRect {
+	if r.empty() {
+		return o
+	}
+	if o.empty() {
+		return r
+	}
+	x, y := min(r.x, o.x), min(r.y, o.y)
+	return rfbRect{x: x, y: y, w: max(r.x+r.w, o.x+o.w) - x, h: max(r.y+r.h, o.y+o.h) - y}
+}
+
+// rfbFramebuffer — копия экрана в формате rfbPixelFormat. По ней хаб
+// отдаёт полный кадр зрителю, подключившемуся посреди сессии.
+type rfbFramebuffer struct {
+	width  int
+	height int
+	pix    []byte
+}
+
+func newRfbFramebuffer(width, height int) *rfbFramebuffer {
+	return &rfbFramebuffer{width: width, height: height, pix: make([]byte, width*height*rfbBytesPerPixel)}
+}
+
+func (fb *rfbFramebuffer) contains(r rfbRect) bool {
+	return r.x >= 0 && r.y >= 0 && r.w >= 0 && r.h >= 0 && r.x+r.w <= fb.width && r.y+r.h <= fb.height
+}
+
+func (fb *rfbFramebuffer) clip(r rfbRect) rfbRect {
+	x, y := max(r.x, 0), max(r.y, 0)
+	return rfbRect{x: x, y: y, w: min(r.x+r.w, fb.width) - x, h: min(r.y+r.h, fb.height) - y}
+}
+
+func (fb *rfbFramebuffer) resize(width, height int) {
+	*fb = *newRfbFramebuffer(width, height)
+}
+
+// setRaw кладёт в буфер пиксели прямоугольника r из data (построчно).
+func (fb *rfbFramebuffer) setRaw(r rfbRect, data []byte) {
+	stride, row := fb.width*rfbBytesPerPixel, r.w*rfbBytesPerPixel
+	for i := 0; i < r.h; i++ {
+		off := (r.y+i)*stride + r.x*rfbBytesPerPixel
+		copy(fb.pix[off:off+row], data[i*row:(i+1)*row])
+	}
+}
+
+// copyRect копирует прямоугольник с (srcX, srcY) в r. Области могут
+// перекрываться, поэтому при сдвиге вниз строки идут снизу вверх.
+func (fb *rfbFramebuffer) copyRect(r rfbRect, srcX, srcY int) {
+	stride, row := fb.width*rfbBytesPerPixel, r.w*rfbBytesPerPixel
+	copyRow := func(i int) {
+		dst := (r.y+i)*stride + r.x*rfbBytesPerPixel
+		src := (srcY+i)*stride + srcX*rfbBytesPerPixel
+		copy(fb.pix[dst:dst+row], fb.pix[src:src+row])
+	}
+	if srcY < r.y {
+		for i := r.h - 1; i >= 0; i-- {
+			copyRow(i)
+		}
+		return
+	}
+	for i := 0; i < r.h; i++ {
+		copyRow(i)
+	}
+}
+
+// rawUpdate собирает FramebufferUpdate с одним Raw-прямоугольником r.
+func (fb *rfbFramebuffer) rawUpdate(r rfbRect) []byte {
+	r = fb.clip(r)
+	if r.empty() {
+		r = rfbRect{}
+	}
+	row := r.w * rfbBytesPerPixel
+	msg := make([]byte, 0, 16+r.h*row)
+	msg = append(msg, rfbFramebufferUpdate, 0, 0, 1)
+	msg = appendRfbRectHeader(msg, r, rfbEncodingRaw)
+	stride := fb.width * rfbBytesPerPixel
+	for i := 0; i < r.h; i++ {
+		off := (r.y+i)*stride + r.x*rfbBytesPerPixel
+		msg = append(msg, fb.pix[off:off+row]...)
+	}
+	return msg
+}
+
+func appendRfbRectHeader(msg []byte, r rfbRect, encoding int32) []byte {
+	msg = binary.BigEndian.AppendUint16(msg, uint16(r.x))
+	msg = binary.BigEndian.AppendUint16(msg, uint16(r.y))
+	msg = binary.BigEndian.AppendUint16(msg, uint16(r.w))
+	msg = binary.BigEndian.AppendUint16(msg, uint16(r.h))
+	return binary.BigEndian.AppendUint32(msg, uint32(encoding))
+}
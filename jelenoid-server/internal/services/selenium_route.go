@@ -0,0 +1,43 @@
+package services
+
+import (
+	"net/http"
+
+	"github.com/balakshievas/jelenoid-server-go/internal/dto"
+)
+
+// seleniumRoute — маршрут команд сессии, вычисленный один раз при её создании:
+// адрес контейнера и префиксы для подмены hub-id на id сессии в контейнере.
+// Горячий путь проксирования команды сводится к сравнению префикса.
+type seleniumRoute struct {
+	targetHost   string
+	hubPrefix    string
+	remotePrefix string
+}
+
+func newSeleniumRoute(session *dto.SeleniumSession) *seleniumRoute {
+	return &seleniumRoute{
+		targetHost:   session.ContainerInfo.ContainerName + ":4444",
+		hubPrefix:    "/wd/hub/session/" + session.HubSessionID,
+		remotePrefix: "/session/" + session.RemoteSessionID,
+	}
+}
+
+func (r *seleniumRoute) rewritePath(path string) string {
+	if len(path) < len(r.hubPrefix) || path[:len(r.hubPrefix)] != r.hubPrefix {
+		return path
+	}
+	if len(path) == len(r.hubPrefix) {
+		return r.remotePrefix
+	}
+	return r.remotePrefix + path[len(r.hubPrefix):]
+}
+
+// direct перенаправляет исходящий запрос ReverseProxy в контейнер.
+// Hop-by-hop заголовки ReverseProxy вырезает сам.
+func (r *seleniumRoute) direct(req *http.Request) {
+	req.URL.Scheme = "http"
+	req.URL.Host = r.targetHost
+	req.Host = r.targetHost
+	req.URL.Path = r.rewritePath(req.URL.Path)
+}
@@ -0,0 +1,78 @@
+package services
+
+import (
+	"net/http"
+	"net/http/httptest"
+	"strings"
+	"testing"
+
+	"github.com/balakshievas/jelenoid-server-go/internal/dto"
+)
+
+func newTestSeleniumRoute() *seleniumRoute {
+	return newSeleniumRoute(&dto.SeleniumSession{
+		HubSessionID:    "hub-1",
+		RemoteSessionID: "remote-1",
+		ContainerInfo:   &dto.ContainerInfo{ContainerName: "selenium-1"},
+	})
+}
+
+func TestSeleniumRoute_Direct(t *testing.T) {
+	route := newTestSeleniumRoute()
+
+	cases := map[string]string{
+		"/wd/hub/session/hub-1":                  "/session/remote-1",
+		"/wd/hub/session/hub-1/element/42/click": "/session/remote-1/element/42/click",
+		"/wd/hub/status":                         "/wd/hub/status",
+	}
+	for in, want := range cases {
+		req := httptest.NewRequest(http.MethodPost, in, nil)
+		req.Header.Set("X-Forwarded-For", "10.0.0.1")
+		route.direct(req)
+		if req.URL.Path != want {
+			t.Fatalf("%s: got path %s, want %s", in, req.URL.Path, want)
+		}
+		if req.URL.Host != "selenium-1:4444" || req.Host != "selenium-1:4444" {
+			t.Fatalf("%s: unexpected target host %s", in, req.URL.Host)
+		}
+		if req.Header.Get("X-Forwarded-For") != "10.0.0.1" {
+			t.Fatalf("%s: client headers must be kept", in)
+		}
+	}
+}
+
+func BenchmarkSeleniumRoute_Direct(b *testing.B) {
+	route := newTestSeleniumRoute()
+	req := httptest.NewRequest(http.MethodPost, "/wd/hub/session/hub-1/element/42/click", nil)
+	path := req.URL.Path
+	b.ReportAllocs()
+	b.ResetTimer()
+	for i := 0; i < b.N; i++ {
+		req.URL.Path = path
+		route.direct(req)
+	}
+}
+
+// Director до выделения маршрута: те же заранее вычисленные префиксы,
+// но в замыкании ReverseProxy.
+func BenchmarkSeleniumRoute_BaselineDirector(b *testing.B) {
+	targetHost := "selenium-1" + ":4444"
+	oldPrefix := "/wd/hub/session/" + "hub-1"
+	newPrefix := "/session/" + "remote-1"
+	director := func(req *http.Request) {
+		req.URL.Scheme = "http"
+		req.URL.Host = targetHost
+		req.Host = targetHost
+		if path := req.URL.Path; strings.HasPrefix(path, oldPrefix) {
+			req.URL.Path = newPrefix + path[len(oldPrefix):]
+		}
+	}
+	req := httptest.NewRequest(http.MethodPost, "/wd/hub/session/hub-1/element/42/click", nil)
+	path := req.URL.Path
+	b.ReportAllocs()
+	b.ResetTimer()
+	for i := 0; i < b.N; i++ {
+		req.URL.Path = path
+		director(req)
+	}
+}
@@ -9,7 +9,6 @@ import (
 	"net"
 	"net/http"
 	"net/http/httputil"
-	"strings"
 	"time"
 
 	"github.com/balakshievas/jelenoid-server-go/internal/dto"
@@ -22,11 +21,13 @@ type SeleniumSessionService struct {
 	dockerService  *DockerExternalService
 	statusChan     chan struct{}
 
-	serverAddress  string
-	serverPort     int
-	publicHost     string
-	httpClient     *http.Client
-	proxyTransport http.RoundTripper
+	serverAddress   string
+	serverPort      int
+	publicHost      string
+	dialer          *net.Dialer
+	sessionPoolSize int
+	proxyMode       string
+	proxyBuffers    *proxyBufferPool
 }
 
 func NewSeleniumSessionService(
@@ -37,23 +38,11 @@ func NewSeleniumSessionService(
 	serverAddress string,
 	serverPort int,
 	publicHost string,
+	proxyBufferSize int,
+	sessionPoolSize int,
+	proxyMode string,
 ) *SeleniumSessionService {
-	dialer := &net.Dialer{
-		Timeout:   5 * time.Second,
-		KeepAlive: 30 * time.Second,
-	}
-	proxyTransport := &http.Transport{
-		DialContext:           dialer.DialContext,
-		MaxIdleConns:          200,
-		MaxIdleConnsPerHost:   10,
-		MaxConnsPerHost:       0,
-		IdleConnTimeout:       60 * time.Second,
-		DisableCompression:    true,
-		ResponseHeaderTimeout: 90 * time.Second,
-		ExpectContinueTimeout: 1 * time.Second,
-		ForceAttemptHTTP2:     false,
-	}
-	return &SeleniumSessionService{
+	s := &SeleniumSessionService{
 		activeSessions: activeSessions,
 		browserManager: browserManager,
 		dockerService:  dockerService,
@@ -61,67 +50,85 @@ func NewSeleniumSessionService(
 		serverAddress:  serverAddress,
 		serverPort:     serverPort,
 		publicHost:     publicHost,
-		httpClient: &http.Client{
-			Timeout:   300 * time.Second,
-			Transport: proxyTransport,
+		dialer: &net.Dialer{
+			Timeout:   5 * time.Second,
+			KeepAlive: 30 * time.Second,
 		},
-		proxyTransport: proxyTransport,
+		sessionPoolSize: max(sessionPoolSize, 1),
+		proxyMode:       proxyMode,
+		proxyBuffers:    newProxyBufferPool(proxyBufferSize),
 	}
+	go s.dispatchQueue()
+	return s
 }
 
-func (s *SeleniumSessionService) CreateSessionOrQueue(requestBody map[string]interface{}) (map[string]interface{}, error) {
-	if s.activeSessions.TryReserveSlot() {
-		result, err := s.createSessionInternal(requestBody)
-		if err != nil {
-			s.activeSessions.ReleaseSlot()
-			s.ProcessQueue()
-			return nil, err
-		}
-		return result, nil
-	}
-
-	if !s.activeSessions.IsQueueEnabled() {
-		return nil, &HTTPError{StatusCode: http.StatusServiceUnavailable, Message: "No free slots. Queue is disabled."}
+func (s *SeleniumSessionService) CreateSessionOrQueue(ctx context.Context, requestBody map[string]interface{}, authorization string) (map[string]interface{}, error) {
+	browserInfo := s.findImageForRequest(requestBody)
+	if browserInfo == nil {
+		return nil, &HTTPError{StatusCode: http.StatusNotFound, Message: "Not found browser version"}
 	}
 
 	browser, version := extractBrowserNameAndVersion(requestBody)
+	queueKey, priority := s.activeSessions.SeleniumQueueKey(requestBody, authorization)
 	future := make(chan dto.PendingRequestResult, 1)
 	pendingReq := &dto.PendingRequest{
+		RequestID:   uuid.New().String(),
 		RequestBody: requestBody,
 		Browser:     browser,
 		Version:     version,
+		QueueKey:    queueKey,
+		Priority:    priority,
+		BrowserInfo: browserInfo,
 		Future:      future,
 		QueuedTime:  time.Now(),
 		StartTime:   time.Now().UnixMilli(),
 	}
 
-	if s.activeSessions.OfferToQueue(pendingReq) {
-		s.dispatchStatusUpdate()
-		timer := time.NewTimer(time.Duration(s.activeSessions.queueTimeoutMs) * time.Millisecond)
-		defer timer.Stop()
-		select {
-		case result := <-future:
-			if result.Err != nil {
-				return nil, result.Err
-			}
-			return result.Response, nil
-		case <-timer.C:
-			return nil, fmt.Errorf("queue timeout")
+	switch s.activeSessions.reserveOrEnqueue(pendingReq) {
+	case admissionReserved:
+		result, err := s.createSessionInternal(requestBody, browserInfo)
+		if err != nil {
+			s.activeSessions.ReleaseBrowserSlot(browserInfo.Name, browserInfo.Version)
+			return nil, err
 		}
+		return result, nil
+	case admissionQueueDisabled:
+		return nil, &HTTPError{StatusCode: http.StatusServiceUnavailable, Message: "No free slots. Queue is disabled."}
+	case admissionQueueFull:
+		return nil, &HTTPError{StatusCode: http.StatusServiceUnavailable, Message: "Session queue is full"}
 	}
 
-	return nil, &HTTPError{StatusCode: http.StatusServiceUnavailable, Message: "Session queue is full"}
+	s.dispatchStatusUpdate()
+	// Ответ придёт либо от диспетчера, либо по таймауту ожидания в очереди.
+	var result dto.PendingRequestResult
+	select {
+	case result = <-future:
+	case <-ctx.Done():
+		// Клиент ушёл из очереди. Если диспетчер уже забрал запрос,
+		// созданная для него сессия никому не нужна.
+		if pendingReq.Cancel() {
+			s.activeSessions.RemoveFromQueue(pendingReq)
+			s.dispatchStatusUpdate()
+			return nil, ctx.Err()
+		}
+		if result = <-future; result.Err == nil {
+			value, _ := result.Response["value"].(map[string]interface{})
+			if hubSessionID, _ := value["sessionId"].(string); hubSessionID != "" {
+				s.DeleteSession(hubSessionID)
+			}
+		}
+		return nil, ctx.Err()
+	}
+	if result.Err != nil {
+		return nil, result.Err
+	}
+	return result.Response, nil
 }
 
-func (s *SeleniumSessionService) createSessionInternal(requestBody map[string]interface{}) (map[string]interface{}, error) {
-	browserInfo := s.findImageForRequest(requestBody)
+func (s *SeleniumSessionService) createSessionInternal(requestBody map[string]interface{}, browserInfo *dto.BrowserInfo) (map[string]interface{}, error) {
 	selenoidOptions := findSelenoidOptions(requestBody)
 	enableVNC := getBoolOption(selenoidOptions, "enableVNC")
 
-	if browserInfo == nil {
-		return nil, &HTTPError{StatusCode: http.StatusNotFound, Message: "Not found browser version"}
-	}
-
 	// Некоторые драйверы (yandexdriver) бинарно-совместимы с chromedriver, но
 	// реестровый ключ в каталоге отличается ("yandex" vs "chrome"). Хаб резолвит
 	// образ по browserName из запроса, но контейнеру нужно слать wire-имя —
@@ -138,10 +145,21 @@ func (s *SeleniumSessionService) createSessionInternal(requestBody map[string]in
 		return nil, &HTTPError{StatusCode: http.StatusInternalServerError, Message: fmt.Sprintf("Failed to start container: %v", err)}
 	}
 
+	// Пул сессии открывается уже на создании: соединение POST /session
+	// остаётся в нём и достаётся первой команде.
+	transport := newSessionTransport(s.dialer, s.sessionPoolSize)
+	created := false
+	defer func() {
+		if !created {
+			transport.Close()
+		}
+	}()
+
 	createSessionURL := fmt.Sprintf("http://%s:4444/session", containerInfo.ContainerName)
 	jsonBody, _ := json.Marshal(requestBody)
 
-	resp, err := s.httpClient.Post(createSessionURL, "application/json", bytes.NewReader(jsonBody))
+	client := &http.Client{Timeout: 300 * time.Second, Transport: transport}
+	resp, err := client.Post(createSessionURL, "application/json", bytes.NewReader(jsonBody))
 	if err != nil {
 		s.dockerService.StopContainer(containerInfo.ContainerID)
 		return nil, &HTTPError{StatusCode: http.StatusInternalServerError, Message: fmt.Sprintf("Failed to create session in container: %v", err)}
@@ -192,7 +210,8 @@ func (s *SeleniumSessionService) createSessionInternal(requestBody map[string]in
 		ContainerInfo:   containerInfo,
 		DebuggerAddress: debuggerAddress,
 	}
-	s.activeSessions.SessionSuccessfullyCreated(hubSessionID, seleniumSession, s.newReverseProxy(seleniumSession))
+	s.activeSessions.SessionSuccessfullyCreated(hubSessionID, seleniumSession, s.newSessionProxy(seleniumSession, transport), transport)
+	created = true
 	s.dispatchStatusUpdate()
 
 	if containerCapabilities != nil {
@@ -215,53 +234,100 @@ func (s *SeleniumSessionService) DeleteSession(hubSessionID string) {
 	s.dispatchStatusUpdate()
 	if session != nil {
 		go s.dockerService.StopContainer(session.ContainerInfo.ContainerID)
-		s.ProcessQueue()
 	}
 }
 
-func (s *SeleniumSessionService) ProcessQueue() {
-	for s.activeSessions.GetQueueSize() > 0 {
-		if !s.activeSessions.TryReserveSlot() {
-			return
-		}
-		nextRequest := s.activeSessions.PollFromQueue()
-		s.dispatchStatusUpdate()
-		if nextRequest == nil {
-			s.activeSessions.ReleaseSlot()
-			continue
-		}
-		result, err := s.createSessionInternal(nextRequest.RequestBody)
-		if err != nil {
-			s.activeSessions.ReleaseSlot()
-			nextRequest.Future <- dto.PendingRequestResult{Err: err}
-			continue
+// dispatchQueue — единственный потребитель очереди selenium. Просыпается на
+// каждое освобождение слота и отдаёт слоты ожидающим строго по очереди;
+// сессии создаются в отдельных горутинах, а их ошибки возвращаются сюда
+// новым освобождением, а не рекурсией.
+func (s *SeleniumSessionService) dispatchQueue() {
+	for range s.activeSessions.SeleniumReleases() {
+		for {
+			nextRequest := s.activeSessions.PollEligibleFromQueue()
+			if nextRequest == nil {
+				break
+			}
+			browserInfo := nextRequest.BrowserInfo
+			if !nextRequest.Claim() {
+				s.activeSessions.ReleaseBrowserSlot(browserInfo.Name, browserInfo.Version)
+				continue
+			}
+			s.dispatchStatusUpdate()
+			go s.createQueuedSession(nextRequest)
 		}
-		nextRequest.Future <- dto.PendingRequestResult{Response: result}
 	}
 }
 
-func (s *SeleniumSessionService) newReverseProxy(session *dto.SeleniumSession) *httputil.ReverseProxy {
-	targetHost := session.ContainerInfo.ContainerName + ":4444"
-	hubID := session.HubSessionID
-	remoteID := session.RemoteSessionID
-	oldPrefix := "/wd/hub/session/" + hubID
-	newPrefix := "/session/" + remoteID
+func (s *SeleniumSessionService) createQueuedSession(req *dto.PendingRequest) {
+	result, err := s.createSessionInternal(req.RequestBody, req.BrowserInfo)
+	if err != nil {
+		s.activeSessions.ReleaseBrowserSlot(req.BrowserInfo.Name, req.BrowserInfo.Version)
+		req.Future <- dto.PendingRequestResult{Err: err}
+		return
+	}
+	req.Future <- dto.PendingRequestResult{Response: result}
+}
 
+func (s *SeleniumSessionService) newSessionProxy(session *dto.SeleniumSession, transport http.RoundTripper) http.Handler {
+	route := newSeleniumRoute(session)
+	if s.proxyMode == ProxyModeStream {
+		return &streamProxy{session: session, route: route, transport: transport, buffers: s.proxyBuffers}
+	}
 	return &httputil.ReverseProxy{
 		Director: func(req *http.Request) {
 			session.UpdateActivity()
-			req.URL.Scheme = "http"
-			req.URL.Host = targetHost
-			req.Host = targetHost
-			if path := req.URL.Path; strings.HasPrefix(path, oldPrefix) {
-				req.URL.Path = newPrefix + path[len(oldPrefix):]
-			}
+			route.direct(req)
 		},
-		Transport:     s.proxyTransport,
+		Transport:     transport,
+		BufferPool:    s.proxyBuffers,
 		FlushInterval: 100 * time.Millisecond,
 	}
 }
 
+// SyncWarmPools передаёт в container-manager размеры тёплых пулов
+// (поля warmPool и warmPoolMax в browsers.json) для всех браузеров.
+func (s *SeleniumSessionService) SyncWarmPools() error {
+	var firstErr error
+	for _, b := range s.browserManager.GetAllBrowsers() {
+		if b.WarmPool <= 0 && b.WarmPoolMax <= 0 {
+			continue
+		}
+		if err := s.ApplyWarmPool(b, b.WarmPool); err != nil && firstErr == nil {
+			firstErr = err
+		}
+	}
+	return firstErr
+}
+
+// ApplyWarmPool настраивает пул образа: size — минимум готовых контейнеров,
+// warmPoolMax — предел роста по спросу. size == 0 без warmPoolMax выключает пул.
+func (s *SeleniumSessionService) ApplyWarmPool(info *dto.BrowserInfo, size int) error {
+	maxSize := 0
+	if size > 0 || info.WarmPoolMax > 0 {
+		maxSize = max(size, info.WarmPoolMax)
+	}
+	return s.configureWarmPool(info, size, maxSize)
+}
+
+// DisableWarmPool выключает пул образа независимо от warmPoolMax — при
+// удалении браузера.
+func (s *SeleniumSessionService) DisableWarmPool(info *dto.BrowserInfo) error {
+	return s.configureWarmPool(info, 0, 0)
+}
+
+func (s *SeleniumSessionService) configureWarmPool(info *dto.BrowserInfo, size, maxSize int) error {
+	if info.Name == "playwright" {
+		return s.dockerService.ConfigurePlaywrightPool(info.DockerImageName, info.Version, size, maxSize)
+	}
+	// Контейнеры с VNC и без — разные группы пула. Минимум держит группа
+	// без VNC, группа с VNC прогревается только по спросу сессий с enableVNC.
+	if err := s.dockerService.ConfigureSeleniumPool(info.DockerImageName, false, size, maxSize); err != nil {
+		return err
+	}
+	return s.dockerService.ConfigureSeleniumPool(info.DockerImageName, true, 0, maxSize)
+}
+
 func (s *SeleniumSessionService) UploadFileToSession(hubSessionID string, fileBytes []byte) (string, error) {
 	session := s.activeSessions.Get(hubSessionID)
 	if session == nil {
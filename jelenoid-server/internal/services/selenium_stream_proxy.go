@@ -0,0 +1,118 @@
+package services
+
+import (
+	"io"
+	"log"
+	"net/http"
+	"net/url"
+	"strings"
+
+	"github.com/balakshievas/jelenoid-server-go/internal/dto"
+)
+
+const (
+	ProxyModeReverse = "reverse"
+	ProxyModeStream  = "stream"
+)
+
+var hopByHopHeaders = map[string]bool{
+	"Connection":          true,
+	"Keep-Alive":          true,
+	"Proxy-Connection":    true,
+	"Proxy-Authenticate":  true,
+	"Proxy-Authorization": true,
+	"Te":                  true,
+	"Trailer":             true,
+	"Transfer-Encoding":   true,
+	"Upgrade":             true,
+}
+
+// streamProxy — облегчённый режим прокси команд WebDriver (PROXY_MODE=stream).
+// В отличие от httputil.ReverseProxy, он не клонирует входящий запрос и не
+// собирает X-Forwarded-*: запрос уходит в пул соединений сессии напрямую, а
+// тело ответа копируется буфером из пула с flush после каждой порции, так что
+// медленный клиент притормаживает чтение из контейнера.
+type streamProxy struct {
+	session   *dto.SeleniumSession
+	route     *seleniumRoute
+	transport http.RoundTripper
+	buffers   *proxyBufferPool
+}
+
+func (p *streamProxy) ServeHTTP(w http.ResponseWriter, r *http.Request) {
+	p.session.UpdateActivity()
+
+	out := &http.Request{
+		Method: r.Method,
+		URL: &url.URL{
+			Scheme:   "http",
+			Host:     p.route.targetHost,
+			Path:     p.route.rewritePath(r.URL.Path),
+			RawQuery: r.URL.RawQuery,
+		},
+		Proto:         "HTTP/1.1",
+		ProtoMajor:    1,
+		ProtoMinor:    1,
+		Header:        make(http.Header, len(r.Header)),
+		ContentLength: r.ContentLength,
+		Host:          p.route.targetHost,
+	}
+	if r.ContentLength != 0 {
+		out.Body = r.Body
+	}
+	copyEndToEndHeaders(out.Header, r.Header)
+
+	resp, err := p.transport.RoundTrip(out.WithContext(r.Context()))
+	if err != nil {
+		log.Printf("Stream proxy %s: %v", p.session.HubSessionID, err)
+		w.WriteHeader(http.StatusBadGateway)
+		return
+	}
+	defer resp.Body.Close()
+
+	copyEndToEndHeaders(w.Header(), resp.Header)
+	w.WriteHeader(resp.StatusCode)
+
+	buf := p.buffers.Get()
+	defer p.buffers.Put(buf)
+	flusher, _ := w.(http.Flusher)
+	streaming := resp.ContentLength < 0
+	for {
+		n, readErr := resp.Body.Read(buf)
+		if n > 0 {
+			if _, err := w.Write(buf[:n]); err != nil {
+				return
+			}
+			if streaming && flusher != nil {
+				flusher.Flush()
+			}
+		}
+		if readErr != nil {
+			if readErr != io.EOF {
+				log.Printf("Stream proxy %s: response body: %v", p.session.HubSessionID, readErr)
+			}
+			return
+		}
+	}
+}
+
+func copyEndToEndHeaders(dst, src http.Header) {
+	connection := src["Connection"]
+	for key, values := range src {
+		if hopByHopHeaders[key] || listedInConnection(connection, key) {
+			continue
+		}
+		dst[key] = values
+	}
+}
+
+func listedInConnection(connection []string, key string) bool {
+	for _, v := range connection {
+		for _, token := range strings.Split(v, ",") {
+			if http.CanonicalHeaderKey(strings.TrimSpace(token)) == key {
+				return true
+			}
+		}
+	}
+	return false
+}
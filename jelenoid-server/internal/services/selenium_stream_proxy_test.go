@@ -0,0 +1,58 @@
+package services
+
+import (
+	"io"
+	"net"
+	"net/http"
+	"net/http/httptest"
+	"strings"
+	"testing"
+
+	"github.com/balakshievas/jelenoid-server-go/internal/dto"
+)
+
+func TestStreamProxy_RewritesPathAndDropsHopHeaders(t *testing.T) {
+	backend := httptest.NewServer(http.HandlerFunc(func(w http.ResponseWriter, r *http.Request) {
+		if r.URL.Path != "/session/remote-1/url" || r.URL.RawQuery != "a=1" {
+			t.Errorf("unexpected upstream url: %s", r.URL)
+		}
+		if r.Header.Get("X-Drop") != "" || r.Header.Get("X-Keep") != "yes" {
+			t.Errorf("unexpected upstream headers: %v", r.Header)
+		}
+		body, _ := io.ReadAll(r.Body)
+		w.Header().Set("Content-Type", "application/json")
+		w.Write(body)
+	}))
+	defer backend.Close()
+
+	session := &dto.SeleniumSession{
+		HubSessionID:    "hub-1",
+		RemoteSessionID: "remote-1",
+		ContainerInfo:   &dto.ContainerInfo{ContainerName: "selenium-1"},
+	}
+	route := newSeleniumRoute(session)
+	route.targetHost = strings.TrimPrefix(backend.URL, "http://")
+	proxy := &streamProxy{
+		session:   session,
+		route:     route,
+		transport: newSessionTransport(&net.Dialer{}, 1),
+		buffers:   newProxyBufferPool(16),
+	}
+
+	req := httptest.NewRequest(http.MethodPost, "/wd/hub/session/hub-1/url?a=1", strings.NewReader(`{"url":"about:blank"}`))
+	req.Header.Set("Connection", "X-Drop")
+	req.Header.Set("X-Drop", "1")
+	req.Header.Set("X-Keep", "yes")
+	rec := httptest.NewRecorder()
+	proxy.ServeHTTP(rec, req)
+
+	if rec.Code != http.StatusOK {
+		t.Fatalf("unexpected status: %d", rec.Code)
+	}
+	if got := rec.Body.String(); got != `{"url":"about:blank"}` {
+		t.Fatalf("unexpected body: %s", got)
+	}
+	if rec.Header().Get("Content-Type") != "application/json" {
+		t.Fatalf("response headers were not copied: %v", rec.Header())
+	}
+}
@@ -0,0 +1,118 @@
+package services
+
+import (
+	"context"
+	"io"
+	"net"
+	"net/http"
+	"net/http/httptrace"
+	"sync"
+	"sync/atomic"
+	"time"
+
+	"github.com/balakshievas/jelenoid-server-go/internal/dto"
+)
+
+// sessionTransport — отдельный keep-alive пул соединений к контейнеру одной
+// сессии. Соединение открывается ещё запросом POST /session и переиспользуется
+// командами; при удалении сессии пул закрывается сразу, а не по idle-таймауту.
+type sessionTransport struct {
+	transport *http.Transport
+
+	open    atomic.Int32
+	leased  atomic.Int32
+	pending atomic.Int32
+	opened  atomic.Int64
+}
+
+func newSessionTransport(dialer *net.Dialer, poolSize int) *sessionTransport {
+	st := &sessionTransport{}
+	st.transport = &http.Transport{
+		DialContext:           st.dialContext(dialer),
+		MaxIdleConns:          poolSize,
+		MaxIdleConnsPerHost:   poolSize,
+		IdleConnTimeout:       60 * time.Second,
+		DisableCompression:    true,
+		ResponseHeaderTimeout: 90 * time.Second,
+		ExpectContinueTimeout: 1 * time.Second,
+		ForceAttemptHTTP2:     false,
+	}
+	return st
+}
+
+func (st *sessionTransport) dialContext(dialer *net.Dialer) func(ctx context.Context, network, addr string) (net.Conn, error) {
+	return func(ctx context.Context, network, addr string) (net.Conn, error) {
+		conn, err := dialer.DialContext(ctx, network, addr)
+		if err != nil {
+			return nil, err
+		}
+		st.open.Add(1)
+		st.opened.Add(1)
+		return &countedConn{Conn: conn, open: &st.open}, nil
+	}
+}
+
+// RoundTrip считает ожидающие соединения (pending) и занятые запросами (leased).
+// Соединение считается занятым, пока не закрыто тело ответа.
+func (st *sessionTransport) RoundTrip(req *http.Request) (*http.Response, error) {
+	var got atomic.Bool
+	st.pending.Add(1)
+	trace := &httptrace.ClientTrace{
+		GotConn: func(httptrace.GotConnInfo) {
+			if got.CompareAndSwap(false, true) {
+				st.pending.Add(-1)
+				st.leased.Add(1)
+			}
+		},
+	}
+	resp, err := st.transport.RoundTrip(req.WithContext(httptrace.WithClientTrace(req.Context(), trace)))
+	if !got.Load() {
+		st.pending.Add(-1)
+		return resp, err
+	}
+	if err != nil {
+		st.leased.Add(-1)
+		return nil, err
+	}
+	resp.Body = &leasedBody{ReadCloser: resp.Body, leased: &st.leased}
+	return resp, nil
+}
+
+func (st *sessionTransport) Close() {
+	if st == nil {
+		return
+	}
+	st.transport.CloseIdleConnections()
+}
+
+func (st *sessionTransport) Stats() dto.SessionPoolStats {
+	leased := int(st.leased.Load())
+	return dto.SessionPoolStats{
+		Leased:    leased,
+		Pending:   int(st.pending.Load()),
+		Available: max(int(st.open.Load())-leased, 0),
+		Opened:    st.opened.Load(),
+	}
+}
+
+type countedConn struct {
+	net.Conn
+	open *atomic.Int32
+	once sync.Once
+}
+
+func (c *countedConn) Close() error {
+	c.once.Do(func() { c.open.Add(-1) })
+	return c.Conn.Close()
+}
+
+type leasedBody struct {
+	io.ReadCloser
+	leased *atomic.Int32
+	once   sync.Once
+}
+
+func (b *leasedBody) Close() error {
+	b.once.Do(func() { b.leased.Add(-1) })
+	return b.ReadCloser.Close()
+}
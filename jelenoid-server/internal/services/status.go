@@ -15,8 +15,10 @@ func (s *StatusService) BuildStatus() *dto.StatusResponse {
 	queuedInfos := make([]dto.QueuedRequestInfo, 0, len(pendingReqs))
 	for _, req := range pendingReqs {
 		queuedInfos = append(queuedInfos, dto.QueuedRequestInfo{
+			RequestID:  req.RequestID,
 			Browser:    nonemptyString(req.Browser, "unknown"),
 			Version:    req.Version,
+			QueueKey:   req.QueueKey,
 			QueuedTime: req.QueuedTime,
 		})
 	}
@@ -28,12 +30,15 @@ func (s *StatusService) BuildStatus() *dto.StatusResponse {
 		InProgress:     s.activeSessions.GetInProgressCount(),
 		ActiveSessions: seleniumSessions,
 		QueuedSessions: queuedInfos,
+		Browsers:       s.activeSessions.GetBrowserUsage(),
 	}
 
 	activePW := s.activeSessions.GetPlaywrightActiveSessions()
 	queuedPW := s.activeSessions.GetPlaywrightWaitingQueue()
 
 	var activePairInfos []dto.SessionPairInfo
+	// При нескольких клиентах на контейнер сессий больше, чем контейнеров.
+	containers := make(map[string]struct{})
 	for _, pair := range activePW {
 		info := dto.SessionPairInfo{
 			PlaywrightVersion: pair.Version,
@@ -47,14 +52,18 @@ func (s *StatusService) BuildStatus() *dto.StatusResponse {
 		}
 		if pair.ContainerInfo != nil {
 			info.ContainerInfo = pair.ContainerInfo
+			containers[pair.ContainerInfo.ContainerID] = struct{}{}
 		}
 		activePairInfos = append(activePairInfos, info)
 	}
 
 	var queuedPairInfos []dto.SessionPairInfo
-	for _, pair := range queuedPW {
+	for i, pair := range queuedPW {
+		queuedAt := pair.queuedAt
 		info := dto.SessionPairInfo{
 			PlaywrightVersion: pair.Version,
+			QueuePosition:     i + 1,
+			QueuedTime:        &queuedAt,
 		}
 		if pair.ClientConn != nil {
 			info.ClientSessionID = pair.ClientConn.RemoteAddr().String()
@@ -72,15 +81,19 @@ func (s *StatusService) BuildStatus() *dto.StatusResponse {
 		QueuedSessions:     len(queuedPW),
 		ActiveSessionPairs: activePairInfos,
 		QueuedSessionPairs: queuedPairInfos,
+		ActiveContainers:   len(containers),
 	}
 
 	if s.pool != nil {
 		ps := s.pool.Stats()
 		playwrightStat.Pool = &dto.PlaywrightPoolStatsDTO{
-			Enabled: ps.Enabled,
-			MaxSize: ps.MaxSize,
-			Total:   ps.Total,
-			ByKey:   make(map[string]dto.PlaywrightPoolKeyStatsDTO, len(ps.ByKey)),
+			Enabled:             ps.Enabled,
+			MaxSize:             ps.MaxSize,
+			ClientsPerContainer: ps.ClientsPerContainer,
+			RetireAfter:         ps.RetireAfter,
+			Total:               ps.Total,
+			Clients:             ps.Clients,
+			ByKey:               make(map[string]dto.PlaywrightPoolKeyStatsDTO, len(ps.ByKey)),
 		}
 		for k, v := range ps.ByKey {
 			playwrightStat.Pool.ByKey[k] = dto.PlaywrightPoolKeyStatsDTO{
@@ -88,6 +101,8 @@ func (s *StatusService) BuildStatus() *dto.StatusResponse {
 				Ready:    v.Ready,
 				InUse:    v.InUse,
 				Draining: v.Draining,
+				Retiring: v.Retiring,
+				Clients:  v.Clients,
 			}
 		}
 	}
@@ -0,0 +1,137 @@
+package services
+
+import (
+	"bytes"
+	"encoding/json"
+	"slices"
+	"strings"
+
+	"github.com/balakshievas/jelenoid-server-go/internal/dto"
+)
+
+const (
+	statusOpAdd    = "add"
+	statusOpUpdate = "update"
+	statusOpRemove = "remove"
+)
+
+// statusEntity — элемент состояния: сводка (id пустой) или элемент списка.
+type statusEntity struct {
+	path string
+	id   string
+}
+
+// Сводки без списков: списки передаются отдельными операциями по элементам.
+type seleniumSummary struct {
+	dto.SeleniumStat
+	ActiveSessions *struct{} `json:"activeSeleniumSessions,omitempty"`
+	QueuedSessions *struct{} `json:"queuedSeleniumSession,omitempty"`
+}
+
+type playwrightSummary struct {
+	dto.PlaywrightStat
+	ActiveSessionPairs *struct{} `json:"activePlaywrightSessions,omitempty"`
+	QueuedSessionPairs *struct{} `json:"queuedPlaywrightSessions,omitempty"`
+}
+
+// statusContainer — ContainerInfo без lastActivity: она меняется на каждой
+// команде, и по ней каждая активная сессия попадала бы в каждую дельту.
+// lastActivity остаётся только в полном снимке.
+type statusContainer struct {
+	*dto.ContainerInfo
+	LastActivity *struct{} `json:"lastActivity,omitempty"`
+}
+
+type statusSeleniumSession struct {
+	*dto.SeleniumSession
+	ContainerInfo *statusContainer `json:"containerInfo"`
+}
+
+type statusSessionPair struct {
+	*dto.SessionPairInfo
+	ContainerInfo *statusContainer `json:"containerInfo"`
+}
+
+func containerForStatus(ci *dto.ContainerInfo) *statusContainer {
+	if ci == nil {
+		return nil
+	}
+	return &statusContainer{ContainerInfo: ci}
+}
+
+// indexStatus раскладывает состояние на элементы с их JSON. Сравнение идёт
+// по JSON, а не по структурам: ContainerInfo общий с живой сессией, и
+// прошлый снимок по указателю видел бы уже новые значения.
+func indexStatus(status *dto.StatusResponse) (map[statusEntity][]byte, error) {
+	index := make(map[statusEntity][]byte, 2+len(status.Selenium.ActiveSessions)+len(status.Selenium.QueuedSessions)+
+		len(status.Playwright.ActiveSessionPairs)+len(status.Playwright.QueuedSessionPairs))
+	put := func(path, id string, v interface{}) error {
+		data, err := json.Marshal(v)
+		if err != nil {
+			return err
+		}
+		index[statusEntity{path: path, id: id}] = data
+		return nil
+	}
+
+	if err := put("seleniumStat", "", seleniumSummary{SeleniumStat: status.Selenium}); err != nil {
+		return nil, err
+	}
+	if err := put("playwrightStat", "", playwrightSummary{PlaywrightStat: status.Playwright}); err != nil {
+		return nil, err
+	}
+	for i := range status.Selenium.ActiveSessions {
+		s := &status.Selenium.ActiveSessions[i]
+		entity := statusSeleniumSession{SeleniumSession: s, ContainerInfo: containerForStatus(s.ContainerInfo)}
+		if err := put("activeSeleniumSessions", s.HubSessionID, entity); err != nil {
+			return nil, err
+		}
+	}
+	for i := range status.Selenium.QueuedSessions {
+		q := &status.Selenium.QueuedSessions[i]
+		if err := put("queuedSeleniumSession", q.RequestID, q); err != nil {
+			return nil, err
+		}
+	}
+	for i := range status.Playwright.ActiveSessionPairs {
+		p := &status.Playwright.ActiveSessionPairs[i]
+		entity := statusSessionPair{SessionPairInfo: p, ContainerInfo: containerForStatus(p.ContainerInfo)}
+		if err := put("activePlaywrightSessions", p.ClientSessionID, entity); err != nil {
+			return nil, err
+		}
+	}
+	for i := range status.Playwright.QueuedSessionPairs {
+		p := &status.Playwright.QueuedSessionPairs[i]
+		entity := statusSessionPair{SessionPairInfo: p, ContainerInfo: containerForStatus(p.ContainerInfo)}
+		if err := put("queuedPlaywrightSessions", p.ClientSessionID, entity); err != nil {
+			return nil, err
+		}
+	}
+	return index, nil
+}
+
+// diffStatus — операции, переводящие prev в next, в порядке пути и ключа.
+func diffStatus(prev, next map[statusEntity][]byte) []dto.StatusOp {
+	var ops []dto.StatusOp
+	for e, data := range next {
+		old, ok := prev[e]
+		switch {
+		case !ok:
+			ops = append(ops, dto.StatusOp{Op: statusOpAdd, Path: e.path, ID: e.id, Value: data})
+		case !bytes.Equal(old, data):
+			ops = append(ops, dto.StatusOp{Op: statusOpUpdate, Path: e.path, ID: e.id, Value: data})
+		}
+	}
+	for e := range prev {
+		if _, ok := next[e]; !ok {
+			ops = append(ops, dto.StatusOp{Op: statusOpRemove, Path: e.path, ID: e.id})
+		}
+	}
+	slices.SortFunc(ops, func(a, b dto.StatusOp) int {
+		if c := strings.Compare(a.Path, b.Path); c != 0 {
+			return c
+		}
+		return strings.Compare(a.ID, b.ID)
+	})
+	return ops
+}
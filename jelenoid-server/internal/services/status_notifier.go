@@ -1,5 +1,12 @@
 package services
 
+import (
+	"log"
+	"sync"
+
+	"github.com/balakshievas/jelenoid-server-go/internal/dto"
+)
+
 type StatusService struct {
 	activeSessions *ActiveSessionsService
 	pool           *PlaywrightContainerPool
@@ -12,6 +19,10 @@ func NewStatusService(activeSessions *ActiveSessionsService, pool *PlaywrightCon
 type StatusNotifier struct {
 	hub       *SSEHub
 	statusSvc *StatusService
+
+	// mu упорядочивает вычисление дельт и их публикацию.
+	mu       sync.Mutex
+	entities map[statusEntity][]byte
 }
 
 func NewStatusNotifier(hub *SSEHub, statusSvc *StatusService) *StatusNotifier {
@@ -21,14 +32,26 @@ func NewStatusNotifier(hub *SSEHub, statusSvc *StatusService) *StatusNotifier {
 	}
 }
 
+// OnStatusChanged сравнивает новое состояние с прошлым и рассылает только
+// изменившиеся элементы событием state-delta. Полное состояние остаётся
+// в хабе снимком для новых подписчиков.
 func (n *StatusNotifier) OnStatusChanged() {
 	status := n.statusSvc.BuildStatus()
-	n.hub.Broadcast(SSEEvent{
-		Event: "state-update",
-		Data:  status,
-	})
-}
+	entities, err := indexStatus(status)
+	if err != nil {
+		log.Printf("StatusNotifier: failed to index status: %v", err)
+		return
+	}
 
-func (n *StatusNotifier) GetStatus() interface{} {
-	return n.statusSvc.BuildStatus()
+	n.mu.Lock()
+	defer n.mu.Unlock()
+	ops := diffStatus(n.entities, entities)
+	n.entities = entities
+	if len(ops) == 0 {
+		return
+	}
+	n.hub.Publish(
+		SSEEvent{Event: "state-delta", Data: dto.StatusDelta{Ops: ops}},
+		SSEEvent{Event: "state-update", Data: status},
+	)
 }
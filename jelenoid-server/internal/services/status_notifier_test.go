@@ -0,0 +1,105 @@
+package services
+
+import (
+	"encoding/json"
+	"strings"
+	"testing"
+
+	"github.com/balakshievas/jelenoid-server-go/internal/dto"
+)
+
+func TestDiffStatus_EmitsOnlyChangedEntities(t *testing.T) {
+	prev := &dto.StatusResponse{Selenium: dto.SeleniumStat{
+		Total: 2, Used: 2,
+		ActiveSessions: []dto.SeleniumSession{
+			{HubSessionID: "a", BrowserName: "chrome"},
+			{HubSessionID: "b", BrowserName: "firefox"},
+			{HubSessionID: "d", BrowserName: "chrome", ContainerInfo: &dto.ContainerInfo{ContainerName: "d", LastActivity: 1}},
+		},
+	}}
+	next := &dto.StatusResponse{Selenium: dto.SeleniumStat{
+		Total: 2, Used: 2,
+		ActiveSessions: []dto.SeleniumSession{
+			{HubSessionID: "a", BrowserName: "chrome", VNCEnabled: true},
+			{HubSessionID: "c", BrowserName: "chrome"},
+			{HubSessionID: "d", BrowserName: "chrome", ContainerInfo: &dto.ContainerInfo{ContainerName: "d", LastActivity: 2}},
+		},
+	}}
+	prevIndex, err := indexStatus(prev)
+	if err != nil {
+		t.Fatal(err)
+	}
+	nextIndex, err := indexStatus(next)
+	if err != nil {
+		t.Fatal(err)
+	}
+
+	ops := diffStatus(prevIndex, nextIndex)
+	var got []string
+	for _, op := range ops {
+		got = append(got, op.Op+" "+op.Path+"/"+op.ID)
+	}
+	want := []string{
+		"update activeSeleniumSessions/a",
+		"remove activeSeleniumSessions/b",
+		"add activeSeleniumSessions/c",
+	}
+	if strings.Join(got, ", ") != strings.Join(want, ", ") {
+		t.Fatalf("ops %v, want %v", got, want)
+	}
+
+	var session dto.SeleniumSession
+	if err := json.Unmarshal(ops[0].Value, &session); err != nil || !session.VNCEnabled {
+		t.Fatalf("update should carry the new session, got %s", ops[0].Value)
+	}
+	if strings.Contains(string(nextIndex[statusEntity{path: "activeSeleniumSessions", id: "d"}]), "lastActivity") {
+		t.Fatal("activity timestamps must not turn every session into an update")
+	}
+	if strings.Contains(string(nextIndex[statusEntity{path: "seleniumStat"}]), "activeSeleniumSessions") {
+		t.Fatal("summary must not repeat the session list")
+	}
+}
+
+func TestSSEHub_ResumesFromLastEventID(t *testing.T) {
+	h := NewSSEHub(2)
+	for i := 0; i < 3; i++ {
+		h.Publish(SSEEvent{Event: "state-delta", Data: i}, SSEEvent{Event: "state-update", Data: i})
+	}
+
+	ch, missed, snapshot, _ := h.subscribe(h.eventID(1))
+	h.Unsubscribe(ch)
+	if len(missed) != 2 || snapshot.Event != "" {
+		t.Fatalf("expected two replayed events, got %d and snapshot %q", len(missed), snapshot.Event)
+	}
+	if !strings.HasPrefix(string(missed[0]), "id: "+h.eventID(2)+"\n") {
+		t.Fatalf("replay should start after the last seen id, got %q", missed[0])
+	}
+
+	for _, lastEventID := range []string{"", h.eventID(0), "older-3"} {
+		ch, missed, snapshot, seq := h.subscribe(lastEventID)
+		h.Unsubscribe(ch)
+		if missed != nil || snapshot.Data != 2 || seq != 3 {
+			t.Fatalf("Last-Event-ID %q: expected the snapshot at 3, got %v at %d", lastEventID, snapshot.Data, seq)
+		}
+	}
+}
+
+func TestSSEHub_DisconnectsSubscriberThatMissedADelta(t *testing.T) {
+	h := NewSSEHub(4)
+	ch, _, _, _ := h.subscribe("")
+	for i := 0; i <= cap(ch); i++ {
+		h.Publish(SSEEvent{Event: "state-delta", Data: i}, SSEEvent{Event: "state-update", Data: i})
+	}
+	for i := 0; i < cap(ch); i++ {
+		<-ch
+	}
+	select {
+	case _, ok := <-ch:
+		if ok {
+			t.Fatal("overflowing delta must not be queued")
+		}
+	default:
+		t.Fatal("subscriber that missed a delta should be disconnected")
+	}
+	h.Unsubscribe(ch)
+}
@@ -0,0 +1,159 @@
+package services
+
+import (
+	"sync"
+	"time"
+)
+
+const timingWheelSlots = 512
+
+// wheelTimer — отложенный вызов в TimingWheel. Таймер лежит в двусвязном
+// списке своей ячейки, поэтому и постановка, и отмена — O(1).
+type wheelTimer struct {
+	tick       int64
+	fn         func()
+	bucket     *wheelBucket
+	prev, next *wheelTimer
+}
+
+type wheelBucket struct {
+	head *wheelTimer
+}
+
+func (b *wheelBucket) add(t *wheelTimer) {
+	t.bucket = b
+	t.prev = nil
+	t.next = b.head
+	if b.head != nil {
+		b.head.prev = t
+	}
+	b.head = t
+}
+
+func (b *wheelBucket) remove(t *wheelTimer) {
+	if t.prev != nil {
+		t.prev.next = t.next
+	} else {
+		b.head = t.next
+	}
+	if t.next != nil {
+		t.next.prev = t.prev
+	}
+	t.bucket, t.prev, t.next = nil, nil, nil
+}
+
+// TimingWheel — хешированное колесо таймеров для таймаутов сессий. Срабатывает
+// с точностью до одного тика; вместо переустановки таймера на каждую
+// активность владелец при срабатывании сверяет время последней активности
+// и при необходимости ставит таймер заново.
+type TimingWheel struct {
+	tick  time.Duration
+	start time.Time
+
+	mu      sync.Mutex
+	buckets []wheelBucket
+	current int64
+	quit    chan struct{}
+}
+
+func NewTimingWheel(tick time.Duration) *TimingWheel {
+	return newTimingWheelAt(tick, timingWheelSlots, time.Now())
+}
+
+func newTimingWheelAt(tick time.Duration, slots int, start time.Time) *TimingWheel {
+	if tick <= 0 {
+		tick = 100 * time.Millisecond
+	}
+	return &TimingWheel{
+		tick:    tick,
+		start:   start,
+		buckets: make([]wheelBucket, max(slots, 1)),
+		quit:    make(chan struct{}),
+	}
+}
+
+// afterFunc вызывает fn не раньше чем через d (с точностью до тика).
+// fn выполняется в горутине колеса и не должна надолго блокироваться.
+func (w *TimingWheel) afterFunc(d time.Duration, fn func()) *wheelTimer {
+	return w.schedule(time.Now().Add(d), fn)
+}
+
+func (w *TimingWheel) schedule(at time.Time, fn func()) *wheelTimer {
+	// Округление вверх: таймер не срабатывает раньше срока.
+	tick := int64((at.Sub(w.start) + w.tick - 1) / w.tick)
+
+	select {
+	case <-w.quit:
+		// Остановленное колесо таймер уже не вызовет.
+		return nil
+	default:
+	}
+
+	w.mu.Lock()
+	defer w.mu.Unlock()
+	tick = max(tick, w.current+1)
+	t := &wheelTimer{tick: tick, fn: fn}
+	w.buckets[tick%int64(len(w.buckets))].add(t)
+	return t
+}
+
+// stop отменяет таймер; false — он уже сработал или был отменён.
+func (w *TimingWheel) stop(t *wheelTimer) bool {
+	if t == nil {
+		return false
+	}
+	w.mu.Lock()
+	defer w.mu.Unlock()
+	if t.bucket == nil {
+		return false
+	}
+	t.bucket.remove(t)
+	return true
+}
+
+// advance прокручивает колесо до момента now и вызывает созревшие таймеры.
+func (w *TimingWheel) advance(now time.Time) {
+	nowTick := int64(now.Sub(w.start) / w.tick)
+
+	w.mu.Lock()
+	if nowTick <= w.current {
+		w.mu.Unlock()
+		return
+	}
+	steps := min(nowTick-w.current, int64(len(w.buckets)))
+	var due []*wheelTimer
+	for i := int64(1); i <= steps; i++ {
+		b := &w.buckets[(w.current+i)%int64(len(w.buckets))]
+		for t := b.head; t != nil; {
+			next := t.next
+			if t.tick <= nowTick {
+				b.remove(t)
+				due = append(due, t)
+			}
+			t = next
+		}
+	}
+	w.current = nowTick
+	w.mu.Unlock()
+
+	for _, t := range due {
+		t.fn()
+	}
+}
+
+func (w *TimingWheel) Run() {
+	ticker := time.NewTicker(w.tick)
+	defer ticker.Stop()
+	for {
+		select {
+		case <-w.quit:
+			return
+		case now := <-ticker.C:
+			w.advance(now)
+		}
+	}
+}
+
+func (w *TimingWheel) Close() {
+	close(w.quit)
+}
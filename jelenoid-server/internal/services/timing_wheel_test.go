@@ -0,0 +1,70 @@
+package services
+
+import (
+	"testing"
+	"time"
+)
+
+func TestTimingWheel_FiresWithinOneTick(t *testing.T) {
+	start := time.Now()
+	w := newTimingWheelAt(10*time.Millisecond, 8, start)
+
+	fired := 0
+	w.schedule(start.Add(35*time.Millisecond), func() { fired++ })
+
+	w.advance(start.Add(30 * time.Millisecond))
+	if fired != 0 {
+		t.Fatal("timer fired before its deadline")
+	}
+	w.advance(start.Add(40 * time.Millisecond))
+	if fired != 1 {
+		t.Fatalf("timer should fire on the next tick, fired=%d", fired)
+	}
+	w.advance(start.Add(200 * time.Millisecond))
+	if fired != 1 {
+		t.Fatalf("timer fired twice, fired=%d", fired)
+	}
+}
+
+func TestTimingWheel_DeadlineBeyondOneRotation(t *testing.T) {
+	start := time.Now()
+	w := newTimingWheelAt(10*time.Millisecond, 4, start)
+
+	fired := false
+	w.schedule(start.Add(100*time.Millisecond), func() { fired = true })
+
+	for ms := 10; ms < 100; ms += 10 {
+		w.advance(start.Add(time.Duration(ms) * time.Millisecond))
+		if fired {
+			t.Fatalf("timer fired early at %dms", ms)
+		}
+	}
+	w.advance(start.Add(100 * time.Millisecond))
+	if !fired {
+		t.Fatal("timer should fire after wrapping the wheel")
+	}
+}
+
+func TestTimingWheel_StopAndLongPause(t *testing.T) {
+	start := time.Now()
+	w := newTimingWheelAt(10*time.Millisecond, 4, start)
+
+	stopped := w.schedule(start.Add(20*time.Millisecond), func() { t.Fatal("stopped timer fired") })
+	fired := 0
+	for i := 1; i <= 10; i++ {
+		w.schedule(start.Add(time.Duration(i*15)*time.Millisecond), func() { fired++ })
+	}
+
+	if !w.stop(stopped) {
+		t.Fatal("pending timer should be stoppable")
+	}
+	if w.stop(stopped) {
+		t.Fatal("timer must not be stopped twice")
+	}
+
+	// Пропуск многих оборотов сразу не должен терять таймеры.
+	w.advance(start.Add(time.Second))
+	if fired != 10 {
+		t.Fatalf("expected all timers to fire after a long pause, fired=%d", fired)
+	}
+}
@@ -0,0 +1,611 @@
+package services
+
+import (
+	"bufio"
+	"encoding/binary"
+	"errors"
+	"fmt"
+	"io"
+	"log"
+	"net"
+	"slices"
+	"sync"
+	"time"
+
+	"github.com/gorilla/websocket"
+)
+
+type VncProxyConfig struct {
+	// Broadcast — все зрители сессии смотрят через одно соединение с VNC-сервером.
+	Broadcast bool
+	// Password — пароль VNC-сервера контейнера: с ним хаб подключается
+	// к контейнеру, его же хаб спрашивает у зрителей.
+	Password string
+	// ViewerBacklog — сколько байт может ждать отправки зрителю, прежде чем
+	// его обновления начнут склеиваться; 0 — не склеивать.
+	ViewerBacklog int64
+}
+
+// VncProxy подключает зрителей /vnc/{sessionId} к VNC-серверу контейнера:
+// каждого своим соединением или, в режиме Broadcast, через общий vncBroadcaster.
+type VncProxy struct {
+	activeSessions *ActiveSessionsService
+	cfg            VncProxyConfig
+}
+
+func NewVncProxy(activeSessions *ActiveSessionsService, cfg VncProxyConfig) *VncProxy {
+	return &VncProxy{activeSessions: activeSessions, cfg: cfg}
+}
+
+func (p *VncProxy) Serve(clientConn *websocket.Conn, hubSessionID, containerName string) {
+	if !p.cfg.Broadcast {
+		RelayVnc(clientConn, containerName)
+		return
+	}
+
+	r := bufio.NewReader(&wsStream{conn: clientConn})
+	clientConn.SetReadDeadline(time.Now().Add(vncIdleTimeout))
+	if err := rfbServerHandshake(r, wsBinaryWriter{clientConn}, p.cfg.Password); err != nil {
+		return
+	}
+	clientConn.SetReadDeadline(time.Time{})
+
+	address := net.JoinHostPort(containerName, vncPort)
+	// Трансляция могла закрыться между выдачей и подключением зрителя
+	// (ушёл последний зритель) — тогда берётся новая.
+	for attempt := 0; attempt < 2; attempt++ {
+		b := p.activeSessions.vncBroadcasterFor(hubSessionID, func() *vncBroadcaster {
+			return newVncBroadcaster(address, p.cfg.Password, p.cfg.ViewerBacklog)
+		})
+		if b == nil {
+			break
+		}
+		if b.serve(clientConn, r) {
+			return
+		}
+	}
+	clientConn.WriteMessage(websocket.CloseMessage, websocket.FormatCloseMessage(websocket.CloseTryAgainLater, "VNC connection failed"))
+}
+
+type vncViewer struct {
+	conn *websocket.Conn
+	out  *frameRelay
+	// Кодировки, которые понимает зритель, и состояние отставшего зрителя:
+	// область экрана, изменившаяся с тех пор, как он отстал. Под vncBroadcaster.mu.
+	copyRect    bool
+	desktopSize bool
+	lagging     bool
+	dirty       rfbRect
+}
+
+// vncBroadcaster держит одно RFB-соединение с VNC-сервером сессии и раздаёт
+// его обновления всем зрителям: сервер кодирует экран один раз, сколько бы
+// людей ни смотрело. Экран хранится в framebuffer, и подключившийся позже
+// зритель сразу получает полный кадр. Вводом управляет только первый из
+// подключённых зрителей, остальные смотрят.
+type vncBroadcaster struct {
+	address  string
+	password string
+	backlog  int64
+
+	// ready закрывается, когда рукопожатие с сервером завершено; err — его итог.
+	ready chan struct{}
+	err   error
+
+	writeMu sync.Mutex
+
+	mu       sync.Mutex
+	upstream net.Conn
+	fb       *rfbFramebuffer
+	name     string
+	viewers  []*vncViewer
+	closed   bool
+
+	closeOnce sync.Once
+}
+
+func newVncBroadcaster(address, password string, backlog int64) *vncBroadcaster {
+	b := &vncBroadcaster{
+		address:  address,
+		password: password,
+		backlog:  backlog,
+		ready:    make(chan struct{}),
+	}
+	go b.run()
+	return b
+}
+
+func (b *vncBroadcaster) run() {
+	conn, err := net.DialTimeout("tcp", b.address, vncDialTimeout)
+	if err != nil {
+		b.fail(err)
+		return
+	}
+	b.mu.Lock()
+	if b.closed {
+		b.mu.Unlock()
+		conn.Close()
+		b.fail(errors.New("vnc broadcast closed"))
+		return
+	}
+	b.upstream = conn
+	b.mu.Unlock()
+
+	r := bufio.NewReaderSize(conn, vncBufferSize)
+	conn.SetDeadline(time.Now().Add(vncDialTimeout))
+	init, err := rfbClientHandshake(r, conn, b.password)
+	conn.SetDeadline(time.Time{})
+	if err != nil {
+		b.fail(err)
+		return
+	}
+
+	b.mu.Lock()
+	b.fb = newRfbFramebuffer(init.width, init.height)
+	b.name = init.name
+	b.mu.Unlock()
+
+	encodings := []byte{rfbSetEncodings, 0, 0, 3}
+	for _, e := range []int32{rfbEncodingRaw, rfbEncodingCopyRect, rfbEncodingDesktopSize} {
+		encodings = binary.BigEndian.AppendUint32(encodings, uint32(e))
+	}
+	setup := append([]byte{rfbSetPixelFormat, 0, 0, 0}, rfbPixelFormat[:]...)
+	setup = append(setup, encodings...)
+	setup = append(setup, rfbUpdateRequest(false, init.width, init.height)...)
+	if err := b.writeUpstream(setup); err != nil {
+		b.fail(err)
+		return
+	}
+	close(b.ready)
+
+	for {
+		if err := b.readServerMessage(r); err != nil {
+			if !b.isClosed() {
+				log.Printf("VNC broadcast %s: %v", b.address, err)
+			}
+			break
+		}
+	}
+	b.close()
+}
+
+func (b *vncBroadcaster) fail(err error) {
+	log.Printf("VNC broadcast %s: failed to connect: %v", b.address, err)
+	b.err = err
+	close(b.ready)
+	b.close()
+}
+
+func (b *vncBroadcaster) isClosed() bool {
+	b.mu.Lock()
+	defer b.mu.Unlock()
+	return b.closed
+}
+
+// close рвёт соединение с VNC-сервером и отключает всех зрителей.
+func (b *vncBroadcaster) close() {
+	b.closeOnce.Do(func() {
+		b.mu.Lock()
+		b.closed = true
+		upstream := b.upstream
+		viewers := b.viewers
+		b.viewers = nil
+		b.mu.Unlock()
+
+		if upstream != nil {
+			upstream.Close()
+		}
+		for _, v := range viewers {
+			v.out.close()
+		}
+	})
+}
+
+func (b *vncBroadcaster) writeUpstream(msg []byte) error {
+	b.writeMu.Lock()
+	defer b.writeMu.Unlock()
+	_, err := b.upstream.Write(msg)
+	return err
+}
+
+func (b *vncBroadcaster) readServerMessage(r *bufio.Reader) error {
+	messageType, err := r.ReadByte()
+	if err != nil {
+		return err
+	}
+	switch messageType {
+	case rfbFramebufferUpdate:
+		return b.readUpdate(r)
+	case rfbSetColourMapEntries:
+		// В true colour палитра не используется.
+		var hdr [5]byte
+		if _, err := io.ReadFull(r, hdr[:]); err != nil {
+			return err
+		}
+		_, err := r.Discard(int(binary.BigEndian.Uint16(hdr[3:])) * 6)
+		return err
+	case rfbBell:
+		b.broadcast([]byte{rfbBell})
+		return nil
+	case rfbServerCutText:
+		msg := make([]byte, 8)
+		msg[0] = rfbServerCutText
+		if _, err := io.ReadFull(r, msg[1:]); err != nil {
+			return err
+		}
+		n := binary.BigEndian.Uint32(msg[4:])
+		if n > rfbMaxCutText {
+			return errors.New("rfb: cut text is too long")
+		}
+		msg = append(msg, make([]byte, n)...)
+		if _, err := io.ReadFull(r, msg[8:]); err != nil {
+			return err
+		}
+		b.broadcast(msg)
+		return nil
+	default:
+		return fmt.Errorf("rfb: unexpected server message %d", messageType)
+	}
+}
+
+type rfbUpdateRect struct {
+	rfbRect
+	encoding int32
+	// offset — начало данных прямоугольника в сообщении.
+	offset int
+}
+
+// readUpdate читает FramebufferUpdate целиком, применяет его к framebuffer
+// и раздаёт зрителям. Сообщение уходит зрителям в том виде, в каком пришло;
+// зрителю без CopyRect вместо него уходит Raw-кадр охватывающей области.
+func (b *vncBroadcaster) readUpdate(r *bufio.Reader) error {
+	var hdr [3]byte
+	if _, err := io.ReadFull(r, hdr[:]); err != nil {
+		return err
+	}
+	count := int(binary.BigEndian.Uint16(hdr[1:]))
+	msg := append(make([]byte, 0, 4+count*16), rfbFramebufferUpdate, 0, hdr[1], hdr[2])
+
+	b.mu.Lock()
+	bounds := &rfbFramebuffer{width: b.fb.width, height: b.fb.height}
+	b.mu.Unlock()
+
+	rects := make([]rfbUpdateRect, 0, count)
+	for i := 0; i < count; i++ {
+		start := len(msg)
+		msg = append(msg, make([]byte, 12)...)
+		if _, err := io.ReadFull(r, msg[start:]); err != nil {
+			return err
+		}
+		h := msg[start:]
+		rect := rfbUpdateRect{
+			rfbRect: rfbRect{
+				x: int(binary.BigEndian.Uint16(h[0:])),
+				y: int(binary.BigEndian.Uint16(h[2:])),
+				w: int(binary.BigEndian.Uint16(h[4:])),
+				h: int(binary.BigEndian.Uint16(h[6:])),
+			},
+			encoding: int32(binary.BigEndian.Uint32(h[8:])),
+			offset:   len(msg),
+		}
+		var size int
+		switch rect.encoding {
+		case rfbEncodingRaw:
+			size = rect.w * rect.h * rfbBytesPerPixel
+		case rfbEncodingCopyRect:
+			size = 4
+		case rfbEncodingDesktopSize:
+			bounds.width, bounds.height = rect.w, rect.h
+		default:
+			return fmt.Errorf("rfb: unexpected encoding %d", rect.encoding)
+		}
+		if rect.encoding != rfbEncodingDesktopSize && !bounds.contains(rect.rfbRect) {
+			return fmt.Errorf("rfb: rectangle %+v is out of the %dx%d screen", rect.rfbRect, bounds.width, bounds.height)
+		}
+		msg = slices.Grow(msg, size)[:rect.offset+size]
+		if _, err := io.ReadFull(r, msg[rect.offset:]); err != nil {
+			return err
+		}
+		if rect.encoding == rfbEncodingCopyRect {
+			src := rfbRect{
+				x: int(binary.BigEndian.Uint16(msg[rect.offset:])),
+				y: int(binary.BigEndian.Uint16(msg[rect.offset+2:])),
+				w: rect.w,
+				h: rect.h,
+			}
+			if !bounds.contains(src) {
+				return fmt.Errorf("rfb: copy source %+v is out of the screen", src)
+			}
+		}
+		rects = append(rects, rect)
+	}
+
+	b.mu.Lock()
+	resized, hasCopy := false, false
+	var dirty rfbRect
+	for _, rect := range rects {
+		switch rect.encoding {
+		case rfbEncodingRaw:
+			b.fb.setRaw(rect.rfbRect, msg[rect.offset:])
+		case rfbEncodingCopyRect:
+			hasCopy = true
+			b.fb.copyRect(rect.rfbRect,
+				int(binary.BigEndian.Uint16(msg[rect.offset:])),
+				int(binary.BigEndian.Uint16(msg[rect.offset+2:])))
+		case rfbEncodingDesktopSize:
+			resized = true
+			b.fb.resize(rect.w, rect.h)
+			dirty = rfbRect{}
+			continue
+		}
+		dirty = dirty.union(rect.rfbRect)
+	}
+	var raw []byte
+	for _, v := range b.viewers {
+		switch {
+		case resized && !v.desktopSize:
+			// Зритель не умеет менять размер экрана — показывать ему нечего.
+			v.out.close()
+		case resized:
+			v.out.push(websocket.BinaryMessage, msg)
+			if v.lagging {
+				v.dirty = rfbRect{w: b.fb.width, h: b.fb.height}
+			}
+		case b.coalesceLocked(v, dirty):
+			// Обновление вошло в грязную область отставшего зрителя.
+		case v.copyRect || !hasCopy:
+			v.out.push(websocket.BinaryMessage, msg)
+		default:
+			if raw == nil {
+				raw = b.fb.rawUpdate(dirty)
+			}
+			v.out.push(websocket.BinaryMessage, raw)
+		}
+	}
+	width, height := b.fb.width, b.fb.height
+	b.mu.Unlock()
+
+	// После смены размера сервер присылает экран целиком только по полному запросу.
+	return b.writeUpstream(rfbUpdateRequest(!resized, width, height))
+}
+
+// coalesceLocked следит за очередью зрителя. Пока в ней не меньше backlog
+// байт, обновления зрителю не ставятся, а копятся в его грязной области:
+// пропущенные кадры устарели, нужен только итоговый вид экрана, а он уже
+// в framebuffer. Когда очередь сойдёт до четверти backlog, зритель получает
+// всю область одним Raw-кадром. true — обновление area поглощено.
+func (b *vncBroadcaster) coalesceLocked(v *vncViewer, area rfbRect) bool {
+	if b.backlog <= 0 {
+		return false
+	}
+	buffered := v.out.buffered.Load()
+	if !v.lagging {
+		if buffered < b.backlog {
+			return false
+		}
+		v.lagging = true
+	}
+	v.dirty = v.dirty.union(area)
+	if buffered > b.backlog/4 {
+		return true
+	}
+	v.lagging = false
+	if !v.dirty.empty() {
+		v.out.push(websocket.BinaryMessage, b.fb.rawUpdate(v.dirty))
+	}
+	v.dirty = rfbRect{}
+	return true
+}
+
+func (b *vncBroadcaster) broadcast(msg []byte) {
+	b.mu.Lock()
+	defer b.mu.Unlock()
+	for _, v := range b.viewers {
+		v.out.push(websocket.BinaryMessage, msg)
+	}
+}
+
+// serve подключает зрителя, уже прошедшего рукопожатие, и обслуживает его
+// до отключения. false — трансляция закрылась раньше, чем зритель подключился.
+func (b *vncBroadcaster) serve(conn *websocket.Conn, r *bufio.Reader) bool {
+	<-b.ready
+	if b.err != nil {
+		conn.WriteMessage(websocket.CloseMessage, websocket.FormatCloseMessage(websocket.CloseTryAgainLater, "VNC connection failed"))
+		return true
+	}
+
+	v := &vncViewer{conn: conn, out: newFrameRelay(PlaywrightRelayConfig{})}
+	b.mu.Lock()
+	if b.closed {
+		b.mu.Unlock()
+		return false
+	}
+	b.viewers = append(b.viewers, v)
+	v.out.push(websocket.BinaryMessage, rfbServerInitMessage(b.fb.width, b.fb.height, b.name))
+	b.mu.Unlock()
+
+	writerDone := make(chan struct{})
+	go func() {
+		defer close(writerDone)
+		v.out.pumpTo(conn)
+		conn.Close()
+	}()
+
+	for {
+		if err := b.readViewerMessage(v, r); err != nil {
+			if errors.Is(err, errRfbPixelFormat) {
+				log.Printf("VNC broadcast %s: %v", b.address, err)
+			}
+			break
+		}
+	}
+	b.detach(v)
+	v.out.close()
+	conn.Close()
+	<-writerDone
+	return true
+}
+
+// detach убирает зрителя; управление переходит к следующему по времени
+// подключения. С уходом последнего зрителя соединение с сервером закрывается.
+func (b *vncBroadcaster) detach(v *vncViewer) {
+	b.mu.Lock()
+	for i, other := range b.viewers {
+		if other == v {
+			b.viewers = append(b.viewers[:i], b.viewers[i+1:]...)
+			break
+		}
+	}
+	last := len(b.viewers) == 0
+	b.mu.Unlock()
+	if last {
+		b.close()
+	}
+}
+
+func (b *vncBroadcaster) readViewerMessage(v *vncViewer, r *bufio.Reader) error {
+	messageType, err := r.ReadByte()
+	if err != nil {
+		return err
+	}
+	switch messageType {
+	case rfbSetPixelFormat:
+		var msg [19]byte
+		if _, err := io.ReadFull(r, msg[:]); err != nil {
+			return err
+		}
+		// Последние три байта формата — выравнивание.
+		if [13]byte(msg[3:16]) != [13]byte(rfbPixelFormat[:13]) {
+			return errRfbPixelFormat
+		}
+		return nil
+	case rfbSetEncodings:
+		var hdr [3]byte
+		if _, err := io.ReadFull(r, hdr[:]); err != nil {
+			return err
+		}
+		encodings := make([]byte, int(binary.BigEndian.Uint16(hdr[1:]))*4)
+		if _, err := io.ReadFull(r, encodings); err != nil {
+			return err
+		}
+		b.mu.Lock()
+		for i := 0; i < len(encodings); i += 4 {
+			switch int32(binary.BigEndian.Uint32(encodings[i:])) {
+			case rfbEncodingCopyRect:
+				v.copyRect = true
+			case rfbEncodingDesktopSize:
+				v.desktopSize = true
+			}
+		}
+		b.mu.Unlock()
+		return nil
+	case rfbFramebufferUpdateRequest:
+		var req [9]byte
+		if _, err := io.ReadFull(r, req[:]); err != nil {
+			return err
+		}
+		// Инкрементальные обновления идут зрителю сами по мере прихода
+		// с сервера; полный запрос отдаётся из framebuffer без обращения к серверу.
+		// Запрос от отставшего зрителя значит, что он разобрал очередь, —
+		// самое время отдать ему накопленную область.
+		var rect rfbRect
+		if req[0] == 0 {
+			rect = rfbRect{
+				x: int(binary.BigEndian.Uint16(req[1:])),
+				y: int(binary.BigEndian.Uint16(req[3:])),
+				w: int(binary.BigEndian.Uint16(req[5:])),
+				h: int(binary.BigEndian.Uint16(req[7:])),
+			}
+		}
+		b.mu.Lock()
+		if !b.coalesceLocked(v, rect) && req[0] == 0 {
+			v.out.push(websocket.BinaryMessage, b.fb.rawUpdate(rect))
+		}
+		b.mu.Unlock()
+		return nil
+	case rfbKeyEvent:
+		msg := make([]byte, 8)
+		msg[0] = messageType
+		if _, err := io.ReadFull(r, msg[1:]); err != nil {
+			return err
+		}
+		return b.forwardInput(v, msg)
+	case rfbPointerEvent:
+		msg := make([]byte, 6)
+		msg[0] = messageType
+		if _, err := io.ReadFull(r, msg[1:]); err != nil {
+			return err
+		}
+		return b.forwardInput(v, msg)
+	case rfbClientCutText:
+		msg := make([]byte, 8)
+		msg[0] = messageType
+		if _, err := io.ReadFull(r, msg[1:]); err != nil {
+			return err
+		}
+		n := binary.BigEndian.Uint32(msg[4:])
+		if n > rfbMaxCutText {
+			return errors.New("rfb: cut text is too long")
+		}
+		msg = append(msg, make([]byte, n)...)
+		if _, err := io.ReadFull(r, msg[8:]); err != nil {
+			return err
+		}
+		return b.forwardInput(v, msg)
+	default:
+		return fmt.Errorf("rfb: unexpected viewer message %d", messageType)
+	}
+}
+
+// forwardInput пропускает на сервер ввод только управляющего зрителя.
+func (b *vncBroadcaster) forwardInput(v *vncViewer, msg []byte) error {
+	b.mu.Lock()
+	controller := len(b.viewers) > 0 && b.viewers[0] == v
+	b.mu.Unlock()
+	if !controller {
+		return nil
+	}
+	return b.writeUpstream(msg)
+}
+
+// wsStream читает бинарные сообщения WebSocket как непрерывный поток байт:
+// noVNC не выравнивает сообщения RFB по границам кадров.
+type wsStream struct {
+	conn *websocket.Conn
+	r    io.Reader
+}
+
+func (s *wsStream) Read(p []byte) (int, error) {
+	for {
+		if s.r == nil {
+			messageType, r, err := s.conn.NextReader()
+			if err != nil {
+				return 0, err
+			}
+			if messageType != websocket.BinaryMessage {
+				continue
+			}
+			s.r = r
+		}
+		n, err := s.r.Read(p)
+		if err == io.EOF {
+			s.r = nil
+			if n == 0 {
+				continue
+			}
+			err = nil
+		}
+		return n, err
+	}
+}
+
+type wsBinaryWriter struct {
+	conn *websocket.Conn
+}
+
+func (w wsBinaryWriter) Write(p []byte) (int, error) {
+	if err := w.conn.WriteMessage(websocket.BinaryMessage, p); err != nil {
+		return 0, err
+	}
+	return len(p), nil
+}
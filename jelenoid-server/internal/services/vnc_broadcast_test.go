@@ -0,0 +1,228 @@
+package services
+
+import (
+	"bufio"
+	"bytes"
+	"encoding/binary"
+	"io"
+	"net"
+	"net/http"
+	"net/http/httptest"
+	"strings"
+	"testing"
+	"time"
+
+	"github.com/gorilla/websocket"
+)
+
+func TestRfbFramebuffer_CopyRectOverlapping(t *testing.T) {
+	fb := newRfbFramebuffer(1, 4)
+	for i := range fb.pix {
+		fb.pix[i] = byte(i / rfbBytesPerPixel)
+	}
+	// Сдвиг вниз на одну строку: строки 0..2 переезжают в 1..3.
+	fb.copyRect(rfbRect{x: 0, y: 1, w: 1, h: 3}, 0, 0)
+	want := []byte{0, 0, 1, 2}
+	for row, v := range want {
+		if fb.pix[row*rfbBytesPerPixel] != v {
+			t.Fatalf("row %d: got %d, want %d", row, fb.pix[row*rfbBytesPerPixel], v)
+		}
+	}
+}
+
+func TestRfbServerHandshake_RejectsWrongPassword(t *testing.T) {
+	hubSide, viewerSide := net.Pipe()
+	defer hubSide.Close()
+	defer viewerSide.Close()
+	done := make(chan error, 1)
+	go func() { done <- rfbServerHandshake(hubSide, hubSide, "selenoid") }()
+
+	if _, err := rfbClientHandshake(viewerSide, viewerSide, "guess"); err == nil {
+		t.Fatal("viewer with a wrong password must be refused")
+	}
+	if err := <-done; err == nil {
+		t.Fatal("hub must not accept a viewer with a wrong password")
+	}
+}
+
+func TestVncBroadcaster_CoalescesUpdatesForLaggingViewer(t *testing.T) {
+	b := &vncBroadcaster{backlog: 100, fb: newRfbFramebuffer(8, 8)}
+	v := &vncViewer{out: newFrameRelay(PlaywrightRelayConfig{})}
+	v.out.push(websocket.BinaryMessage, make([]byte, 120))
+
+	if !b.coalesceLocked(v, rfbRect{x: 1, y: 1, w: 2, h: 2}) || !v.lagging {
+		t.Fatal("viewer above backlog should start lagging")
+	}
+	if !b.coalesceLocked(v, rfbRect{x: 4, y: 5, w: 1, h: 1}) {
+		t.Fatal("updates of a lagging viewer should be coalesced")
+	}
+	if batch := drainOnce(t, v.out); len(batch) != 1 {
+		t.Fatalf("stale updates must not be queued, got %d frames", len(batch))
+	}
+
+	// Зритель разобрал очередь и прислал очередной запрос.
+	if !b.coalesceLocked(v, rfbRect{}) || v.lagging {
+		t.Fatal("drained viewer should get the coalesced area")
+	}
+	batch := drainOnce(t, v.out)
+	if len(batch) != 1 {
+		t.Fatalf("expected one coalesced frame, got %d", len(batch))
+	}
+	hdr := batch[0].data[4:12]
+	got := rfbRect{
+		x: int(binary.BigEndian.Uint16(hdr[0:])),
+		y: int(binary.BigEndian.Uint16(hdr[2:])),
+		w: int(binary.BigEndian.Uint16(hdr[4:])),
+		h: int(binary.BigEndian.Uint16(hdr[6:])),
+	}
+	if want := (rfbRect{x: 1, y: 1, w: 4, h: 5}); got != want {
+		t.Fatalf("coalesced area %+v, want %+v", got, want)
+	}
+}
+
+// fakeRfbSession — serve для newFakeRfbServer: VNC-сервер контейнера
+// с паролем, на полный запрос отдаёт кадр 4x2, события указателя
+// складывает в pointer.
+func fakeRfbSession(t *testing.T, frame []byte, pointer chan<- [2]int, full chan<- struct{}) func(conn net.Conn) {
+	return func(conn net.Conn) {
+		r := bufio.NewReader(conn)
+		io.ReadFull(r, make([]byte, 12))
+		conn.Write([]byte{1, rfbSecurityVncAuth})
+		io.ReadFull(r, make([]byte, 1))
+		challenge := bytes.Repeat([]byte{7}, 16)
+		conn.Write(challenge)
+		response := make([]byte, 16)
+		io.ReadFull(r, response)
+		if want, _ := rfbVncAuthResponse("selenoid", challenge); !bytes.Equal(response, want) {
+			conn.Write([]byte{0, 0, 0, 1, 0, 0, 0, 0})
+			t.Error("hub sent a wrong VNC auth response")
+			return
+		}
+		conn.Write([]byte{0, 0, 0, 0})
+		io.ReadFull(r, make([]byte, 1))
+		conn.Write(rfbServerInitMessage(4, 2, ""))
+
+		for {
+			messageType, err := r.ReadByte()
+			if err != nil {
+				return
+			}
+			switch messageType {
+			case rfbSetPixelFormat:
+				msg := make([]byte, 19)
+				io.ReadFull(r, msg)
+				if !bytes.Equal(msg, noVNCPixelFormat[1:]) {
+					t.Errorf("hub must ask the server for the noVNC pixel format, got %v", msg)
+				}
+			case rfbSetEncodings:
+				hdr := make([]byte, 3)
+				io.ReadFull(r, hdr)
+				io.ReadFull(r, make([]byte, int(binary.BigEndian.Uint16(hdr[1:]))*4))
+			case rfbFramebufferUpdateRequest:
+				req := make([]byte, 9)
+				io.ReadFull(r, req)
+				if req[0] == 0 {
+					update := append([]byte{rfbFramebufferUpdate, 0, 0, 1}, appendRfbRectHeader(nil, rfbRect{w: 4, h: 2}, rfbEncodingRaw)...)
+					conn.Write(append(update, frame...))
+					full <- struct{}{}
+				}
+			case rfbPointerEvent:
+				ev := make([]byte, 5)
+				io.ReadFull(r, ev)
+				pointer <- [2]int{int(binary.BigEndian.Uint16(ev[1:])), int(binary.BigEndian.Uint16(ev[3:]))}
+			default:
+				t.Errorf("unexpected client message %d", messageType)
+				return
+			}
+		}
+	}
+}
+
+// noVNCPixelFormat — SetPixelFormat, который noVNC отправляет сразу после
+// рукопожатия: 32 бита, глубина 24, little-endian, сдвиги 0/8/16.
+var noVNCPixelFormat = []byte{rfbSetPixelFormat, 0, 0, 0, 32, 24, 0, 1, 0, 255, 0, 255, 0, 255, 0, 8, 16, 0, 0, 0}
+
+// dialVncViewer подключает зрителя, проходит с хабом рукопожатие RFB
+// и, как noVNC, задаёт формат пикселей.
+func dialVncViewer(t *testing.T, url string) (*websocket.Conn, *bufio.Reader) {
+	t.Helper()
+	conn, _, err := websocket.DefaultDialer.Dial(url, nil)
+	if err != nil {
+		t.Fatal(err)
+	}
+	t.Cleanup(func() { conn.Close() })
+	r := bufio.NewReader(&wsStream{conn: conn})
+	init, err := rfbClientHandshake(r, wsBinaryWriter{conn}, "selenoid")
+	if err != nil {
+		t.Fatal(err)
+	}
+	if init.width != 4 || init.height != 2 {
+		t.Fatalf("unexpected screen %dx%d", init.width, init.height)
+	}
+	if err := conn.WriteMessage(websocket.BinaryMessage, noVNCPixelFormat); err != nil {
+		t.Fatal(err)
+	}
+	return conn, r
+}
+
+func TestVncBroadcaster_CachesFrameAndGivesInputToFirstViewer(t *testing.T) {
+	frame := bytes.Repeat([]byte{1, 2, 3, 0}, 8)
+	pointer := make(chan [2]int, 4)
+	full := make(chan struct{}, 4)
+	addr := newFakeRfbServer(t, fakeRfbSession(t, frame, pointer, full))
+
+	b := newVncBroadcaster(addr, "selenoid", 0)
+	defer b.close()
+	hub := httptest.NewServer(http.HandlerFunc(func(w http.ResponseWriter, r *http.Request) {
+		conn, err := (&websocket.Upgrader{}).Upgrade(w, r, nil)
+		if err != nil {
+			return
+		}
+		defer conn.Close()
+		reader := bufio.NewReader(&wsStream{conn: conn})
+		if rfbServerHandshake(reader, wsBinaryWriter{conn}, "selenoid") == nil {
+			b.serve(conn, reader)
+		}
+	}))
+	defer hub.Close()
+	url := "ws" + strings.TrimPrefix(hub.URL, "http")
+
+	select {
+	case <-full:
+	case <-time.After(time.Second):
+		t.Fatal("broadcaster did not request the initial frame")
+	}
+
+	readFrame := func(conn *websocket.Conn, r *bufio.Reader) {
+		t.Helper()
+		conn.WriteMessage(websocket.BinaryMessage, rfbUpdateRequest(false, 4, 2))
+		msg := make([]byte, 16+len(frame))
+		if _, err := io.ReadFull(r, msg); err != nil {
+			t.Fatal(err)
+		}
+		if !bytes.Equal(msg[16:], frame) {
+			t.Fatalf("viewer got a wrong frame: %v", msg[16:])
+		}
+	}
+	first, firstReader := dialVncViewer(t, url)
+	readFrame(first, firstReader)
+	second, secondReader := dialVncViewer(t, url)
+	readFrame(second, secondReader)
+
+	select {
+	case <-full:
+		t.Fatal("late viewer must be served from the cached frame")
+	default:
+	}
+
+	second.WriteMessage(websocket.BinaryMessage, []byte{rfbPointerEvent, 0, 0, 2, 0, 2})
+	first.WriteMessage(websocket.BinaryMessage, []byte{rfbPointerEvent, 0, 0, 1, 0, 1})
+	select {
+	case pos := <-pointer:
+		if pos != [2]int{1, 1} {
+			t.Fatalf("read-only viewer input reached the server: %v", pos)
+		}
+	case <-time.After(time.Second):
+		t.Fatal("controller input did not reach the server")
+	}
+}
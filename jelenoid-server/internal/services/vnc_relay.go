@@ -0,0 +1,97 @@
+package services
+
+import (
+	"io"
+	"net"
+	"time"
+
+	"github.com/gorilla/websocket"
+)
+
+const (
+	vncPort        = "5900"
+	vncDialTimeout = 5 * time.Second
+	vncIdleTimeout = 30 * time.Second
+	// vncBufferSize — сколько байт RFB читается из контейнера за раз:
+	// крупное обновление экрана уходит зрителю меньшим числом сообщений.
+	vncBufferSize = 64 * 1024
+)
+
+var vncBuffers = newProxyBufferPool(vncBufferSize)
+
+// RelayVnc подключается к VNC-серверу контейнера и гоняет RFB между ним
+// и WebSocket-зрителем, пока одна из сторон не закроется.
+func RelayVnc(clientConn *websocket.Conn, containerName string) {
+	vncConn, err := net.DialTimeout("tcp", net.JoinHostPort(containerName, vncPort), vncDialTimeout)
+	if err != nil {
+		clientConn.WriteMessage(websocket.CloseMessage, websocket.FormatCloseMessage(websocket.CloseTryAgainLater, "VNC connection failed"))
+		return
+	}
+	relayVnc(clientConn, vncConn)
+}
+
+// relayVnc — по горутине и буферу из пула на направление. Когда одно
+// направление завершается, закрывается и другое: зритель не висит на
+// соединении, у которого уже нет второй стороны.
+func relayVnc(clientConn *websocket.Conn, vncConn net.Conn) {
+	done := make(chan struct{})
+	go func() {
+		defer close(done)
+		copyVncToClient(clientConn, vncConn)
+		clientConn.Close()
+	}()
+	copyClientToVnc(vncConn, clientConn)
+	vncConn.Close()
+	<-done
+}
+
+// copyVncToClient пишет прочитанный кусок RFB одним бинарным сообщением.
+// Серверное соединение без сжатия отправляет срез как есть, без копии
+// в буфер записи.
+func copyVncToClient(clientConn *websocket.Conn, vncConn net.Conn) {
+	buf := vncBuffers.Get()
+	defer vncBuffers.Put(buf)
+	for {
+		vncConn.SetReadDeadline(time.Now().Add(vncIdleTimeout))
+		n, err := vncConn.Read(buf)
+		if n > 0 {
+			if werr := clientConn.WriteMessage(websocket.BinaryMessage, buf[:n]); werr != nil {
+				return
+			}
+		}
+		if err != nil {
+			return
+		}
+	}
+}
+
+// copyClientToVnc стримит бинарные сообщения зрителя в VNC-сервер через
+// буфер из пула, не собирая каждое сообщение в новый срез.
+func copyClientToVnc(vncConn net.Conn, clientConn *websocket.Conn) {
+	buf := vncBuffers.Get()
+	defer vncBuffers.Put(buf)
+	for {
+		clientConn.SetReadDeadline(time.Now().Add(vncIdleTimeout))
+		messageType, r, err := clientConn.NextReader()
+		if err != nil {
+			return
+		}
+		if messageType != websocket.BinaryMessage {
+			continue
+		}
+		for {
+			n, err := r.Read(buf)
+			if n > 0 {
+				if _, werr := vncConn.Write(buf[:n]); werr != nil {
+					return
+				}
+			}
+			if err == io.EOF {
+				break
+			}
+			if err != nil {
+				return
+			}
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package services
+
+import (
+	"bytes"
+	"io"
+	"net"
+	"net/http"
+	"net/http/httptest"
+	"runtime"
+	"runtime/pprof"
+	"strings"
+	"testing"
+	"time"
+
+	"github.com/gorilla/websocket"
+)
+
+const rfbGreeting = "RFB 003.008\n"
+
+// newFakeRfbServer — локальная замена VNC-сервера контейнера: шлёт
+// приветствие RFB и дальше обслуживает соединение функцией serve.
+func newFakeRfbServer(tb testing.TB, serve func(conn net.Conn)) string {
+	tb.Helper()
+	ln, err := net.Listen("tcp", "127.0.0.1:0")
+	if err != nil {
+		tb.Fatal(err)
+	}
+	tb.Cleanup(func() { ln.Close() })
+	go func() {
+		for {
+			conn, err := ln.Accept()
+			if err != nil {
+				return
+			}
+			go func() {
+				defer conn.Close()
+				if _, err := conn.Write([]byte(rfbGreeting)); err != nil {
+					return
+				}
+				serve(conn)
+			}()
+		}
+	}()
+	return ln.Addr().String()
+}
+
+// newVncViewer подключает WebSocket-зрителя к хабу, который релеит его на addr.
+func newVncViewer(tb testing.TB, addr string) *websocket.Conn {
+	tb.Helper()
+	upgrader := websocket.Upgrader{Subprotocols: []string{"binary"}}
+	hub := httptest.NewServer(http.HandlerFunc(func(w http.ResponseWriter, r *http.Request) {
+		clientConn, err := upgrader.Upgrade(w, r, nil)
+		if err != nil {
+			return
+		}
+		defer clientConn.Close()
+		vncConn, err := net.Dial("tcp", addr)
+		if err != nil {
+			return
+		}
+		relayVnc(clientConn, vncConn)
+	}))
+	tb.Cleanup(hub.Close)
+
+	conn, _, err := websocket.DefaultDialer.Dial("ws"+strings.TrimPrefix(hub.URL, "http"), nil)
+	if err != nil {
+		tb.Fatal(err)
+	}
+	tb.Cleanup(func() { conn.Close() })
+	return conn
+}
+
+// readVncBytes читает из зрителя ровно n байт RFB, как бы они ни были разбиты на сообщения.
+func readVncBytes(tb testing.TB, conn *websocket.Conn, n int) []byte {
+	tb.Helper()
+	got := make([]byte, 0, n)
+	for len(got) < n {
+		_, msg, err := conn.ReadMessage()
+		if err != nil {
+			tb.Fatal(err)
+		}
+		got = append(got, msg...)
+	}
+	return got
+}
+
+func TestRelayVnc_ForwardsBothWaysAndClosesUpstream(t *testing.T) {
+	closed := make(chan struct{})
+	addr := newFakeRfbServer(t, func(conn net.Conn) {
+		io.Copy(conn, conn)
+		close(closed)
+	})
+	viewer := newVncViewer(t, addr)
+
+	if got := readVncBytes(t, viewer, len(rfbGreeting)); string(got) != rfbGreeting {
+		t.Fatalf("unexpected greeting %q", got)
+	}
+	input := []byte{5, 0, 0, 10, 0, 20}
+	viewer.WriteMessage(websocket.TextMessage, []byte("ignored"))
+	if err := viewer.WriteMessage(websocket.BinaryMessage, input); err != nil {
+		t.Fatal(err)
+	}
+	if got := readVncBytes(t, viewer, len(input)); !bytes.Equal(got, input) {
+		t.Fatalf("binary input should reach the VNC server unchanged, echoed %v", got)
+	}
+
+	viewer.Close()
+	select {
+	case <-closed:
+	case <-time.After(time.Second):
+		t.Fatal("upstream VNC connection was not closed after the viewer left")
+	}
+}
+
+// Поток обновлений экрана одному зрителю.
+func BenchmarkVncRelay_Throughput(b *testing.B) {
+	chunk := bytes.Repeat([]byte{0xAB}, vncBufferSize)
+	addr := newFakeRfbServer(b, func(conn net.Conn) {
+		for {
+			if _, err := conn.Write(chunk); err != nil {
+				return
+			}
+		}
+	})
+	viewer := newVncViewer(b, addr)
+
+	b.SetBytes(int64(len(chunk)))
+	b.ReportAllocs()
+	b.ResetTimer()
+	readVncBytes(b, viewer, b.N*len(chunk))
+}
+
+// Сколько горутин и потоков ОС хаб тратит на зрителя при 50 зрителях.
+// В горутины на зрителя входят и горутины тестовых серверов; на сам релей
+// приходятся две, потоков ОС на зрителя не добавляется.
+func BenchmarkVncRelay_Viewers(b *testing.B) {
+	const viewers = 50
+	frame := bytes.Repeat([]byte{0xCD}, 16<<10)
+	addr := newFakeRfbServer(b, func(conn net.Conn) {
+		for {
+			if _, err := conn.Write(frame); err != nil {
+				return
+			}
+			time.Sleep(10 * time.Millisecond)
+		}
+	})
+
+	goroutinesBefore := runtime.NumGoroutine()
+	threadsBefore := pprof.Lookup("threadcreate").Count()
+	conns := make([]*websocket.Conn, viewers)
+	for i := range conns {
+		conns[i] = newVncViewer(b, addr)
+	}
+
+	b.ResetTimer()
+	for i := 0; i < b.N; i++ {
+		for _, conn := range conns {
+			if _, _, err := conn.ReadMessage(); err != nil {
+				b.Fatal(err)
+			}
+		}
+	}
+	b.StopTimer()
+
+	b.ReportMetric(float64(runtime.NumGoroutine()-goroutinesBefore)/viewers, "goroutines/viewer")
+	b.ReportMetric(float64(pprof.Lookup("threadcreate").Count()-threadsBefore), "threads")
+}
@@ -0,0 +1,28 @@
+package services
+
+import "github.com/gorilla/websocket"
+
+// CompressionConfig — permessage-deflate на клиентской стороне прокси
+// (playwright и CDP). gorilla/websocket согласует расширение только без
+// переноса контекста между сообщениями: каждое сообщение сжимается отдельно.
+type CompressionConfig struct {
+	Enabled bool
+	// Level — уровень flate от -2 до 9; 1 — быстрее всего.
+	Level int
+	// Threshold — сообщения короче этого числа байт уходят без сжатия.
+	Threshold int
+}
+
+// Apply выставляет уровень сжатия соединению, с которым расширение согласовано.
+func (c CompressionConfig) Apply(conn *websocket.Conn) {
+	if !c.Enabled {
+		return
+	}
+	conn.SetCompressionLevel(c.Level)
+}
+
+// ShouldCompress решает по размеру сообщения, сжимать ли его. На соединении,
+// где клиент не согласовал сжатие, флаг ни на что не влияет.
+func (c CompressionConfig) ShouldCompress(size int) bool {
+	return c.Enabled && size >= c.Threshold
+}
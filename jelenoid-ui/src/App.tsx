@@ -4,7 +4,7 @@ import Tabs from './components/tabs';
 import MonitoringTab from './components/MonitoringTab/MonitoringTab';
 import ManualSessionTab from './components/ManualSessionTab/ManualSessionTab';
 import './App.css';
-import { ServerState, MonitoringSession } from "./types/server";
+import { ServerState, MonitoringSession, StatusDelta, StatusOp } from "./types/server";
 
 const TABS = [
     { label: 'Monitoring', value: 'monitoring' },
@@ -26,6 +26,55 @@ const initialServerState: ServerState = {
     }
 };
 
+// Ключ элемента списка, по которому сервер адресует дельты.
+const itemKey = (path: StatusOp['path'], item: any): string | undefined =>
+    path === 'activeSeleniumSessions' ? item?.hubSessionId
+        : path === 'queuedSeleniumSession' ? item?.requestId
+            : item?.clientSessionId;
+
+const applyListOps = <T,>(list: T[], path: StatusOp['path'], ops: StatusOp[]): T[] => {
+    const own = ops.filter(op => op.path === path);
+    if (own.length === 0) return list;
+    const next = [...list];
+    for (const op of own) {
+        const i = next.findIndex(item => itemKey(path, item) === op.id);
+        if (op.op === 'remove') {
+            if (i >= 0) next.splice(i, 1);
+        } else if (i >= 0) {
+            next[i] = op.value;
+        } else {
+            next.push(op.value);
+        }
+    }
+    return next;
+};
+
+const summaryOf = (ops: StatusOp[], path: StatusOp['path']) =>
+    ops.find(op => op.path === path && op.op !== 'remove')?.value;
+
+// Применяет state-delta: сводки заменяются целиком, списки меняются по ключам.
+const applyStatusDelta = (state: ServerState, delta: StatusDelta): ServerState => {
+    const ops = Array.isArray(delta?.ops) ? delta.ops : [];
+    const queuedSelenium = applyListOps(state.seleniumStat.queuedSeleniumSession, 'queuedSeleniumSession', ops);
+    const queuedPlaywright = applyListOps(state.playwrightStat.queuedPlaywrightSessions, 'queuedPlaywrightSessions', ops);
+    return {
+        seleniumStat: {
+            ...state.seleniumStat,
+            ...summaryOf(ops, 'seleniumStat'),
+            activeSeleniumSessions: applyListOps(state.seleniumStat.activeSeleniumSessions, 'activeSeleniumSessions', ops),
+            queuedSeleniumSession: queuedSelenium === state.seleniumStat.queuedSeleniumSession ? queuedSelenium
+                : [...queuedSelenium].sort((a, b) => Date.parse(a.queuedTime) - Date.parse(b.queuedTime))
+        },
+        playwrightStat: {
+            ...state.playwrightStat,
+            ...summaryOf(ops, 'playwrightStat'),
+            activePlaywrightSessions: applyListOps(state.playwrightStat.activePlaywrightSessions, 'activePlaywrightSessions', ops),
+            queuedPlaywrightSessions: queuedPlaywright === state.playwrightStat.queuedPlaywrightSessions ? queuedPlaywright
+                : [...queuedPlaywright].sort((a, b) => (a.queuePosition ?? 0) - (b.queuePosition ?? 0))
+        }
+    };
+};
+
 export type ConnectionStatus = 'connecting' | 'connected' | 'disconnected';
 
 const App: React.FC = () => {
@@ -70,6 +119,16 @@ const App: React.FC = () => {
                 console.error("Failed to parse SSE message", e);
             }
         });
+        // Дельты идут после снимка; при переподключении EventSource сам
+        // шлёт Last-Event-ID, и сервер досылает пропущенные дельты.
+        es.addEventListener('state-delta', (event) => {
+            try {
+                const delta: StatusDelta = JSON.parse((event as MessageEvent).data);
+                setServerState(prevState => applyStatusDelta(prevState, delta));
+            } catch (e) {
+                console.error("Failed to parse SSE message", e);
+            }
+        });
         return () => es.close();
     }, []);
 
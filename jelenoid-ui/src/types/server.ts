@@ -2,7 +2,8 @@
 export interface ContainerInfo {
     containerId: string;
     containerName: string;
-    lastActivity: number;
+    // Только в полном снимке state-update: в дельтах его нет.
+    lastActivity?: number;
     startTime: string;
 }
 
@@ -38,6 +39,8 @@ export interface SessionPairInfo {
     containerClientUrl: string;
     playwrightVersion: string;
     containerInfo: ContainerInfo;
+    queuePosition?: number;
+    queuedTime?: string;
 }
 
 export interface PlaywrightStat {
@@ -46,6 +49,7 @@ export interface PlaywrightStat {
     queuedPlaywrightSessionsSize: number;
     activePlaywrightSessions: SessionPairInfo[];
     queuedPlaywrightSessions: SessionPairInfo[];
+    activePlaywrightContainersSize?: number;
 }
 
 export interface ServerState {
@@ -53,6 +57,25 @@ export interface ServerState {
     playwrightStat: PlaywrightStat;
 }
 
+export type StatusPath =
+    | 'seleniumStat'
+    | 'playwrightStat'
+    | 'activeSeleniumSessions'
+    | 'queuedSeleniumSession'
+    | 'activePlaywrightSessions'
+    | 'queuedPlaywrightSessions';
+
+export interface StatusOp {
+    op: 'add' | 'update' | 'remove';
+    path: StatusPath;
+    id?: string;
+    value?: any;
+}
+
+export interface StatusDelta {
+    ops: StatusOp[];
+}
+
 export interface SeleniumMonitoringSession extends SeleniumSession {
     kind: 'selenium';
 }
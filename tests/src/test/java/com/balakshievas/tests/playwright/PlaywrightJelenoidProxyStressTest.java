@@ -1,10 +1,16 @@
 package com.balakshievas.tests.playwright;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.microsoft.playwright.*;
 import org.junit.jupiter.api.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.*;
@@ -16,6 +22,9 @@ public class PlaywrightJelenoidProxyStressTest {
 
     private static final int TOTAL_SESSIONS_TO_TEST = 20;
     private static final String PROXY_WS_URL = "ws://localhost:4445/playwright-1.58.0";
+    private static final String RUNTIME_URL = "http://localhost:4445/api/runtime";
+    // Рантайм Go может докинуть пару потоков под сисколы — рост на число сессий недопустим.
+    private static final int THREAD_TOLERANCE = 4;
 
     private ExecutorService executorService;
 
@@ -93,4 +102,64 @@ public class PlaywrightJelenoidProxyStressTest {
         Assertions.assertEquals(TOTAL_SESSIONS_TO_TEST, successfulSessions,
                 "Все сессии должны были успешно завершиться, что доказывает работу очереди.");
     }
+
+    @Test
+    @DisplayName("Число потоков хаба не растёт с числом Playwright-сессий")
+    void testThreadCountStaysFlat() throws Exception {
+        int small = 2;
+        int large = 10;
+
+        JsonNode smallWave = holdSessionsAndSample(small);
+        JsonNode largeWave = holdSessionsAndSample(large);
+
+        log.info("Сессий {}: потоков {}, горутин {}", small,
+                smallWave.get("threads").asInt(), smallWave.get("goroutines").asInt());
+        log.info("Сессий {}: потоков {}, горутин {}", large,
+                largeWave.get("threads").asInt(), largeWave.get("goroutines").asInt());
+
+        Assertions.assertEquals(large, largeWave.get("playwrightSessions").asInt(),
+                "Все сессии второй волны должны быть активны в момент замера");
+        Assertions.assertTrue(
+                largeWave.get("threads").asInt() <= smallWave.get("threads").asInt() + THREAD_TOLERANCE,
+                "Число потоков ОС не должно расти вместе с числом сессий");
+    }
+
+    private JsonNode holdSessionsAndSample(int sessions) throws Exception {
+        CountDownLatch connected = new CountDownLatch(sessions);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<Boolean>> futures = new ArrayList<>();
+
+        for (int i = 0; i < sessions; i++) {
+            futures.add(executorService.submit(() -> {
+                try (Playwright playwright = Playwright.create();
+                     Browser browser = playwright.chromium().connect(PROXY_WS_URL,
+                             new BrowserType.ConnectOptions().setTimeout(120000))) {
+                    Page page = browser.newPage();
+                    page.navigate("http://host.docker.internal:8080/");
+                    connected.countDown();
+                    release.await(5, TimeUnit.MINUTES);
+                    return page.title().contains("Welcome to nginx!");
+                }
+            }));
+        }
+
+        try {
+            Assertions.assertTrue(connected.await(5, TimeUnit.MINUTES),
+                    "Сессии не успели подключиться");
+            return fetchRuntime();
+        } finally {
+            release.countDown();
+            for (Future<Boolean> future : futures) {
+                Assertions.assertTrue(future.get(120, TimeUnit.SECONDS));
+            }
+        }
+    }
+
+    private JsonNode fetchRuntime() throws Exception {
+        HttpResponse<String> response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create(RUNTIME_URL)).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        return new ObjectMapper().readTree(response.body());
+    }
 }